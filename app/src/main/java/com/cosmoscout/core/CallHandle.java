@@ -0,0 +1,38 @@
+package com.cosmoscout.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okhttp3.Call;
+
+// The OkHttp call a blocking task is running, so another thread can abort it. Interrupting the
+// thread does not stop execute(); cancelling the call does, and execute() then throws. A handle
+// cancelled before its call is attached cancels the call as soon as it arrives.
+public final class CallHandle {
+
+    @Nullable private Call call;
+    private boolean cancelled;
+
+    public synchronized void attach(@NonNull Call next) {
+        call = next;
+        if (cancelled) {
+            next.cancel();
+        }
+    }
+
+    // Returns false if the handle was already cancelled.
+    public synchronized boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        if (call != null) {
+            call.cancel();
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
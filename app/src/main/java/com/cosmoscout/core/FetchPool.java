@@ -0,0 +1,330 @@
+package com.cosmoscout.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs blocking network tasks with a bounded number in flight. Waiting tasks queue per host and
+// hosts take turns, so one slow host cannot hold every worker. When more than maxQueued tasks
+// wait, the oldest is dropped: after fast scrolling the newest requests are the ones on screen.
+// Prefetch tasks sit in a second tier that only runs when no regular task can, never takes the
+// last free worker, and is evicted first; a keyed task can be cancelled or promoted while queued.
+// A running keyed task that registered a CallHandle can be aborted, which cancels its request.
+public final class FetchPool {
+
+    public static final class Stats {
+        public final long submitted;
+        public final long completed;
+        public final long dropped;
+        public final long cancelled;
+        // Running tasks whose request was cancelled, by abort or shutdownNow.
+        public final long aborted;
+        public final long promoted;
+        public final int running;
+        public final int queued;
+
+        Stats(long submitted,
+              long completed,
+              long dropped,
+              long cancelled,
+              long aborted,
+              long promoted,
+              int running,
+              int queued) {
+            this.submitted = submitted;
+            this.completed = completed;
+            this.dropped = dropped;
+            this.cancelled = cancelled;
+            this.aborted = aborted;
+            this.promoted = promoted;
+            this.running = running;
+            this.queued = queued;
+        }
+    }
+
+    private static final class Task {
+        final String host;
+        @Nullable final String key;
+        final long sequence;
+        final Runnable work;
+        @Nullable final Runnable onDropped;
+        @Nullable final CallHandle handle;
+        boolean prefetch;
+
+        Task(@NonNull String host,
+             @Nullable String key,
+             long sequence,
+             boolean prefetch,
+             @NonNull Runnable work,
+             @Nullable Runnable onDropped,
+             @Nullable CallHandle handle) {
+            this.host = host;
+            this.key = key;
+            this.sequence = sequence;
+            this.prefetch = prefetch;
+            this.work = work;
+            this.onDropped = onDropped;
+            this.handle = handle;
+        }
+    }
+
+    private final int parallelism;
+    private final int perHostLimit;
+    private final int maxQueued;
+    private final ExecutorService workers;
+    // Insertion order doubles as the round-robin order; a host that gets a turn moves to the end.
+    private final LinkedHashMap<String, ArrayDeque<Task>> queues = new LinkedHashMap<>();
+    private final LinkedHashMap<String, ArrayDeque<Task>> prefetchQueues = new LinkedHashMap<>();
+    private final Map<String, Task> queuedByKey = new HashMap<>();
+    private final Map<String, Task> runningByKey = new HashMap<>();
+    private final Map<String, Integer> runningByHost = new HashMap<>();
+    private int running;
+    private int queued;
+    private long sequence;
+    private long submitted;
+    private long completed;
+    private long dropped;
+    private long cancelled;
+    private long aborted;
+    private long promoted;
+    private boolean shutdown;
+
+    public FetchPool(int parallelism, int perHostLimit, int maxQueued) {
+        this.parallelism = Math.max(1, parallelism);
+        this.perHostLimit = Math.max(1, Math.min(perHostLimit, this.parallelism));
+        this.maxQueued = Math.max(1, maxQueued);
+        this.workers = Executors.newFixedThreadPool(this.parallelism);
+    }
+
+    // onDropped runs on the submitting thread if the task is evicted before it starts, or
+    // during shutdownNow for tasks that never ran.
+    public void submit(@NonNull String host, @NonNull Runnable work, @Nullable Runnable onDropped) {
+        submit(host, null, false, work, onDropped, null);
+    }
+
+    // A non-null key must be unique among queued and running tasks, except that a key may be
+    // submitted again once its running task was aborted; it is what cancel, promote and abort
+    // look up. handle, if given, is the one the work attaches its request to.
+    public void submit(@NonNull String host,
+                       @Nullable String key,
+                       boolean prefetch,
+                       @NonNull Runnable work,
+                       @Nullable Runnable onDropped,
+                       @Nullable CallHandle handle) {
+        List<Task> evicted = new ArrayList<>();
+        synchronized (this) {
+            Task task = new Task(host, key, sequence++, prefetch, work, onDropped, handle);
+            if (shutdown) {
+                evicted.add(task);
+            } else {
+                enqueue(prefetch ? prefetchQueues : queues, task);
+                if (key != null) {
+                    queuedByKey.put(key, task);
+                }
+                queued++;
+                submitted++;
+                while (queued > maxQueued) {
+                    evicted.add(evictOldest());
+                }
+                dispatch();
+            }
+        }
+        for (Task task : evicted) {
+            if (task.onDropped != null) {
+                task.onDropped.run();
+            }
+        }
+    }
+
+    // Removes a task that has not started yet. onDropped is not run: the caller asked for it.
+    public synchronized boolean cancel(@NonNull String key) {
+        Task task = queuedByKey.remove(key);
+        if (task == null) {
+            return false;
+        }
+        unqueue(task.prefetch ? prefetchQueues : queues, task);
+        queued--;
+        cancelled++;
+        return true;
+    }
+
+    // Cancels the request of a running task. The work still finishes on its worker, normally by
+    // catching the IOException from the cancelled call. Returns false if the key is not running
+    // or has no handle.
+    public synchronized boolean abort(@NonNull String key) {
+        Task task = runningByKey.get(key);
+        if (task == null || task.handle == null) {
+            return false;
+        }
+        if (task.handle.cancel()) {
+            aborted++;
+        }
+        return true;
+    }
+
+    // Moves a queued prefetch to the back of the regular tier. Returns false if the key is not
+    // queued (already running, finished or unknown) or is already regular.
+    public synchronized boolean promote(@NonNull String key) {
+        Task task = queuedByKey.get(key);
+        if (task == null || !task.prefetch) {
+            return false;
+        }
+        unqueue(prefetchQueues, task);
+        task.prefetch = false;
+        enqueue(queues, task);
+        promoted++;
+        dispatch();
+        return true;
+    }
+
+    @NonNull
+    public synchronized Stats stats() {
+        return new Stats(submitted, completed, dropped, cancelled, aborted, promoted, running, queued);
+    }
+
+    public void shutdownNow() {
+        List<Task> pending = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (ArrayDeque<Task> queue : queues.values()) {
+                pending.addAll(queue);
+            }
+            for (ArrayDeque<Task> queue : prefetchQueues.values()) {
+                pending.addAll(queue);
+            }
+            queues.clear();
+            prefetchQueues.clear();
+            queuedByKey.clear();
+            queued = 0;
+            for (Task task : runningByKey.values()) {
+                if (task.handle != null && task.handle.cancel()) {
+                    aborted++;
+                }
+            }
+        }
+        workers.shutdownNow();
+        for (Task task : pending) {
+            if (task.onDropped != null) {
+                task.onDropped.run();
+            }
+        }
+    }
+
+    private void dispatch() {
+        while (running < parallelism && queued > 0) {
+            Task next = poll(queues);
+            // Keep one worker free for a row that becomes visible while prefetches run.
+            if (next == null && (running < parallelism - 1 || parallelism == 1)) {
+                next = poll(prefetchQueues);
+            }
+            if (next == null) {
+                return;
+            }
+            if (next.key != null) {
+                queuedByKey.remove(next.key);
+                runningByKey.put(next.key, next);
+            }
+            queued--;
+            running++;
+            runningByHost.put(next.host, runningOn(next.host) + 1);
+            Task task = next;
+            workers.execute(() -> {
+                try {
+                    task.work.run();
+                } finally {
+                    finished(task);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(@NonNull Task task) {
+        running--;
+        completed++;
+        if (task.key != null && runningByKey.get(task.key) == task) {
+            runningByKey.remove(task.key);
+        }
+        int left = runningOn(task.host) - 1;
+        if (left <= 0) {
+            runningByHost.remove(task.host);
+        } else {
+            runningByHost.put(task.host, left);
+        }
+        if (!shutdown) {
+            dispatch();
+        }
+    }
+
+    // Takes the head of the first host under its limit and moves that host to the end.
+    @Nullable
+    private Task poll(@NonNull LinkedHashMap<String, ArrayDeque<Task>> tier) {
+        Iterator<Map.Entry<String, ArrayDeque<Task>>> it = tier.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ArrayDeque<Task>> entry = it.next();
+            if (runningOn(entry.getKey()) < perHostLimit) {
+                Task next = entry.getValue().pollFirst();
+                it.remove();
+                if (!entry.getValue().isEmpty()) {
+                    tier.put(entry.getKey(), entry.getValue());
+                }
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private static void enqueue(@NonNull LinkedHashMap<String, ArrayDeque<Task>> tier, @NonNull Task task) {
+        ArrayDeque<Task> queue = tier.get(task.host);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            tier.put(task.host, queue);
+        }
+        queue.addLast(task);
+    }
+
+    private static void unqueue(@NonNull LinkedHashMap<String, ArrayDeque<Task>> tier, @NonNull Task task) {
+        ArrayDeque<Task> queue = tier.get(task.host);
+        if (queue != null && queue.remove(task) && queue.isEmpty()) {
+            tier.remove(task.host);
+        }
+    }
+
+    @NonNull
+    private Task evictOldest() {
+        LinkedHashMap<String, ArrayDeque<Task>> tier = prefetchQueues.isEmpty() ? queues : prefetchQueues;
+        String oldestHost = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, ArrayDeque<Task>> entry : tier.entrySet()) {
+            Task head = entry.getValue().peekFirst();
+            if (head != null && head.sequence < oldest) {
+                oldest = head.sequence;
+                oldestHost = entry.getKey();
+            }
+        }
+        ArrayDeque<Task> queue = tier.get(oldestHost);
+        Task task = queue.pollFirst();
+        if (queue.isEmpty()) {
+            tier.remove(oldestHost);
+        }
+        if (task.key != null) {
+            queuedByKey.remove(task.key);
+        }
+        queued--;
+        dropped++;
+        return task;
+    }
+
+    private int runningOn(@NonNull String host) {
+        Integer count = runningByHost.get(host);
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.cosmoscout.data.events;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+public final class AstroEvent {
+
+    public enum Kind {
+        LUNAR_ECLIPSE,
+        SOLAR_ECLIPSE,
+        CONJUNCTION,
+        OCCULTATION
+    }
+
+    public final long timeMillis;
+    public final Kind kind;
+    public final int bodyA;
+    public final int bodyB;
+    public final double separationDeg;
+
+    AstroEvent(long timeMillis, @NonNull Kind kind, int bodyA, int bodyB, double separationDeg) {
+        this.timeMillis = timeMillis;
+        this.kind = kind;
+        this.bodyA = bodyA;
+        this.bodyB = bodyB;
+        this.separationDeg = separationDeg;
+    }
+
+    @NonNull
+    public String getId() {
+        return "astro-" + kind.name().toLowerCase(Locale.US) + "-" + timeMillis
+                + "-" + bodyA + "-" + bodyB;
+    }
+
+    public boolean isTotalOrCentral() {
+        switch (kind) {
+            case LUNAR_ECLIPSE:
+                return separationDeg < 0.45d;
+            case SOLAR_ECLIPSE:
+                return separationDeg < 0.9d;
+            default:
+                return false;
+        }
+    }
+
+    public boolean isPenumbralOnly() {
+        return kind == Kind.LUNAR_ECLIPSE && separationDeg >= 1.0d;
+    }
+}
@@ -0,0 +1,346 @@
+package com.cosmoscout.data.events;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.cosmoscout.data.weather.Ephemeris;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public final class AstroEventCalendar {
+
+    public static final int REGULUS = 7;
+    public static final int SPICA = 8;
+    public static final int ANTARES = 9;
+    public static final int ALDEBARAN = 10;
+
+    private static final String FILE_NAME = "astro_events.bin";
+    private static final int MAGIC = 0x43534556;
+    private static final int VERSION = 1;
+    private static final int YEARS_AHEAD = 3;
+    private static final long MIN_REMAINING_MS = TimeUnit.DAYS.toMillis(365);
+    private static final long LOOKBACK_MS = TimeUnit.DAYS.toMillis(30);
+
+    private static final double LUNAR_ECLIPSE_LIMIT_DEG = 1.55d;
+    private static final double SOLAR_ECLIPSE_LIMIT_DEG = 1.45d;
+    private static final double CONJUNCTION_LIMIT_DEG = 2.0d;
+    private static final double OCCULTATION_LIMIT_DEG = 0.9d;
+    private static final double MIN_SOLAR_ELONGATION_DEG = 12d;
+
+    private static final String[] BODY_NAMES = {
+            "Sun", "Moon", "Mercury", "Venus", "Mars", "Jupiter", "Saturn",
+            "Regulus", "Spica", "Antares", "Aldebaran"
+    };
+    // J2000 ecliptic longitude and latitude of the first-magnitude stars the Moon can cover.
+    private static final double[][] STAR_POSITIONS = {
+            {149.83d, 0.47d},
+            {203.84d, -2.05d},
+            {249.76d, -4.57d},
+            {69.79d, -5.47d}
+    };
+    private static final int[] PLANETS = {
+            Ephemeris.MERCURY, Ephemeris.VENUS, Ephemeris.MARS, Ephemeris.JUPITER, Ephemeris.SATURN
+    };
+
+    private final File file;
+    private long[] times = new long[0];
+    private byte[] kinds = new byte[0];
+    private byte[] bodiesA = new byte[0];
+    private byte[] bodiesB = new byte[0];
+    private short[] separations = new short[0];
+    private long rangeStart;
+    private long rangeEnd;
+    private boolean loaded;
+
+    public AstroEventCalendar(@NonNull Context context) {
+        this(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+    }
+
+    AstroEventCalendar(@NonNull File file) {
+        this.file = file;
+    }
+
+    @NonNull
+    public static String bodyName(int body) {
+        return body >= 0 && body < BODY_NAMES.length ? BODY_NAMES[body] : "?";
+    }
+
+    @WorkerThread
+    @NonNull
+    public synchronized List<AstroEvent> query(long fromMillis, long toMillis) {
+        ensureCoverage(System.currentTimeMillis());
+        int index = lowerBound(times, fromMillis);
+        List<AstroEvent> result = new ArrayList<>();
+        for (int i = index; i < times.length && times[i] <= toMillis; i++) {
+            result.add(new AstroEvent(
+                    times[i],
+                    AstroEvent.Kind.values()[kinds[i]],
+                    bodiesA[i],
+                    bodiesB[i],
+                    separations[i] / 100d
+            ));
+        }
+        return result;
+    }
+
+    private void ensureCoverage(long now) {
+        if (!loaded) {
+            loaded = true;
+            try {
+                read();
+            } catch (IOException e) {
+                times = new long[0];
+                rangeStart = 0L;
+                rangeEnd = 0L;
+            }
+        }
+        if (rangeStart <= now && rangeEnd - now >= MIN_REMAINING_MS) {
+            return;
+        }
+        long start = now - LOOKBACK_MS;
+        long end = now + TimeUnit.DAYS.toMillis(365L * YEARS_AHEAD);
+        setEvents(generate(start, end), start, end);
+        try {
+            write();
+        } catch (IOException ignored) {
+            // The in-memory copy still serves this session; generation reruns next launch.
+        }
+    }
+
+    private void setEvents(@NonNull List<AstroEvent> events, long start, long end) {
+        int count = events.size();
+        times = new long[count];
+        kinds = new byte[count];
+        bodiesA = new byte[count];
+        bodiesB = new byte[count];
+        separations = new short[count];
+        for (int i = 0; i < count; i++) {
+            AstroEvent event = events.get(i);
+            times[i] = event.timeMillis;
+            kinds[i] = (byte) event.kind.ordinal();
+            bodiesA[i] = (byte) event.bodyA;
+            bodiesB[i] = (byte) event.bodyB;
+            separations[i] = (short) Math.round(event.separationDeg * 100d);
+        }
+        rangeStart = start;
+        rangeEnd = end;
+    }
+
+    private void read() throws IOException {
+        if (!file.exists()) {
+            throw new IOException("No calendar file");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown calendar format");
+            }
+            long start = in.readLong();
+            long end = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt calendar");
+            }
+            long[] readTimes = new long[count];
+            byte[] readKinds = new byte[count];
+            byte[] readA = new byte[count];
+            byte[] readB = new byte[count];
+            short[] readSeparations = new short[count];
+            for (int i = 0; i < count; i++) {
+                readTimes[i] = in.readLong();
+                readKinds[i] = in.readByte();
+                readA[i] = in.readByte();
+                readB[i] = in.readByte();
+                readSeparations[i] = in.readShort();
+                if (readKinds[i] < 0 || readKinds[i] >= AstroEvent.Kind.values().length) {
+                    throw new IOException("Corrupt calendar");
+                }
+            }
+            times = readTimes;
+            kinds = readKinds;
+            bodiesA = readA;
+            bodiesB = readB;
+            separations = readSeparations;
+            rangeStart = start;
+            rangeEnd = end;
+        }
+    }
+
+    private void write() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(rangeStart);
+            out.writeLong(rangeEnd);
+            out.writeInt(times.length);
+            for (int i = 0; i < times.length; i++) {
+                out.writeLong(times[i]);
+                out.writeByte(kinds[i]);
+                out.writeByte(bodiesA[i]);
+                out.writeByte(bodiesB[i]);
+                out.writeShort(separations[i]);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to store calendar");
+        }
+    }
+
+    private static int lowerBound(@NonNull long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @NonNull
+    static List<AstroEvent> generate(long startMillis, long endMillis) {
+        List<AstroEvent> events = new ArrayList<>();
+        findEclipses(startMillis, endMillis, events);
+        findConjunctions(startMillis, endMillis, events);
+        findOccultations(startMillis, endMillis, events);
+        Collections.sort(events, (a, b) -> Long.compare(a.timeMillis, b.timeMillis));
+        return events;
+    }
+
+    private static void findEclipses(long start, long end, @NonNull List<AstroEvent> out) {
+        long step = TimeUnit.HOURS.toMillis(6);
+        double previous = elongation(start);
+        for (long t = start + step; t <= end; t += step) {
+            double current = elongation(t);
+            if (previous > 270d && current < 90d) {
+                long syzygy = refinePhase(t - step, t, 0d);
+                double beta = Math.abs(Ephemeris.eclipticPosition(Ephemeris.MOON, syzygy)[1]);
+                if (beta < SOLAR_ECLIPSE_LIMIT_DEG) {
+                    out.add(new AstroEvent(syzygy, AstroEvent.Kind.SOLAR_ECLIPSE,
+                            Ephemeris.SUN, Ephemeris.MOON, beta));
+                }
+            } else if (previous < 180d && current >= 180d) {
+                long syzygy = refinePhase(t - step, t, 180d);
+                double beta = Math.abs(Ephemeris.eclipticPosition(Ephemeris.MOON, syzygy)[1]);
+                if (beta < LUNAR_ECLIPSE_LIMIT_DEG) {
+                    out.add(new AstroEvent(syzygy, AstroEvent.Kind.LUNAR_ECLIPSE,
+                            Ephemeris.MOON, Ephemeris.SUN, beta));
+                }
+            }
+            previous = current;
+        }
+    }
+
+    private static void findConjunctions(long start, long end, @NonNull List<AstroEvent> out) {
+        long step = TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < PLANETS.length; i++) {
+            for (int j = i + 1; j < PLANETS.length; j++) {
+                int a = PLANETS[i];
+                int b = PLANETS[j];
+                double before = bodySeparation(a, b, start - step);
+                double current = bodySeparation(a, b, start);
+                for (long t = start; t <= end; t += step) {
+                    double after = bodySeparation(a, b, t + step);
+                    if (current < CONJUNCTION_LIMIT_DEG && current <= before && current < after) {
+                        long best = refineMinimum(a, b, t - step, t + step);
+                        if (solarElongation(a, best) >= MIN_SOLAR_ELONGATION_DEG) {
+                            out.add(new AstroEvent(best, AstroEvent.Kind.CONJUNCTION, a, b,
+                                    bodySeparation(a, b, best)));
+                        }
+                    }
+                    before = current;
+                    current = after;
+                }
+            }
+        }
+    }
+
+    private static void findOccultations(long start, long end, @NonNull List<AstroEvent> out) {
+        long step = TimeUnit.HOURS.toMillis(1);
+        int[] targets = {REGULUS, SPICA, ANTARES, ALDEBARAN,
+                Ephemeris.MERCURY, Ephemeris.VENUS, Ephemeris.MARS, Ephemeris.JUPITER, Ephemeris.SATURN};
+        for (int target : targets) {
+            double before = bodySeparation(Ephemeris.MOON, target, start - step);
+            double current = bodySeparation(Ephemeris.MOON, target, start);
+            for (long t = start; t <= end; t += step) {
+                double after = bodySeparation(Ephemeris.MOON, target, t + step);
+                if (current < OCCULTATION_LIMIT_DEG && current <= before && current < after) {
+                    long best = refineMinimum(Ephemeris.MOON, target, t - step, t + step);
+                    if (solarElongation(target, best) >= MIN_SOLAR_ELONGATION_DEG) {
+                        out.add(new AstroEvent(best, AstroEvent.Kind.OCCULTATION,
+                                Ephemeris.MOON, target, bodySeparation(Ephemeris.MOON, target, best)));
+                    }
+                }
+                before = current;
+                current = after;
+            }
+        }
+    }
+
+    private static long refinePhase(long low, long high, double target) {
+        while (high - low > TimeUnit.MINUTES.toMillis(1)) {
+            long mid = (low + high) >>> 1;
+            double diff = Ephemeris.normalize(elongation(mid) - target + 180d) - 180d;
+            if (diff < 0d) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) >>> 1;
+    }
+
+    private static long refineMinimum(int a, int b, long low, long high) {
+        while (high - low > TimeUnit.MINUTES.toMillis(1)) {
+            long third = (high - low) / 3L;
+            long m1 = low + third;
+            long m2 = high - third;
+            if (bodySeparation(a, b, m1) < bodySeparation(a, b, m2)) {
+                high = m2;
+            } else {
+                low = m1;
+            }
+        }
+        return (low + high) >>> 1;
+    }
+
+    private static double elongation(long timeMillis) {
+        double moon = Ephemeris.eclipticPosition(Ephemeris.MOON, timeMillis)[0];
+        double sun = Ephemeris.eclipticPosition(Ephemeris.SUN, timeMillis)[0];
+        return Ephemeris.normalize(moon - sun);
+    }
+
+    private static double solarElongation(int body, long timeMillis) {
+        return bodySeparation(Ephemeris.SUN, body, timeMillis);
+    }
+
+    private static double bodySeparation(int a, int b, long timeMillis) {
+        double[] first = position(a, timeMillis);
+        double[] second = position(b, timeMillis);
+        return Ephemeris.separation(first[0], first[1], second[0], second[1]);
+    }
+
+    private static double[] position(int body, long timeMillis) {
+        if (body >= REGULUS) {
+            return STAR_POSITIONS[body - REGULUS];
+        }
+        return Ephemeris.eclipticPosition(body, timeMillis);
+    }
+}
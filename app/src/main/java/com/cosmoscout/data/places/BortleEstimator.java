@@ -26,19 +26,7 @@ public final class BortleEstimator {
 
     @NonNull
     public Call estimate(double lat, double lon, @NonNull EstimateCallback callback) {
-        HttpUrl url = HttpUrl.parse(ENDPOINT)
-                .newBuilder()
-                .addQueryParameter("lat", format(lat))
-                .addQueryParameter("lon", format(lon))
-                .addQueryParameter("limit", "5")
-                .build();
-
-        Request request = new Request.Builder()
-                .url(url)
-                .header("User-Agent", "CosmoScout/1.0 (Android)")
-                .build();
-
-        Call call = Net.client().newCall(request);
+        Call call = Net.client().newCall(buildRequest(lat, lon));
         call.enqueue(new Callback() {
             @Override
             public void onFailure(@NonNull Call call, @NonNull IOException e) {
@@ -58,6 +46,33 @@ public final class BortleEstimator {
         return call;
     }
 
+    // Same lookup on the calling thread, for background work that estimates many points.
+    @Nullable
+    public Integer estimateBlocking(double lat, double lon) throws IOException {
+        try (Response response = Net.client().newCall(buildRequest(lat, lon)).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            String body = response.body() != null ? response.body().string() : "";
+            return parseBortle(body);
+        }
+    }
+
+    @NonNull
+    private Request buildRequest(double lat, double lon) {
+        HttpUrl url = HttpUrl.parse(ENDPOINT)
+                .newBuilder()
+                .addQueryParameter("lat", format(lat))
+                .addQueryParameter("lon", format(lon))
+                .addQueryParameter("limit", "5")
+                .build();
+
+        return new Request.Builder()
+                .url(url)
+                .header("User-Agent", "CosmoScout/1.0 (Android)")
+                .build();
+    }
+
     @Nullable
     private Integer parseBortle(@NonNull String body) {
         try {
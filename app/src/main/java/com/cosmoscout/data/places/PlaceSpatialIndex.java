@@ -0,0 +1,245 @@
+package com.cosmoscout.data.places;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Immutable k-d tree over saved places for nearest and radius queries. Places are stored as
+// unit vectors, so the straight-line chord between two points ranks them exactly like the
+// great-circle distance, costs a few multiplications, and has no seam at the antimeridian or
+// the poles. Distances are spherical; use Location.distanceBetween for an exact figure.
+public final class PlaceSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371d;
+
+    public static final class Neighbor {
+        public final Place place;
+        public final double distanceKm;
+
+        Neighbor(@NonNull Place place, double distanceKm) {
+            this.place = place;
+            this.distanceKm = distanceKm;
+        }
+    }
+
+    // The tree is implicit: the node of range [from, to) sits at its midpoint and splits on
+    // axes[mid]; its children are the ranges either side.
+    private final Place[] places;
+    private final double[] xyz;
+    private final byte[] axes;
+
+    public PlaceSpatialIndex(@NonNull List<Place> source) {
+        int count = source.size();
+        places = source.toArray(new Place[0]);
+        xyz = new double[count * 3];
+        axes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            toUnit(places[i].getLat(), places[i].getLon(), xyz, i * 3);
+        }
+        build(0, count);
+    }
+
+    public int size() {
+        return places.length;
+    }
+
+    // The k places closest to the point, nearest first.
+    @NonNull
+    public List<Neighbor> nearest(double lat, double lon, int k) {
+        if (k <= 0 || places.length == 0) {
+            return Collections.emptyList();
+        }
+        double[] origin = toUnit(lat, lon, new double[3], 0);
+        // Max-heap on squared chord, so the worst of the current k is on top.
+        PriorityQueue<int[]> best = new PriorityQueue<>(k + 1,
+                (a, b) -> Double.compare(chord2(b[0], origin), chord2(a[0], origin)));
+        nearest(0, places.length, origin, k, best);
+        List<Neighbor> out = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            int i = best.poll()[0];
+            out.add(new Neighbor(places[i], chordToKm(Math.sqrt(chord2(i, origin)))));
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    // Every place within radiusKm of the point, in no particular order.
+    @NonNull
+    public List<Neighbor> within(double lat, double lon, double radiusKm) {
+        List<Neighbor> out = new ArrayList<>();
+        if (places.length == 0 || radiusKm < 0d) {
+            return out;
+        }
+        double[] origin = toUnit(lat, lon, new double[3], 0);
+        double limit = kmToChord(radiusKm);
+        within(0, places.length, origin, limit * limit, out);
+        return out;
+    }
+
+    // Distance from the point to every place, by place id.
+    public void distancesFrom(double lat, double lon, @NonNull Map<String, Double> out) {
+        double[] origin = toUnit(lat, lon, new double[3], 0);
+        for (int i = 0; i < places.length; i++) {
+            out.put(places[i].getId(), chordToKm(Math.sqrt(chord2(i, origin))));
+        }
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double[] a = toUnit(lat1, lon1, new double[6], 0);
+        toUnit(lat2, lon2, a, 3);
+        double dx = a[0] - a[3];
+        double dy = a[1] - a[4];
+        double dz = a[2] - a[5];
+        return chordToKm(Math.sqrt(dx * dx + dy * dy + dz * dz));
+    }
+
+    private void build(int from, int to) {
+        if (to - from <= 1) {
+            if (to - from == 1) {
+                axes[from] = 0;
+            }
+            return;
+        }
+        int axis = widestAxis(from, to);
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        build(from, mid);
+        build(mid + 1, to);
+    }
+
+    private int widestAxis(int from, int to) {
+        int widest = 0;
+        double widestSpan = -1d;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                double v = xyz[i * 3 + axis];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widestSpan) {
+                widestSpan = max - min;
+                widest = axis;
+            }
+        }
+        return widest;
+    }
+
+    // Quickselect: leaves the k-th smallest on axis at k, smaller ones before it.
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = xyz[((left + right) >>> 1) * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (xyz[i * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (xyz[j * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        Place place = places[a];
+        places[a] = places[b];
+        places[b] = place;
+        for (int c = 0; c < 3; c++) {
+            double v = xyz[a * 3 + c];
+            xyz[a * 3 + c] = xyz[b * 3 + c];
+            xyz[b * 3 + c] = v;
+        }
+    }
+
+    private void nearest(int from, int to, @NonNull double[] origin, int k, @NonNull PriorityQueue<int[]> best) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        best.add(new int[]{mid});
+        if (best.size() > k) {
+            best.poll();
+        }
+        int axis = axes[mid];
+        double delta = origin[axis] - xyz[mid * 3 + axis];
+        boolean leftFirst = delta < 0d;
+        if (leftFirst) {
+            nearest(from, mid, origin, k, best);
+        } else {
+            nearest(mid + 1, to, origin, k, best);
+        }
+        // The far side can only help if the splitting plane is closer than the current k-th.
+        if (best.size() < k || delta * delta < chord2(best.peek()[0], origin)) {
+            if (leftFirst) {
+                nearest(mid + 1, to, origin, k, best);
+            } else {
+                nearest(from, mid, origin, k, best);
+            }
+        }
+    }
+
+    private void within(int from, int to, @NonNull double[] origin, double limit2, @NonNull List<Neighbor> out) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        double d2 = chord2(mid, origin);
+        if (d2 <= limit2) {
+            out.add(new Neighbor(places[mid], chordToKm(Math.sqrt(d2))));
+        }
+        int axis = axes[mid];
+        double delta = origin[axis] - xyz[mid * 3 + axis];
+        if (delta < 0d || delta * delta <= limit2) {
+            within(from, mid, origin, limit2, out);
+        }
+        if (delta >= 0d || delta * delta <= limit2) {
+            within(mid + 1, to, origin, limit2, out);
+        }
+    }
+
+    private double chord2(int i, @NonNull double[] origin) {
+        double dx = xyz[i * 3] - origin[0];
+        double dy = xyz[i * 3 + 1] - origin[1];
+        double dz = xyz[i * 3 + 2] - origin[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    @NonNull
+    private static double[] toUnit(double lat, double lon, @NonNull double[] out, int offset) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        double cosPhi = Math.cos(phi);
+        out[offset] = cosPhi * Math.cos(lambda);
+        out[offset + 1] = cosPhi * Math.sin(lambda);
+        out[offset + 2] = Math.sin(phi);
+        return out;
+    }
+
+    private static double chordToKm(double chord) {
+        return 2d * EARTH_RADIUS_KM * Math.asin(Math.min(1d, chord / 2d));
+    }
+
+    private static double kmToChord(double km) {
+        return 2d * Math.sin(Math.min(Math.PI, km / EARTH_RADIUS_KM) / 2d);
+    }
+}
@@ -4,11 +4,16 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 public final class PlacesScoring {
 
+    // Zenith SQM readings mapped onto the 0..100 darkness scale: bright suburban to pristine.
+    private static final double SQM_BRIGHT = 17d;
+    private static final double SQM_DARK = 22d;
+
     private PlacesScoring() {
     }
 
@@ -42,6 +47,7 @@ public final class PlacesScoring {
         public final double avgWind;
         public final boolean precipFree;
         public final SkyStatus status;
+        public final double sqm;
 
         public ScoreResult(double score,
                            long windowStart,
@@ -51,7 +57,8 @@ public final class PlacesScoring {
                            double avgCloud,
                            double avgWind,
                            boolean precipFree,
-                           SkyStatus status) {
+                           SkyStatus status,
+                           double sqm) {
             this.score = score;
             this.windowStart = windowStart;
             this.windowEnd = windowEnd;
@@ -61,6 +68,7 @@ public final class PlacesScoring {
             this.avgWind = avgWind;
             this.precipFree = precipFree;
             this.status = status;
+            this.sqm = sqm;
         }
     }
 
@@ -69,44 +77,151 @@ public final class PlacesScoring {
         return clampToPercent((int) Math.round(normalized * 100d));
     }
 
+    public static int darknessPercent(double sqm) {
+        double fraction = (sqm - SQM_BRIGHT) / (SQM_DARK - SQM_BRIGHT);
+        return clampToPercent((int) Math.round(fraction * 100d));
+    }
+
     @Nullable
     public static ScoreResult findBestWindow(@NonNull List<PlacesService.ForecastHour> points,
                                              @NonNull Map<Long, Integer> moonPctByDay,
                                              @NonNull Weights weights,
                                              double windCapMetersPerSecond) {
-        if (points.isEmpty()) {
+        return findBestWindow(points, moonPctByDay, null, null, weights, windCapMetersPerSecond, 0L);
+    }
+
+    // Best contiguous window of at least minSessionMillis (or the longest contiguous run, if the
+    // night is shorter), found in one pass with running sums and a monotonic deque for the
+    // wettest point. The step is inferred from the series, so hourly and 15-minute data both work.
+    // sqmByPoint, when given, holds the estimated zenith brightness for each point and replaces
+    // the daily moon percentage as the darkness term. meteorRates, when given, holds the expected
+    // meteors per hour for each point and adds the same clear-sky bonus as the Tonight list.
+    @Nullable
+    public static ScoreResult findBestWindow(@NonNull List<PlacesService.ForecastHour> points,
+                                             @NonNull Map<Long, Integer> moonPctByDay,
+                                             @Nullable double[] sqmByPoint,
+                                             @Nullable double[] meteorRates,
+                                             @NonNull Weights weights,
+                                             double windCapMetersPerSecond,
+                                             long minSessionMillis) {
+        int n = points.size();
+        if (n == 0) {
             return null;
         }
+        long step = inferStep(points);
+        float[] scores = new float[n];
+        ScoringEngine.scoreSeries(points, 0, n, moonPctByDay, sqmByPoint, meteorRates,
+                ScoringEngine.Profile.places(weights, windCapMetersPerSecond), scores);
+        int[] moonPcts = new int[n];
+        for (int i = 0; i < n; i++) {
+            moonPcts[i] = clampToPercent(moonPctByDay.getOrDefault(points.get(i).dayKey, 0));
+        }
+
+        int length = (int) Math.max(1L, (minSessionMillis + step - 1L) / step);
+        length = Math.min(length, longestRun(points, step));
 
+        double sumScore = 0d;
+        double sumCloud = 0d;
+        double sumWind = 0d;
+        double sumSqm = 0d;
+        int sqmCount = 0;
+        int sumMoon = 0;
+        int[] wettest = new int[n];
+        int head = 0;
+        int tail = 0;
+        int lo = 0;
         ScoreResult best = null;
-        for (PlacesService.ForecastHour point : points) {
-            int moonPct = clampToPercent(moonPctByDay.getOrDefault(point.dayKey, 0));
-            double cloudComponent = weights.cloud * (100d - point.cloudCover);
-            double precipComponent = weights.precip * (point.precipitation <= 0d ? 20d : -100d);
-            double windComponent = weights.wind * Math.max(0d, windCapMetersPerSecond - point.windSpeed);
-            double moonComponent = weights.moon * (100d - moonPct);
-            double score = cloudComponent + precipComponent + windComponent + moonComponent;
+        for (int i = 0; i < n; i++) {
+            PlacesService.ForecastHour point = points.get(i);
+            if (i > 0 && !isNext(points.get(i - 1), point, step)) {
+                sumScore = 0d;
+                sumCloud = 0d;
+                sumWind = 0d;
+                sumSqm = 0d;
+                sqmCount = 0;
+                sumMoon = 0;
+                head = tail;
+                lo = i;
+            }
+            sumScore += scores[i];
+            sumCloud += point.cloudCover;
+            sumWind += point.windSpeed;
+            sumMoon += moonPcts[i];
+            if (sqmByPoint != null && !Double.isNaN(sqmByPoint[i])) {
+                sumSqm += sqmByPoint[i];
+                sqmCount++;
+            }
+            while (tail > head && points.get(wettest[tail - 1]).precipitation <= point.precipitation) {
+                tail--;
+            }
+            wettest[tail++] = i;
 
+            if (i - lo + 1 > length) {
+                PlacesService.ForecastHour leaving = points.get(lo);
+                sumScore -= scores[lo];
+                sumCloud -= leaving.cloudCover;
+                sumWind -= leaving.windSpeed;
+                sumMoon -= moonPcts[lo];
+                if (sqmByPoint != null && !Double.isNaN(sqmByPoint[lo])) {
+                    sumSqm -= sqmByPoint[lo];
+                    sqmCount--;
+                }
+                if (wettest[head] == lo) {
+                    head++;
+                }
+                lo++;
+            }
+            if (i - lo + 1 < length) {
+                continue;
+            }
+            double score = sumScore / length;
             if (best == null || score > best.score) {
-                double avgCloud = point.cloudCover;
-                double avgWind = point.windSpeed;
-                boolean precipFree = point.precipitation <= 0d;
+                double avgCloud = sumCloud / length;
                 best = new ScoreResult(
                         score,
-                        point.timeMillis,
-                        point.timeMillis + 3600_000L,
+                        points.get(lo).timeMillis,
+                        point.timeMillis + step,
                         clampToPercent((int) Math.round(100d - avgCloud)),
-                        moonPct,
+                        clampToPercent(Math.round(sumMoon / (float) length)),
                         avgCloud,
-                        avgWind,
-                        precipFree,
-                        toStatus(score)
+                        sumWind / length,
+                        points.get(wettest[head]).precipitation <= 0d,
+                        toStatus(score),
+                        sqmCount > 0 ? sumSqm / sqmCount : Double.NaN
                 );
             }
         }
         return best;
     }
 
+    private static long inferStep(@NonNull List<PlacesService.ForecastHour> points) {
+        long step = Long.MAX_VALUE;
+        for (int i = 1; i < points.size(); i++) {
+            long diff = points.get(i).timeMillis - points.get(i - 1).timeMillis;
+            if (diff > 0L && diff < step) {
+                step = diff;
+            }
+        }
+        return step == Long.MAX_VALUE ? 3600_000L : step;
+    }
+
+    private static boolean isNext(@NonNull PlacesService.ForecastHour previous,
+                                  @NonNull PlacesService.ForecastHour current,
+                                  long step) {
+        long diff = current.timeMillis - previous.timeMillis;
+        return diff > 0L && diff <= step + step / 2L;
+    }
+
+    private static int longestRun(@NonNull List<PlacesService.ForecastHour> points, long step) {
+        int longest = 1;
+        int run = 1;
+        for (int i = 1; i < points.size(); i++) {
+            run = isNext(points.get(i - 1), points.get(i), step) ? run + 1 : 1;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
     @NonNull
     public static List<Integer> buildTimeline(@NonNull List<PlacesService.ForecastHour> points,
                                               int segments) {
@@ -141,6 +256,19 @@ public final class PlacesScoring {
         return bars;
     }
 
+    // Index of the first run of at least minLength set bits starting at or after fromIndex, or -1.
+    public static int firstRun(@NonNull BitSet bits, int fromIndex, int minLength) {
+        int start = bits.nextSetBit(fromIndex);
+        while (start >= 0) {
+            int end = bits.nextClearBit(start);
+            if (end - start >= minLength) {
+                return start;
+            }
+            start = bits.nextSetBit(end);
+        }
+        return -1;
+    }
+
     public static SkyStatus toStatus(double score) {
         if (score >= 80d) {
             return SkyStatus.GOOD;
@@ -1,9 +1,11 @@
 package com.cosmoscout.data.places;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import android.util.Log;
 
+import com.cosmoscout.core.CallHandle;
 import com.cosmoscout.core.Net;
 
 import org.json.JSONArray;
@@ -22,15 +24,23 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 
+import okhttp3.Call;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.Response;
 public final class PlacesService {
 
-    private static final String ENDPOINT = "https://api.open-meteo.com/v1/forecast"; // API ref: https://open-meteo.com/
+    public static final String FORECAST_HOST = "api.open-meteo.com";
+    private static final String ENDPOINT = "https://" + FORECAST_HOST + "/v1/forecast"; // API ref: https://open-meteo.com/
 
     @NonNull
     public ForecastResponse fetchForecast(double lat, double lon) throws IOException {
+        return fetchForecast(lat, lon, null);
+    }
+
+    // Cancelling handle aborts the request, which then fails with an IOException.
+    @NonNull
+    public ForecastResponse fetchForecast(double lat, double lon, @Nullable CallHandle handle) throws IOException {
         Log.d("PlacesService", "Fetching forecast for lat=" + lat + ", lon=" + lon);
 
         HttpUrl url = HttpUrl.parse(ENDPOINT)
@@ -49,7 +59,11 @@ public final class PlacesService {
                 .header("User-Agent", "CosmoScout/1.0 (Android)")
                 .build();
 
-        try (Response response = Net.client().newCall(request).execute()) {
+        Call call = Net.client().newCall(request);
+        if (handle != null) {
+            handle.attach(call);
+        }
+        try (Response response = call.execute()) {
             if (!response.isSuccessful()) {
                 String body = response.body() != null ? response.body().string() : "";
                 Log.e("PlacesService", "HTTP " + response.code() + " response: " + body);
@@ -69,10 +83,89 @@ public final class PlacesService {
         }
     }
 
+    @NonNull
+    public List<ForecastResponse> fetchForecasts(@NonNull double[] lats,
+                                                 @NonNull double[] lons,
+                                                 int count) throws IOException {
+        return fetchForecasts(lats, lons, count, null);
+    }
+
+    // One request for many coordinates; Open-Meteo accepts comma-separated lists and answers
+    // with an array in the same order.
+    @NonNull
+    public List<ForecastResponse> fetchForecasts(@NonNull double[] lats,
+                                                 @NonNull double[] lons,
+                                                 int count,
+                                                 @Nullable CallHandle handle) throws IOException {
+        if (count == 1) {
+            return Collections.singletonList(fetchForecast(lats[0], lons[0], handle));
+        }
+        StringBuilder latList = new StringBuilder();
+        StringBuilder lonList = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                latList.append(',');
+                lonList.append(',');
+            }
+            latList.append(format(lats[i]));
+            lonList.append(format(lons[i]));
+        }
+        HttpUrl url = HttpUrl.parse(ENDPOINT)
+                .newBuilder()
+                .addQueryParameter("latitude", latList.toString())
+                .addQueryParameter("longitude", lonList.toString())
+                .addQueryParameter("hourly", "cloud_cover,precipitation,wind_speed_10m,visibility")
+                .addQueryParameter("timezone", "auto")
+                .addQueryParameter("forecast_days", "2")
+                .build();
+
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", "CosmoScout/1.0 (Android)")
+                .build();
+
+        Call call = Net.client().newCall(request);
+        if (handle != null) {
+            handle.attach(call);
+        }
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            String body = response.body() != null ? response.body().string() : "";
+            JSONArray roots = new JSONArray(body);
+            if (roots.length() != count) {
+                throw new IOException("Expected " + count + " forecasts, got " + roots.length());
+            }
+            List<ForecastResponse> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                JSONObject root = roots.optJSONObject(i);
+                if (root == null) {
+                    throw new IOException("Missing forecast " + i);
+                }
+                ForecastResponse parsed = parseForecast(root);
+                Map<Long, Integer> moonMap = fetchMoonPhases(lats[i], lons[i], parsed.timezone);
+                result.add(new ForecastResponse(parsed.timezone, parsed.hours,
+                        Collections.unmodifiableMap(moonMap)));
+            }
+            return result;
+        } catch (JSONException e) {
+            throw new IOException("Failed to parse forecasts", e);
+        }
+    }
+
     @NonNull
     private ForecastResponse parseForecast(@NonNull String body) throws IOException {
         try {
-            JSONObject root = new JSONObject(body);
+            return parseForecast(new JSONObject(body));
+        } catch (JSONException e) {
+            throw new IOException("Failed to parse forecast", e);
+        }
+    }
+
+    @NonNull
+    private ForecastResponse parseForecast(@NonNull JSONObject root) throws IOException {
+        try {
             String timezoneId = root.optString("timezone", "UTC");
             TimeZone timezone = TimeZone.getTimeZone(timezoneId);
 
@@ -107,7 +200,7 @@ public final class PlacesService {
                     Collections.unmodifiableList(hours),
                     Collections.emptyMap()
             );
-        } catch (ParseException | JSONException | RuntimeException e) {
+        } catch (ParseException | RuntimeException e) {
             throw new IOException("Failed to parse forecast", e);
         }
     }
@@ -0,0 +1,414 @@
+package com.cosmoscout.data.places;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cosmoscout.core.CallHandle;
+import com.cosmoscout.data.weather.Extinction;
+import com.cosmoscout.data.weather.MeteorShowerCalendar;
+import com.cosmoscout.data.weather.SkyBrightness;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Finds the best-scoring spots within a radius, not only among saved places. Cells sit on
+// fixed lattices of 5·2^k km so neighbouring searches reuse the same cached forecasts. The
+// first pass covers the whole circle coarsely; each further pass halves the spacing around
+// the best cells found so far. Grid cells take their light pollution from a lattice twice as
+// coarse as the first pass until they earn an estimate of their own.
+public final class RegionalSearch {
+
+    private static final double KM_PER_DEG = 111.32d;
+    private static final double EARTH_RADIUS_KM = 6371d;
+    private static final double FINEST_SPACING_KM = 5d;
+    // The coarse pass uses the finest lattice that spans the radius in about seven cells.
+    private static final double CELLS_ACROSS_RADIUS = 3.5d;
+    private static final int MAX_REFINEMENTS = 3;
+    private static final int REFINE_PARENTS = 4;
+    private static final int BATCH_SIZE = 25;
+    private static final int CACHE_CAPACITY = 1024;
+    private static final long CELL_TTL_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final String PLACE_KEY_PREFIX = "place:";
+
+    public interface Listener {
+        // Best candidates so far after each pass; passes counts from 1.
+        void onProgress(@NonNull List<Candidate> best, int pass, int passes);
+    }
+
+    public static final class Query {
+        public final double lat;
+        public final double lon;
+        public final double radiusKm;
+        public final long windowStart;
+        public final long windowEnd;
+        public final PlacesScoring.Weights weights;
+        public final double windCap;
+        public final long minSessionMillis;
+        public final int limit;
+
+        public Query(double lat,
+                     double lon,
+                     double radiusKm,
+                     long windowStart,
+                     long windowEnd,
+                     @NonNull PlacesScoring.Weights weights,
+                     double windCap,
+                     long minSessionMillis,
+                     int limit) {
+            this.lat = lat;
+            this.lon = lon;
+            this.radiusKm = radiusKm;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.weights = weights;
+            this.windCap = windCap;
+            this.minSessionMillis = minSessionMillis;
+            this.limit = limit;
+        }
+    }
+
+    public static final class Candidate {
+        public final double lat;
+        public final double lon;
+        public final double distanceKm;
+        @Nullable public final Integer bortle;
+        // Set when the candidate is a saved place rather than a grid cell.
+        @Nullable public final String placeId;
+        public final PlacesScoring.ScoreResult result;
+        final String cellKey;
+
+        Candidate(double lat,
+                  double lon,
+                  double distanceKm,
+                  @Nullable Integer bortle,
+                  @Nullable String placeId,
+                  @NonNull PlacesScoring.ScoreResult result,
+                  @NonNull String cellKey) {
+            this.lat = lat;
+            this.lon = lon;
+            this.distanceKm = distanceKm;
+            this.bortle = bortle;
+            this.placeId = placeId;
+            this.result = result;
+            this.cellKey = cellKey;
+        }
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.result.score, a.result.score);
+        return byScore != 0 ? byScore : Double.compare(a.distanceKm, b.distanceKm);
+    };
+
+    private static final class Cell {
+        final String key;
+        final double spacingKm;
+        final double lat;
+        final double lon;
+        @Nullable PlacesService.ForecastResponse forecast;
+        long fetchedAt;
+        @Nullable Integer bortle;
+        boolean bortleLooked;
+        // Estimate for the surrounding prior cell, used until this cell has its own.
+        @Nullable Integer bortlePrior;
+
+        Cell(@NonNull String key, double spacingKm, double lat, double lon) {
+            this.key = key;
+            this.spacingKm = spacingKm;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    private final PlacesService service;
+    private final BortleEstimator bortleEstimator;
+    private final Map<String, Cell> cells = new LinkedHashMap<String, Cell>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cell> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    public RegionalSearch(@NonNull PlacesService service, @NonNull BortleEstimator bortleEstimator) {
+        this.service = service;
+        this.bortleEstimator = bortleEstimator;
+    }
+
+    // Blocking; run it off the main thread. Saved places inside the radius compete with the
+    // grid using their own Bortle class. A Bortle lookup costs a request, so grid cells are
+    // scored with an estimate per cell of a lattice twice as coarse as the first pass, about
+    // ten lookups per search and shared with later ones; only cells reaching the final list
+    // get their own. Cancelling handle stops the search with an IOException.
+    @NonNull
+    public synchronized List<Candidate> search(@NonNull Query query,
+                                               @NonNull PlaceSpatialIndex savedPlaces,
+                                               @Nullable Listener listener,
+                                               @Nullable CallHandle handle) throws IOException {
+        long now = System.currentTimeMillis();
+        double spacing = FINEST_SPACING_KM;
+        while (query.radiusKm / spacing > CELLS_ACROSS_RADIUS) {
+            spacing *= 2d;
+        }
+        double priorSpacing = spacing * 2d;
+        int passes = 1;
+        for (double s = spacing; s > FINEST_SPACING_KM && passes <= MAX_REFINEMENTS; s /= 2d) {
+            passes++;
+        }
+
+        List<Candidate> scored = new ArrayList<>();
+        // Lattices nest, so a finer pass revisits some coarse points; score each spot once.
+        Set<Long> seen = new HashSet<>();
+        List<Cell> level = coverCircle(query, spacing);
+        for (PlaceSpatialIndex.Neighbor neighbor : savedPlaces.within(query.lat, query.lon, query.radiusKm)) {
+            Place place = neighbor.place;
+            String key = PLACE_KEY_PREFIX + place.getId();
+            Cell cell = cells.get(key);
+            if (cell == null || cell.lat != place.getLat() || cell.lon != place.getLon()) {
+                cell = new Cell(key, 0d, place.getLat(), place.getLon());
+                cells.put(key, cell);
+            }
+            cell.bortle = place.getBortle();
+            cell.bortleLooked = true;
+            level.add(cell);
+        }
+        for (int pass = 1; pass <= passes; pass++) {
+            ensureForecasts(level, now, handle);
+            ensurePriors(level, priorSpacing, handle);
+            List<Candidate> levelScores = new ArrayList<>();
+            for (Cell cell : level) {
+                Candidate candidate = score(query, cell);
+                if (candidate != null && seen.add(positionKey(cell.lat, cell.lon))) {
+                    levelScores.add(candidate);
+                }
+            }
+            scored.addAll(levelScores);
+            Collections.sort(scored, BEST_FIRST);
+            if (listener != null) {
+                listener.onProgress(top(scored, query.limit), pass, passes);
+            }
+            if (pass == passes) {
+                break;
+            }
+            spacing /= 2d;
+            level = refine(query, levelScores, spacing);
+        }
+
+        List<Candidate> best = top(scored, query.limit);
+        List<Candidate> rated = new ArrayList<>(best.size());
+        for (Candidate candidate : best) {
+            Cell cell = cells.get(candidate.cellKey);
+            if (cell != null && !cell.bortleLooked) {
+                checkCancelled(handle);
+                cell.bortleLooked = true;
+                try {
+                    cell.bortle = bortleEstimator.estimateBlocking(cell.lat, cell.lon);
+                } catch (IOException ignored) {
+                    // Keeps the default class; the forecast score still stands.
+                }
+                Candidate rescored = score(query, cell);
+                rated.add(rescored != null ? rescored : candidate);
+            } else {
+                rated.add(candidate);
+            }
+        }
+        Collections.sort(rated, BEST_FIRST);
+        return Collections.unmodifiableList(rated);
+    }
+
+    @NonNull
+    private List<Cell> coverCircle(@NonNull Query query, double spacingKm) {
+        List<Cell> result = new ArrayList<>();
+        double dLat = spacingKm / KM_PER_DEG;
+        int firstRow = (int) Math.floor((query.lat - query.radiusKm / KM_PER_DEG) / dLat);
+        int lastRow = (int) Math.ceil((query.lat + query.radiusKm / KM_PER_DEG) / dLat);
+        for (int row = firstRow; row <= lastRow; row++) {
+            double lat = row * dLat;
+            if (lat < -85d || lat > 85d) {
+                continue;
+            }
+            double dLon = dLon(spacingKm, lat);
+            double lonReach = query.radiusKm / (KM_PER_DEG * Math.cos(Math.toRadians(lat)));
+            int firstCol = (int) Math.floor((query.lon - lonReach) / dLon);
+            int lastCol = (int) Math.ceil((query.lon + lonReach) / dLon);
+            for (int col = firstCol; col <= lastCol; col++) {
+                Cell cell = cellAt(spacingKm, row, col);
+                if (distanceKm(query.lat, query.lon, cell.lat, cell.lon) <= query.radiusKm) {
+                    result.add(cell);
+                }
+            }
+        }
+        return result;
+    }
+
+    // The 3×3 cells of the finer lattice around each of the best cells of the last pass.
+    @NonNull
+    private List<Cell> refine(@NonNull Query query, @NonNull List<Candidate> levelScores, double spacingKm) {
+        List<Candidate> parents = new ArrayList<>(levelScores);
+        Collections.sort(parents, BEST_FIRST);
+        Map<String, Cell> children = new LinkedHashMap<>();
+        int count = 0;
+        for (Candidate parent : parents) {
+            if (count++ >= REFINE_PARENTS) {
+                break;
+            }
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    double lat = parent.lat + dy * spacingKm / KM_PER_DEG;
+                    double lon = parent.lon + dx * dLon(spacingKm, parent.lat);
+                    Cell cell = snap(spacingKm, lat, lon);
+                    if (distanceKm(query.lat, query.lon, cell.lat, cell.lon) <= query.radiusKm) {
+                        children.put(cell.key, cell);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(children.values());
+    }
+
+    private void ensurePriors(@NonNull List<Cell> level,
+                              double priorSpacingKm,
+                              @Nullable CallHandle handle) throws IOException {
+        for (Cell cell : level) {
+            if (cell.bortleLooked) {
+                continue;
+            }
+            Cell prior = snap(priorSpacingKm, cell.lat, cell.lon);
+            if (!prior.bortleLooked) {
+                checkCancelled(handle);
+                prior.bortleLooked = true;
+                try {
+                    prior.bortle = bortleEstimator.estimateBlocking(prior.lat, prior.lon);
+                } catch (IOException ignored) {
+                    // Scored with the default class, like a place without one.
+                }
+            }
+            cell.bortlePrior = prior.bortle;
+        }
+    }
+
+    private static void checkCancelled(@Nullable CallHandle handle) throws IOException {
+        if (handle != null && handle.isCancelled()) {
+            throw new IOException("Search cancelled");
+        }
+    }
+
+    private void ensureForecasts(@NonNull List<Cell> level,
+                                 long now,
+                                 @Nullable CallHandle handle) throws IOException {
+        List<Cell> missing = new ArrayList<>();
+        for (Cell cell : level) {
+            if (cell.forecast == null || now - cell.fetchedAt > CELL_TTL_MS) {
+                missing.add(cell);
+            }
+        }
+        for (int start = 0; start < missing.size(); start += BATCH_SIZE) {
+            checkCancelled(handle);
+            int count = Math.min(BATCH_SIZE, missing.size() - start);
+            double[] lats = new double[count];
+            double[] lons = new double[count];
+            for (int i = 0; i < count; i++) {
+                lats[i] = missing.get(start + i).lat;
+                lons[i] = missing.get(start + i).lon;
+            }
+            List<PlacesService.ForecastResponse> forecasts = service.fetchForecasts(lats, lons, count, handle);
+            long fetchedAt = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                Cell cell = missing.get(start + i);
+                cell.forecast = forecasts.get(i);
+                cell.fetchedAt = fetchedAt;
+            }
+        }
+    }
+
+    @Nullable
+    private Candidate score(@NonNull Query query, @NonNull Cell cell) {
+        PlacesService.ForecastResponse forecast = cell.forecast;
+        if (forecast == null) {
+            return null;
+        }
+        List<PlacesService.ForecastHour> hours = new ArrayList<>();
+        for (PlacesService.ForecastHour hour : forecast.hours) {
+            if (hour.timeMillis >= query.windowStart && hour.timeMillis < query.windowEnd) {
+                hours.add(hour);
+            }
+        }
+        if (hours.isEmpty()) {
+            return null;
+        }
+        Integer bortle = cell.bortleLooked ? cell.bortle : cell.bortlePrior;
+        double[] sqm = new double[hours.size()];
+        double[] meteorRates = new double[hours.size()];
+        for (int i = 0; i < sqm.length; i++) {
+            PlacesService.ForecastHour hour = hours.get(i);
+            sqm[i] = SkyBrightness.estimate(cell.lat, cell.lon, hour.timeMillis, bortle,
+                    Extinction.REFERENCE_COEFFICIENT);
+            int moonPct = Math.max(0, Math.min(100, forecast.moonPctByDay.getOrDefault(hour.dayKey, 0)));
+            meteorRates[i] = MeteorShowerCalendar.hourlyRate(cell.lat, cell.lon, hour.timeMillis,
+                    forecast.timezone, bortle, moonPct);
+        }
+        PlacesScoring.ScoreResult result = PlacesScoring.findBestWindow(hours, forecast.moonPctByDay, sqm,
+                meteorRates, query.weights, query.windCap, query.minSessionMillis);
+        if (result == null) {
+            return null;
+        }
+        String placeId = cell.key.startsWith(PLACE_KEY_PREFIX)
+                ? cell.key.substring(PLACE_KEY_PREFIX.length())
+                : null;
+        return new Candidate(cell.lat, cell.lon, distanceKm(query.lat, query.lon, cell.lat, cell.lon),
+                bortle, placeId, result, cell.key);
+    }
+
+    @NonNull
+    private Cell snap(double spacingKm, double lat, double lon) {
+        int row = (int) Math.round(lat / (spacingKm / KM_PER_DEG));
+        double rowLat = row * spacingKm / KM_PER_DEG;
+        int col = (int) Math.round(lon / dLon(spacingKm, rowLat));
+        return cellAt(spacingKm, row, col);
+    }
+
+    @NonNull
+    private Cell cellAt(double spacingKm, int row, int col) {
+        String key = spacingKm + ":" + row + ":" + col;
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            double lat = row * spacingKm / KM_PER_DEG;
+            cell = new Cell(key, spacingKm, lat, normalizeLon(col * dLon(spacingKm, lat)));
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    @NonNull
+    private static List<Candidate> top(@NonNull List<Candidate> sorted, int limit) {
+        return new ArrayList<>(sorted.subList(0, Math.min(limit, sorted.size())));
+    }
+
+    private static long positionKey(double lat, double lon) {
+        return Math.round(lat * 1e4d) * 3_600_001L + Math.round(lon * 1e4d);
+    }
+
+    private static double dLon(double spacingKm, double lat) {
+        return spacingKm / (KM_PER_DEG * Math.max(0.01d, Math.cos(Math.toRadians(lat))));
+    }
+
+    private static double normalizeLon(double lon) {
+        double wrapped = ((lon + 180d) % 360d + 360d) % 360d - 180d;
+        return wrapped == -180d ? 180d : wrapped;
+    }
+
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2d) * Math.sin(dLat / 2d)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2d) * Math.sin(dLon / 2d);
+        return 2d * EARTH_RADIUS_KM * Math.asin(Math.min(1d, Math.sqrt(a)));
+    }
+}
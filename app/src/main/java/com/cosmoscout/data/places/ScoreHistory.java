@@ -0,0 +1,444 @@
+package com.cosmoscout.data.places;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Score history per place on disk. Every fetch is appended to <id>.log; compaction rolls
+// older points up into hourly, daily and weekly averages in <id>.bin, so a place never holds
+// more than a few thousand records whatever its age. The whole directory is kept under a byte
+// budget by dropping the histories that were written longest ago.
+public final class ScoreHistory {
+
+    private static final int MAGIC = 0x53484931;
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 13;
+    private static final int MAX_RAW_RECORDS = 256;
+    private static final int CACHE_CAPACITY = 64;
+
+    private static final int RAW = 0;
+    private static final int HOURLY = 1;
+    private static final int DAILY = 2;
+    private static final int WEEKLY = 3;
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK_MS = TimeUnit.DAYS.toMillis(7);
+
+    // How long each tier keeps its own resolution before rolling up into the next one.
+    private static final long RAW_KEEP_MS = TimeUnit.HOURS.toMillis(48);
+    private static final long HOURLY_KEEP_MS = TimeUnit.DAYS.toMillis(14);
+    private static final long DAILY_KEEP_MS = TimeUnit.DAYS.toMillis(366);
+    private static final long WEEKLY_KEEP_MS = TimeUnit.DAYS.toMillis(5 * 365);
+    // Raw points may overstay this long, so compaction runs about once a day rather than on
+    // every append.
+    private static final long COMPACT_SLACK_MS = TimeUnit.HOURS.toMillis(24);
+
+    private final File dir;
+    private final long budgetBytes;
+    private final Map<String, Series> cache = new LinkedHashMap<String, Series>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Series> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    public ScoreHistory(@NonNull File dir, long budgetBytes) {
+        this.dir = dir;
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Points in time order, oldest and coarsest first. Each point carries how many raw
+    // samples it averages.
+    public static final class Series {
+        public final long[] times;
+        public final byte[] scores;
+        public final byte[] clearPcts;
+        public final byte[] moonPcts;
+        public final short[] counts;
+        public final int size;
+
+        Series(@NonNull long[] times,
+               @NonNull byte[] scores,
+               @NonNull byte[] clearPcts,
+               @NonNull byte[] moonPcts,
+               @NonNull short[] counts,
+               int size) {
+            this.times = times;
+            this.scores = scores;
+            this.clearPcts = clearPcts;
+            this.moonPcts = moonPcts;
+            this.counts = counts;
+            this.size = size;
+        }
+
+        // Index of the first point at or after timeMillis.
+        public int lowerBound(long timeMillis) {
+            int index = Arrays.binarySearch(times, 0, size, timeMillis);
+            if (index < 0) {
+                return -index - 1;
+            }
+            while (index > 0 && times[index - 1] == timeMillis) {
+                index--;
+            }
+            return index;
+        }
+    }
+
+    public synchronized void append(@NonNull String placeId,
+                                    long timeMillis,
+                                    int score,
+                                    int clearPct,
+                                    int moonPct) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create history directory");
+        }
+        File log = logFile(placeId);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(log, true)))) {
+            writeRecord(out, timeMillis, score, clearPct, moonPct, 1);
+        }
+        cache.remove(placeId);
+        if (log.length() >= (long) MAX_RAW_RECORDS * RECORD_BYTES
+                || timeMillis - oldestLogTime(log) > RAW_KEEP_MS + COMPACT_SLACK_MS) {
+            compact(placeId, timeMillis);
+            enforceBudget();
+        }
+    }
+
+    private static long oldestLogTime(@NonNull File log) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(log))) {
+            return in.readLong();
+        } catch (EOFException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @NonNull
+    public synchronized Series query(@NonNull String placeId) throws IOException {
+        Series series = cache.get(placeId);
+        if (series == null) {
+            List<Record> records = readTiers(placeId);
+            records.addAll(readLog(placeId));
+            series = toSeries(records);
+            cache.put(placeId, series);
+        }
+        return series;
+    }
+
+    // Average score per day for the `days` days ending with the one containing nowMillis,
+    // oldest first; -1 where nothing was recorded.
+    @NonNull
+    public int[] dailyScores(@NonNull String placeId, int days, long nowMillis) throws IOException {
+        Series series = query(placeId);
+        long firstDay = Math.floorDiv(nowMillis, DAY_MS) * DAY_MS - (days - 1) * DAY_MS;
+        double[] sums = new double[days];
+        int[] weights = new int[days];
+        for (int i = series.lowerBound(firstDay); i < series.size; i++) {
+            int day = (int) Math.floorDiv(series.times[i] - firstDay, DAY_MS);
+            if (day >= days) {
+                break;
+            }
+            sums[day] += series.scores[i] * series.counts[i];
+            weights[day] += series.counts[i];
+        }
+        int[] result = new int[days];
+        for (int d = 0; d < days; d++) {
+            result[d] = weights[d] == 0 ? -1 : (int) Math.round(sums[d] / weights[d]);
+        }
+        return result;
+    }
+
+    public synchronized void delete(@NonNull String placeId) {
+        cache.remove(placeId);
+        logFile(placeId).delete();
+        tierFile(placeId).delete();
+    }
+
+    // Moves expired points one tier down, merges them into that tier's buckets and rewrites
+    // both files. Weekly points past their age are dropped.
+    synchronized void compact(@NonNull String placeId, long nowMillis) throws IOException {
+        List<Record> raw = readLog(placeId);
+        List<Record> tiers = readTiers(placeId);
+        List<Record> hourly = new ArrayList<>();
+        List<Record> daily = new ArrayList<>();
+        List<Record> weekly = new ArrayList<>();
+        for (Record record : tiers) {
+            if (record.tier == HOURLY) {
+                hourly.add(record);
+            } else if (record.tier == DAILY) {
+                daily.add(record);
+            } else {
+                weekly.add(record);
+            }
+        }
+        List<Record> keptRaw = new ArrayList<>();
+        raw.sort((a, b) -> Long.compare(a.time, b.time));
+        int firstKept = Math.max(0, raw.size() - MAX_RAW_RECORDS / 2);
+        for (int i = 0; i < raw.size(); i++) {
+            Record record = raw.get(i);
+            if (i < firstKept || nowMillis - record.time > RAW_KEEP_MS) {
+                hourly.add(record);
+            } else {
+                keptRaw.add(record);
+            }
+        }
+        hourly = rollUp(hourly, HOURLY, HOUR_MS, nowMillis, HOURLY_KEEP_MS, daily);
+        daily = rollUp(daily, DAILY, DAY_MS, nowMillis, DAILY_KEEP_MS, weekly);
+        List<Record> dropped = new ArrayList<>();
+        weekly = rollUp(weekly, WEEKLY, WEEK_MS, nowMillis, WEEKLY_KEEP_MS, dropped);
+
+        List<Record> nextTiers = new ArrayList<>(weekly.size() + daily.size() + hourly.size());
+        nextTiers.addAll(weekly);
+        nextTiers.addAll(daily);
+        nextTiers.addAll(hourly);
+        writeTiers(placeId, nextTiers);
+        writeLog(placeId, keptRaw);
+        cache.remove(placeId);
+    }
+
+    private void enforceBudget() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0L;
+        Map<String, long[]> byPlace = new LinkedHashMap<>();
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            if (dot <= 0) {
+                continue;
+            }
+            long[] usage = byPlace.get(name.substring(0, dot));
+            if (usage == null) {
+                usage = new long[2];
+                byPlace.put(name.substring(0, dot), usage);
+            }
+            usage[0] += file.length();
+            usage[1] = Math.max(usage[1], file.lastModified());
+            total += file.length();
+        }
+        if (total <= budgetBytes) {
+            return;
+        }
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(byPlace.entrySet());
+        entries.sort((a, b) -> Long.compare(a.getValue()[1], b.getValue()[1]));
+        for (Map.Entry<String, long[]> entry : entries) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            new File(dir, entry.getKey() + ".log").delete();
+            new File(dir, entry.getKey() + ".bin").delete();
+            total -= entry.getValue()[0];
+        }
+        cache.clear();
+    }
+
+    private static final class Record {
+        final int tier;
+        final long time;
+        final int score;
+        final int clearPct;
+        final int moonPct;
+        final int count;
+
+        Record(int tier, long time, int score, int clearPct, int moonPct, int count) {
+            this.tier = tier;
+            this.time = time;
+            this.score = score;
+            this.clearPct = clearPct;
+            this.moonPct = moonPct;
+            this.count = count;
+        }
+    }
+
+    // Averages records into buckets of bucketMs, weighted by their sample counts. Buckets
+    // older than keepMs go to `older` for the next tier; the rest are returned sorted.
+    @NonNull
+    private static List<Record> rollUp(@NonNull List<Record> records,
+                                       int tier,
+                                       long bucketMs,
+                                       long nowMillis,
+                                       long keepMs,
+                                       @NonNull List<Record> older) {
+        records.sort((a, b) -> Long.compare(a.time, b.time));
+        List<Record> kept = new ArrayList<>();
+        int i = 0;
+        while (i < records.size()) {
+            long bucket = Math.floorDiv(records.get(i).time, bucketMs) * bucketMs;
+            long scoreSum = 0L;
+            long clearSum = 0L;
+            long moonSum = 0L;
+            int count = 0;
+            while (i < records.size() && records.get(i).time < bucket + bucketMs) {
+                Record record = records.get(i++);
+                scoreSum += (long) record.score * record.count;
+                clearSum += (long) record.clearPct * record.count;
+                moonSum += (long) record.moonPct * record.count;
+                count += record.count;
+            }
+            Record merged = new Record(tier, bucket,
+                    Math.round(scoreSum / (float) count),
+                    Math.round(clearSum / (float) count),
+                    Math.round(moonSum / (float) count),
+                    Math.min(Short.MAX_VALUE, count));
+            if (nowMillis - bucket > keepMs) {
+                older.add(merged);
+            } else {
+                kept.add(merged);
+            }
+        }
+        return kept;
+    }
+
+    @NonNull
+    private static Series toSeries(@NonNull List<Record> records) {
+        records.sort((a, b) -> Long.compare(a.time, b.time));
+        int size = records.size();
+        long[] times = new long[size];
+        byte[] scores = new byte[size];
+        byte[] clearPcts = new byte[size];
+        byte[] moonPcts = new byte[size];
+        short[] counts = new short[size];
+        for (int i = 0; i < size; i++) {
+            Record record = records.get(i);
+            times[i] = record.time;
+            scores[i] = (byte) record.score;
+            clearPcts[i] = (byte) record.clearPct;
+            moonPcts[i] = (byte) record.moonPct;
+            counts[i] = (short) record.count;
+        }
+        return new Series(times, scores, clearPcts, moonPcts, counts, size);
+    }
+
+    @NonNull
+    private List<Record> readLog(@NonNull String placeId) throws IOException {
+        File file = logFile(placeId);
+        List<Record> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        // A crash mid-append leaves a short tail record, which is ignored.
+        long complete = file.length() / RECORD_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            for (long i = 0; i < complete; i++) {
+                records.add(readRecord(in, RAW));
+            }
+        }
+        return records;
+    }
+
+    @NonNull
+    private List<Record> readTiers(@NonNull String placeId) throws IOException {
+        File file = tierFile(placeId);
+        List<Record> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown history format");
+            }
+            int count = in.readInt();
+            if (count < 0 || (long) count * (RECORD_BYTES + 1) > file.length()) {
+                throw new IOException("Corrupt history file");
+            }
+            for (int i = 0; i < count; i++) {
+                int tier = in.readByte();
+                records.add(readRecord(in, tier));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated history file", e);
+        }
+        return records;
+    }
+
+    private void writeTiers(@NonNull String placeId, @NonNull List<Record> records) throws IOException {
+        File file = tierFile(placeId);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            for (Record record : records) {
+                out.writeByte(record.tier);
+                writeRecord(out, record.time, record.score, record.clearPct, record.moonPct, record.count);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to store score history");
+        }
+    }
+
+    private void writeLog(@NonNull String placeId, @NonNull List<Record> records) throws IOException {
+        File file = logFile(placeId);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            for (Record record : records) {
+                writeRecord(out, record.time, record.score, record.clearPct, record.moonPct, record.count);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to store score history");
+        }
+    }
+
+    private static void writeRecord(@NonNull DataOutputStream out,
+                                    long time,
+                                    int score,
+                                    int clearPct,
+                                    int moonPct,
+                                    int count) throws IOException {
+        out.writeLong(time);
+        out.writeByte(clamp(score));
+        out.writeByte(clamp(clearPct));
+        out.writeByte(clamp(moonPct));
+        out.writeShort(count);
+    }
+
+    @NonNull
+    private static Record readRecord(@NonNull DataInputStream in, int tier) throws IOException {
+        long time = in.readLong();
+        int score = in.readByte();
+        int clearPct = in.readByte();
+        int moonPct = in.readByte();
+        int count = Math.max(1, in.readShort());
+        return new Record(tier, time, score, clearPct, moonPct, count);
+    }
+
+    private static int clamp(int percent) {
+        return Math.max(0, Math.min(100, percent));
+    }
+
+    @NonNull
+    private File logFile(@NonNull String placeId) {
+        return new File(dir, safeName(placeId) + ".log");
+    }
+
+    @NonNull
+    private File tierFile(@NonNull String placeId) {
+        return new File(dir, safeName(placeId) + ".bin");
+    }
+
+    @NonNull
+    private static String safeName(@NonNull String placeId) {
+        return placeId.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
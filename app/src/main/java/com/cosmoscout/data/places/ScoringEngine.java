@@ -0,0 +1,118 @@
+package com.cosmoscout.data.places;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+// One scoring formula for every screen. Tonight, Home and Places only differ in the Profile
+// they pass, and a whole forecast series is scored into a caller-owned float[] so scoring
+// many places allocates nothing per hour.
+public final class ScoringEngine {
+
+    private static final double VISIBILITY_FULL_KM = 40d;
+    private static final double METEOR_BONUS_MAX = 10d;
+
+    private ScoringEngine() {
+    }
+
+    public static final class Profile {
+        public final double clear;
+        public final double visibility;
+        public final double dark;
+        public final double wind;
+        public final double windCap;
+        public final double precipThreshold;
+        public final double dryScore;
+        public final double wetScore;
+        public final double meteor;
+        public final boolean clamp;
+
+        public Profile(double clear,
+                       double visibility,
+                       double dark,
+                       double wind,
+                       double windCap,
+                       double precipThreshold,
+                       double dryScore,
+                       double wetScore,
+                       double meteor,
+                       boolean clamp) {
+            this.clear = clear;
+            this.visibility = visibility;
+            this.dark = dark;
+            this.wind = wind;
+            this.windCap = windCap;
+            this.precipThreshold = precipThreshold;
+            this.dryScore = dryScore;
+            this.wetScore = wetScore;
+            this.meteor = meteor;
+            this.clamp = clamp;
+        }
+
+        // The Tonight and Home forecast: mostly clear sky, a little visibility and darkness,
+        // minus 2 points per m/s of wind up to 20 m/s and 25 points for any real rain.
+        @NonNull
+        public static Profile tonight() {
+            return new Profile(0.6d, 0.15d, 0.15d, 2d, 20d, 0.05d, -40d, -65d, 1d, true);
+        }
+
+        // Places ranking with the user's weights from the night settings; meteors get the same
+        // bonus as on the Tonight list.
+        @NonNull
+        public static Profile places(@NonNull PlacesScoring.Weights weights, double windCapMetersPerSecond) {
+            return new Profile(weights.cloud, 0d, weights.moon, weights.wind, windCapMetersPerSecond,
+                    0d, weights.precip * 20d, weights.precip * -100d, 1d, false);
+        }
+    }
+
+    public static double score(double clearPct,
+                               double visibilityKm,
+                               int darkPct,
+                               double windSpeed,
+                               double precipitation,
+                               double meteorRate,
+                               @NonNull Profile profile) {
+        double visibilityPct = Double.isNaN(visibilityKm)
+                ? 0d
+                : Math.min(1d, visibilityKm / VISIBILITY_FULL_KM) * 100d;
+        double score = profile.clear * clearPct
+                + profile.visibility * visibilityPct
+                + profile.dark * darkPct
+                + profile.wind * Math.max(0d, profile.windCap - windSpeed)
+                + (precipitation > profile.precipThreshold ? profile.wetScore : profile.dryScore);
+        // An active shower is only worth something if the sky is clear enough to see it.
+        score += profile.meteor * Math.min(METEOR_BONUS_MAX, meteorRate * 0.1d) * clearPct / 100d;
+        return profile.clamp ? Math.max(0d, Math.min(100d, score)) : score;
+    }
+
+    // Scores hours[from, from + count) into out[0, count). Darkness comes from sqmByPoint where
+    // it is known and from the daily moon illumination otherwise; both optional arrays are
+    // indexed like hours. The moon map is only consulted when the day changes.
+    public static void scoreSeries(@NonNull List<PlacesService.ForecastHour> hours,
+                                   int from,
+                                   int count,
+                                   @NonNull Map<Long, Integer> moonPctByDay,
+                                   @Nullable double[] sqmByPoint,
+                                   @Nullable double[] meteorRates,
+                                   @NonNull Profile profile,
+                                   @NonNull float[] out) {
+        long day = Long.MIN_VALUE;
+        int moonPct = 0;
+        for (int i = 0; i < count; i++) {
+            PlacesService.ForecastHour hour = hours.get(from + i);
+            if (hour.dayKey != day) {
+                day = hour.dayKey;
+                Integer pct = moonPctByDay.get(day);
+                moonPct = pct == null ? 0 : Math.max(0, Math.min(100, pct));
+            }
+            double sqm = sqmByPoint != null ? sqmByPoint[from + i] : Double.NaN;
+            int darkPct = Double.isNaN(sqm) ? 100 - moonPct : PlacesScoring.darknessPercent(sqm);
+            double clearPct = Math.max(0d, Math.min(100d, 100d - hour.cloudCover));
+            double meteorRate = meteorRates != null ? meteorRates[from + i] : 0d;
+            out[i] = (float) score(clearPct, hour.visibilityKm, darkPct, hour.windSpeed,
+                    hour.precipitation, meteorRate, profile);
+        }
+    }
+}
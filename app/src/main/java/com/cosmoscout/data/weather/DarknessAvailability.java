@@ -0,0 +1,232 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.NonNull;
+
+import com.cosmoscout.data.places.PlacesScoring;
+import com.cosmoscout.data.places.PlacesService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One bit per hour for a year ahead at one place: sun below -18°, moon below the horizon,
+// and forecast clear where a forecast exists. Questions like "next moonless dark night"
+// become bitwise ANDs plus nextSetBit instead of astronomy.
+public final class DarknessAvailability {
+
+    public static final int HOURS = 366 * 24;
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(7);
+    private static final double ASTRONOMICAL_NIGHT_DEG = -18d;
+    private static final double COORDINATE_TOLERANCE_DEG = 0.01d;
+    private static final int MAGIC = 0x44524b31;
+    private static final int VERSION = 1;
+
+    public final long startMillis;
+    public final double lat;
+    public final double lon;
+    private final BitSet sunDown;
+    private final BitSet moonDown;
+    private final BitSet clear;
+    private final int forecastEnd;
+
+    private DarknessAvailability(long startMillis,
+                                 double lat,
+                                 double lon,
+                                 @NonNull BitSet sunDown,
+                                 @NonNull BitSet moonDown,
+                                 @NonNull BitSet clear,
+                                 int forecastEnd) {
+        this.startMillis = startMillis;
+        this.lat = lat;
+        this.lon = lon;
+        this.sunDown = sunDown;
+        this.moonDown = moonDown;
+        this.clear = clear;
+        this.forecastEnd = forecastEnd;
+    }
+
+    // Sun and Moon coordinates for every hour of the year, shared by all places generated
+    // from the same start so each place only pays for two altitude evaluations per hour.
+    public static final class Ephemerides {
+        final long startMillis;
+        final double[] gmst = new double[HOURS];
+        final double[] sunRa = new double[HOURS];
+        final double[] sunDec = new double[HOURS];
+        final double[] moonRa = new double[HOURS];
+        final double[] moonDec = new double[HOURS];
+
+        Ephemerides(long startMillis) {
+            this.startMillis = startMillis;
+            for (int h = 0; h < HOURS; h++) {
+                long time = startMillis + h * HOUR_MS;
+                gmst[h] = TonightSkyService.localSiderealDegrees(0d, time);
+                double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, time);
+                double[] moon = Ephemeris.equatorialPosition(Ephemeris.MOON, time);
+                sunRa[h] = sun[0];
+                sunDec[h] = sun[1];
+                moonRa[h] = moon[0];
+                moonDec[h] = moon[1];
+            }
+        }
+    }
+
+    @NonNull
+    public static Ephemerides prepare(long nowMillis) {
+        return new Ephemerides(Math.floorDiv(nowMillis, DAY_MS) * DAY_MS);
+    }
+
+    @NonNull
+    public static DarknessAvailability compute(double lat, double lon, @NonNull Ephemerides table) {
+        BitSet sunDown = new BitSet(HOURS);
+        BitSet moonDown = new BitSet(HOURS);
+        double sinLat = Math.sin(Math.toRadians(lat));
+        double cosLat = Math.cos(Math.toRadians(lat));
+        for (int h = 0; h < HOURS; h++) {
+            double lst = table.gmst[h] + lon;
+            if (altitude(sinLat, cosLat, lst, table.sunRa[h], table.sunDec[h]) < ASTRONOMICAL_NIGHT_DEG) {
+                sunDown.set(h);
+            }
+            if (altitude(sinLat, cosLat, lst, table.moonRa[h], table.moonDec[h]) < 0d) {
+                moonDown.set(h);
+            }
+        }
+        return new DarknessAvailability(table.startMillis, lat, lon, sunDown, moonDown, new BitSet(HOURS), 0);
+    }
+
+    // Returns a copy whose clear bits reflect the forecast; hours past the forecast stay unknown.
+    @NonNull
+    public DarknessAvailability withForecast(@NonNull List<PlacesService.ForecastHour> hours,
+                                             double maxCloudPct) {
+        BitSet nextClear = new BitSet(HOURS);
+        int end = 0;
+        for (PlacesService.ForecastHour hour : hours) {
+            int index = indexOf(hour.timeMillis);
+            if (index < 0 || index >= HOURS) {
+                continue;
+            }
+            end = Math.max(end, index + 1);
+            if (hour.cloudCover <= maxCloudPct && hour.precipitation <= 0d) {
+                nextClear.set(index);
+            }
+        }
+        return new DarknessAvailability(startMillis, lat, lon, sunDown, moonDown, nextClear, end);
+    }
+
+    public boolean isUsable(double placeLat, double placeLon, long nowMillis) {
+        return Math.abs(placeLat - lat) <= COORDINATE_TOLERANCE_DEG
+                && Math.abs(placeLon - lon) <= COORDINATE_TOLERANCE_DEG
+                && nowMillis >= startMillis
+                && nowMillis - startMillis <= MAX_AGE_MS;
+    }
+
+    // Start of the first run of at least minHours dark, moonless hours at or after fromMillis,
+    // or -1 if the year holds none. With requireClear, forecast hours must also be clear.
+    public long nextDarkWindow(long fromMillis, int minHours, boolean requireClear) {
+        int from = Math.max(0, indexOf(fromMillis));
+        int start = PlacesScoring.firstRun(darkMask(requireClear), from, Math.max(1, minHours));
+        return start < 0 ? -1L : startMillis + start * HOUR_MS;
+    }
+
+    public int countDarkHours(long fromMillis, long toMillis, boolean requireClear) {
+        int from = Math.max(0, indexOf(fromMillis));
+        int to = Math.min(HOURS, indexOf(toMillis));
+        if (to <= from) {
+            return 0;
+        }
+        return darkMask(requireClear).get(from, to).cardinality();
+    }
+
+    @NonNull
+    private BitSet darkMask(boolean requireClear) {
+        BitSet mask = (BitSet) sunDown.clone();
+        mask.and(moonDown);
+        if (requireClear) {
+            BitSet clearOrUnknown = (BitSet) clear.clone();
+            clearOrUnknown.set(forecastEnd, HOURS);
+            mask.and(clearOrUnknown);
+        }
+        return mask;
+    }
+
+    private int indexOf(long timeMillis) {
+        return (int) Math.floorDiv(timeMillis - startMillis, HOUR_MS);
+    }
+
+    private static double altitude(double sinLat, double cosLat, double lstDeg, double raDeg, double decDeg) {
+        double dec = Math.toRadians(decDeg);
+        double sinAlt = Math.sin(dec) * sinLat
+                + Math.cos(dec) * cosLat * Math.cos(Math.toRadians(lstDeg - raDeg));
+        return Math.toDegrees(Math.asin(Math.max(-1d, Math.min(1d, sinAlt))));
+    }
+
+    public void writeTo(@NonNull File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(startMillis);
+            out.writeDouble(lat);
+            out.writeDouble(lon);
+            out.writeInt(forecastEnd);
+            writeBits(out, sunDown);
+            writeBits(out, moonDown);
+            writeBits(out, clear);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to store darkness bitsets");
+        }
+    }
+
+    @NonNull
+    public static DarknessAvailability readFrom(@NonNull File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown darkness format");
+            }
+            long start = in.readLong();
+            double lat = in.readDouble();
+            double lon = in.readDouble();
+            int forecastEnd = in.readInt();
+            if (forecastEnd < 0 || forecastEnd > HOURS) {
+                throw new IOException("Corrupt darkness file");
+            }
+            BitSet sunDown = readBits(in);
+            BitSet moonDown = readBits(in);
+            BitSet clear = readBits(in);
+            return new DarknessAvailability(start, lat, lon, sunDown, moonDown, clear, forecastEnd);
+        }
+    }
+
+    private static void writeBits(@NonNull DataOutputStream out, @NonNull BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    @NonNull
+    private static BitSet readBits(@NonNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > (HOURS + 63) / 64) {
+            throw new IOException("Corrupt darkness file");
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
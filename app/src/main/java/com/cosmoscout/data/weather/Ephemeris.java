@@ -0,0 +1,176 @@
+package com.cosmoscout.data.weather;
+
+public final class Ephemeris {
+
+    public static final int SUN = 0;
+    public static final int MOON = 1;
+    public static final int MERCURY = 2;
+    public static final int VENUS = 3;
+    public static final int MARS = 4;
+    public static final int JUPITER = 5;
+    public static final int SATURN = 6;
+
+    // General precession in longitude per Julian century, used to bring the
+    // equinox-of-date Sun and Moon onto the J2000 frame of the planet elements.
+    private static final double PRECESSION_DEG_PER_CENTURY = 1.396971d;
+    private static final double OBLIQUITY_J2000_DEG = 23.4392911d;
+
+    // JPL approximate Keplerian elements (1800-2050): a, e, I, L, long. perihelion, long. node
+    // followed by their rates per Julian century.
+    private static final double[][] ELEMENTS = {
+            {0.38709927d, 0.20563593d, 7.00497902d, 252.25032350d, 77.45779628d, 48.33076593d,
+                    0.00000037d, 0.00001906d, -0.00594749d, 149472.67411175d, 0.16047689d, -0.12534081d},
+            {0.72333566d, 0.00677672d, 3.39467605d, 181.97909950d, 131.60246718d, 76.67984255d,
+                    0.00000390d, -0.00004107d, -0.00078890d, 58517.81538729d, 0.00268329d, -0.27769418d},
+            {1.00000261d, 0.01671123d, -0.00001531d, 100.46457166d, 102.93768193d, 0d,
+                    0.00000562d, -0.00004392d, -0.01294668d, 35999.37244981d, 0.32327364d, 0d},
+            {1.52371034d, 0.09339410d, 1.84969142d, -4.55343205d, -23.94362959d, 49.55953891d,
+                    0.00001847d, 0.00007882d, -0.00813131d, 19140.30268499d, 0.44441088d, -0.29257343d},
+            {5.20288700d, 0.04838624d, 1.30439695d, 34.39644051d, 14.72847983d, 100.47390909d,
+                    -0.00011607d, -0.00013253d, -0.00183714d, 3034.74612775d, 0.21252668d, 0.20469106d},
+            {9.53667594d, 0.05386179d, 2.48599187d, 49.95424423d, 92.59887831d, 113.66242448d,
+                    -0.00125060d, -0.00050991d, 0.00193609d, 1222.49362201d, -0.41897216d, -0.28867794d}
+    };
+    private static final int EARTH_ELEMENTS = 2;
+
+    private Ephemeris() {
+    }
+
+    public static double julianCenturies(long timeMillis) {
+        double jd = timeMillis / 86_400_000d + 2440587.5d;
+        return (jd - 2451545.0d) / 36525d;
+    }
+
+    // Geocentric ecliptic {longitude, latitude} in degrees, J2000 frame.
+    public static double[] eclipticPosition(int body, long timeMillis) {
+        double t = julianCenturies(timeMillis);
+        switch (body) {
+            case SUN:
+                return new double[]{normalize(sunLongitude(t) - PRECESSION_DEG_PER_CENTURY * t), 0d};
+            case MOON:
+                double[] moon = moonPosition(t);
+                moon[0] = normalize(moon[0] - PRECESSION_DEG_PER_CENTURY * t);
+                return moon;
+            default:
+                return planetPosition(body, t);
+        }
+    }
+
+    // Geocentric {right ascension, declination} in degrees, J2000 frame.
+    public static double[] equatorialPosition(int body, long timeMillis) {
+        double[] ecliptic = eclipticPosition(body, timeMillis);
+        return eclipticToEquatorial(ecliptic[0], ecliptic[1]);
+    }
+
+    public static double[] eclipticToEquatorial(double lonDeg, double latDeg) {
+        double eps = Math.toRadians(OBLIQUITY_J2000_DEG);
+        double lon = Math.toRadians(lonDeg);
+        double lat = Math.toRadians(latDeg);
+        double ra = Math.atan2(Math.sin(lon) * Math.cos(eps) - Math.tan(lat) * Math.sin(eps), Math.cos(lon));
+        double dec = Math.asin(Math.sin(lat) * Math.cos(eps) + Math.cos(lat) * Math.sin(eps) * Math.sin(lon));
+        return new double[]{normalize(Math.toDegrees(ra)), Math.toDegrees(dec)};
+    }
+
+    public static double separation(double lon1, double lat1, double lon2, double lat2) {
+        double b1 = Math.toRadians(lat1);
+        double b2 = Math.toRadians(lat2);
+        double dl = Math.toRadians(lon1 - lon2);
+        double cos = Math.sin(b1) * Math.sin(b2) + Math.cos(b1) * Math.cos(b2) * Math.cos(dl);
+        return Math.toDegrees(Math.acos(Math.max(-1d, Math.min(1d, cos))));
+    }
+
+    public static double normalize(double degrees) {
+        double result = degrees % 360d;
+        return result < 0d ? result + 360d : result;
+    }
+
+    private static double sunLongitude(double t) {
+        double l0 = 280.46646d + 36000.76983d * t;
+        double m = Math.toRadians(357.52911d + 35999.05029d * t);
+        double c = (1.914602d - 0.004817d * t) * Math.sin(m)
+                + (0.019993d - 0.000101d * t) * Math.sin(2d * m)
+                + 0.000289d * Math.sin(3d * m);
+        return normalize(l0 + c);
+    }
+
+    // Truncated Meeus lunar theory; good to roughly a tenth of a degree.
+    private static double[] moonPosition(double t) {
+        double lp = 218.3164477d + 481267.88123421d * t;
+        double d = Math.toRadians(297.8501921d + 445267.1114034d * t);
+        double m = Math.toRadians(357.5291092d + 35999.0502909d * t);
+        double mp = Math.toRadians(134.9633964d + 477198.8675055d * t);
+        double f = Math.toRadians(93.2720950d + 483202.0175233d * t);
+
+        double lon = lp
+                + 6.288774d * Math.sin(mp)
+                + 1.274027d * Math.sin(2d * d - mp)
+                + 0.658314d * Math.sin(2d * d)
+                + 0.213618d * Math.sin(2d * mp)
+                - 0.185116d * Math.sin(m)
+                - 0.114332d * Math.sin(2d * f)
+                + 0.058793d * Math.sin(2d * d - 2d * mp)
+                + 0.057066d * Math.sin(2d * d - m - mp)
+                + 0.053322d * Math.sin(2d * d + mp)
+                + 0.045758d * Math.sin(2d * d - m)
+                - 0.040923d * Math.sin(m - mp)
+                - 0.034720d * Math.sin(d)
+                - 0.030383d * Math.sin(m + mp);
+        double lat = 5.128122d * Math.sin(f)
+                + 0.280602d * Math.sin(mp + f)
+                + 0.277693d * Math.sin(mp - f)
+                + 0.173237d * Math.sin(2d * d - f)
+                + 0.055413d * Math.sin(2d * d - mp + f)
+                + 0.046271d * Math.sin(2d * d - mp - f)
+                + 0.032573d * Math.sin(2d * d + f)
+                + 0.017198d * Math.sin(2d * mp + f);
+        return new double[]{normalize(lon), lat};
+    }
+
+    private static double[] planetPosition(int body, double t) {
+        double[] planet = heliocentric(body - MERCURY < EARTH_ELEMENTS
+                ? body - MERCURY : body - MERCURY + 1, t);
+        double[] earth = heliocentric(EARTH_ELEMENTS, t);
+        double x = planet[0] - earth[0];
+        double y = planet[1] - earth[1];
+        double z = planet[2] - earth[2];
+        double lon = normalize(Math.toDegrees(Math.atan2(y, x)));
+        double lat = Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y)));
+        return new double[]{lon, lat};
+    }
+
+    private static double[] heliocentric(int index, double t) {
+        double[] el = ELEMENTS[index];
+        double a = el[0] + el[6] * t;
+        double e = el[1] + el[7] * t;
+        double inc = Math.toRadians(el[2] + el[8] * t);
+        double meanLongitude = el[3] + el[9] * t;
+        double perihelion = el[4] + el[10] * t;
+        double node = el[5] + el[11] * t;
+
+        double meanAnomaly = Math.toRadians(normalize(meanLongitude - perihelion));
+        double eccentric = meanAnomaly + e * Math.sin(meanAnomaly);
+        for (int i = 0; i < 8; i++) {
+            double delta = (eccentric - e * Math.sin(eccentric) - meanAnomaly)
+                    / (1d - e * Math.cos(eccentric));
+            eccentric -= delta;
+            if (Math.abs(delta) < 1e-9) {
+                break;
+            }
+        }
+        double xp = a * (Math.cos(eccentric) - e);
+        double yp = a * Math.sqrt(1d - e * e) * Math.sin(eccentric);
+
+        double w = Math.toRadians(perihelion - node);
+        double o = Math.toRadians(node);
+        double cw = Math.cos(w);
+        double sw = Math.sin(w);
+        double co = Math.cos(o);
+        double so = Math.sin(o);
+        double ci = Math.cos(inc);
+        double si = Math.sin(inc);
+        double x = (cw * co - sw * so * ci) * xp + (-sw * co - cw * so * ci) * yp;
+        double y = (cw * so + sw * co * ci) * xp + (-sw * so + cw * co * ci) * yp;
+        double z = (sw * si) * xp + (cw * si) * yp;
+        return new double[]{x, y, z};
+    }
+}
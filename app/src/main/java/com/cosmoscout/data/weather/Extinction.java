@@ -0,0 +1,78 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.NonNull;
+
+public final class Extinction {
+
+    // Typical clear-sky V-band extinction; the limiting magnitude table already includes this
+    // much dimming at the zenith, so effective magnitudes are reported relative to it.
+    public static final double REFERENCE_COEFFICIENT = 0.20d;
+
+    private static final double RAYLEIGH_AND_OZONE = 0.16d;
+    private static final double RAYLEIGH_PER_KM = 0.0116d;
+    private static final double KOSCHMIEDER_CONTRAST = 3.912d;
+    private static final double AEROSOL_SCALE_HEIGHT_KM = 1.2d;
+    private static final double OPTICAL_DEPTH_TO_MAGNITUDES = 1.086d;
+    private static final double MAX_COEFFICIENT = 2.0d;
+
+    private Extinction() {
+    }
+
+    // Extinction coefficient in magnitudes per airmass from the forecast horizontal visibility.
+    public static double coefficient(double visibilityKm) {
+        if (Double.isNaN(visibilityKm) || visibilityKm <= 0d) {
+            return REFERENCE_COEFFICIENT;
+        }
+        // Koschmieder relation for the near-surface extinction, minus the Rayleigh part,
+        // spread over the aerosol scale height.
+        double aerosolPerKm = Math.max(0d, KOSCHMIEDER_CONTRAST / visibilityKm - RAYLEIGH_PER_KM);
+        double aerosol = OPTICAL_DEPTH_TO_MAGNITUDES * aerosolPerKm * AEROSOL_SCALE_HEIGHT_KM;
+        return Math.min(MAX_COEFFICIENT, RAYLEIGH_AND_OZONE + aerosol);
+    }
+
+    // Kasten & Young (1989); stays finite down to the horizon.
+    public static double airmass(double altitudeDeg) {
+        if (altitudeDeg <= 0d) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return 1d / (Math.sin(Math.toRadians(altitudeDeg))
+                + 0.50572d * Math.pow(altitudeDeg + 6.07995d, -1.6364d));
+    }
+
+    public static double effectiveMagnitude(double magnitude, double altitudeDeg, double coefficient) {
+        return magnitude + coefficient * airmass(altitudeDeg) - REFERENCE_COEFFICIENT;
+    }
+
+    // Fills row-major [object * hours + hour] tables of altitude, airmass and effective magnitude
+    // for every object at every hour. Nothing is allocated, so callers can reuse the output
+    // arrays across places and nights.
+    public static void fillHourly(double latDeg,
+                                  @NonNull double[] raDeg,
+                                  @NonNull double[] decDeg,
+                                  @NonNull double[] magnitudes,
+                                  int objects,
+                                  @NonNull double[] lstDeg,
+                                  @NonNull double[] coefficients,
+                                  int hours,
+                                  @NonNull float[] altitudeOut,
+                                  @NonNull float[] airmassOut,
+                                  @NonNull float[] effectiveOut) {
+        double sinLat = Math.sin(Math.toRadians(latDeg));
+        double cosLat = Math.cos(Math.toRadians(latDeg));
+        for (int o = 0; o < objects; o++) {
+            double dec = Math.toRadians(decDeg[o]);
+            double sinDecSinLat = Math.sin(dec) * sinLat;
+            double cosDecCosLat = Math.cos(dec) * cosLat;
+            int row = o * hours;
+            for (int h = 0; h < hours; h++) {
+                double sinAlt = sinDecSinLat + cosDecCosLat * Math.cos(Math.toRadians(lstDeg[h] - raDeg[o]));
+                double altitude = Math.toDegrees(Math.asin(Math.max(-1d, Math.min(1d, sinAlt))));
+                double airmass = airmass(altitude);
+                altitudeOut[row + h] = (float) altitude;
+                airmassOut[row + h] = (float) airmass;
+                effectiveOut[row + h] = (float) (magnitudes[o] + coefficients[h] * airmass
+                        - REFERENCE_COEFFICIENT);
+            }
+        }
+    }
+}
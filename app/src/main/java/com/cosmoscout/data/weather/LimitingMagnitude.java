@@ -0,0 +1,35 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.Nullable;
+
+public final class LimitingMagnitude {
+
+    public static final int DEFAULT_BORTLE = 5;
+
+    // Naked-eye limiting magnitude at zenith for Bortle classes 1..9.
+    private static final double[] NELM_BY_BORTLE = {
+            7.6d, 7.1d, 6.6d, 6.1d, 5.6d, 5.1d, 4.6d, 4.1d, 3.8d
+    };
+    private static final double FULL_MOON_PENALTY = 1.5d;
+    private static final double FLOOR = 2.0d;
+
+    private LimitingMagnitude() {
+    }
+
+    public static double forConditions(@Nullable Integer bortle, int moonPct) {
+        double base = NELM_BY_BORTLE[clampBortle(bortle) - 1];
+        double moonFraction = Math.max(0, Math.min(100, moonPct)) / 100d;
+        // The moon washes out a dark site far more than an already bright city sky.
+        double darkness = (base - NELM_BY_BORTLE[NELM_BY_BORTLE.length - 1])
+                / (NELM_BY_BORTLE[0] - NELM_BY_BORTLE[NELM_BY_BORTLE.length - 1]);
+        double penalty = FULL_MOON_PENALTY * moonFraction * (0.5d + 0.5d * darkness);
+        return Math.max(FLOOR, base - penalty);
+    }
+
+    public static int clampBortle(@Nullable Integer bortle) {
+        if (bortle == null) {
+            return DEFAULT_BORTLE;
+        }
+        return Math.max(1, Math.min(NELM_BY_BORTLE.length, bortle));
+    }
+}
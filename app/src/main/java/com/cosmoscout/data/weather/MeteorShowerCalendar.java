@@ -0,0 +1,242 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+public final class MeteorShowerCalendar {
+
+    private static final int DAYS_PER_YEAR = 365;
+    private static final int[] MONTH_OFFSETS = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private static final double REFERENCE_LIMITING_MAGNITUDE = 6.5d;
+    private static final double ASTRONOMICAL_TWILIGHT_DEG = -18d;
+
+    // Annual showers from the IMO working list: active range, peak, ZHR, radiant and population index.
+    private static final Shower[] SHOWERS = {
+            new Shower("QUA", "Quadrantids", 12, 28, 1, 4, 1, 12, 110, 15.33d, 49d, 2.1d),
+            new Shower("LYR", "Lyrids", 4, 14, 4, 22, 4, 30, 18, 18.07d, 34d, 2.1d),
+            new Shower("ETA", "Eta Aquariids", 4, 19, 5, 6, 5, 28, 50, 22.53d, -1d, 2.4d),
+            new Shower("CAP", "Alpha Capricornids", 7, 3, 7, 30, 8, 15, 5, 20.47d, -10d, 2.5d),
+            new Shower("SDA", "Southern Delta Aquariids", 7, 12, 7, 30, 8, 23, 25, 22.67d, -16d, 2.5d),
+            new Shower("PER", "Perseids", 7, 17, 8, 12, 8, 24, 100, 3.2d, 58d, 2.2d),
+            new Shower("DRA", "Draconids", 10, 6, 10, 8, 10, 10, 10, 17.47d, 54d, 2.6d),
+            new Shower("STA", "Southern Taurids", 9, 10, 10, 10, 11, 20, 5, 2.13d, 9d, 2.3d),
+            new Shower("ORI", "Orionids", 10, 2, 10, 21, 11, 7, 20, 6.4d, 16d, 2.5d),
+            new Shower("NTA", "Northern Taurids", 10, 20, 11, 12, 12, 10, 5, 3.87d, 22d, 2.3d),
+            new Shower("LEO", "Leonids", 11, 6, 11, 17, 11, 30, 15, 10.27d, 21d, 2.5d),
+            new Shower("GEM", "Geminids", 12, 4, 12, 14, 12, 20, 150, 7.47d, 33d, 2.6d),
+            new Shower("URS", "Ursids", 12, 17, 12, 22, 12, 26, 10, 14.47d, 76d, 3.0d)
+    };
+
+    // Precomputed per day of a 365-day year: a bitmask of active showers and their ZHR,
+    // so nightly lookups never walk the shower table.
+    private static final long[] ACTIVE_BY_DAY = new long[DAYS_PER_YEAR];
+    private static final short[] ZHR_BY_DAY = new short[DAYS_PER_YEAR * SHOWERS.length];
+
+    static {
+        for (int s = 0; s < SHOWERS.length; s++) {
+            Shower shower = SHOWERS[s];
+            int rise = Math.max(1, dayDistance(shower.startDay, shower.peakDay));
+            int fall = Math.max(1, dayDistance(shower.peakDay, shower.endDay));
+            for (int offset = -rise; offset <= fall; offset++) {
+                int day = Math.floorMod(shower.peakDay + offset, DAYS_PER_YEAR);
+                // Activity falls to about 1% of the peak at either end of the range.
+                double span = offset < 0 ? rise : fall;
+                double zhr = shower.peakZhr * Math.pow(10d, -2d * Math.abs(offset) / span);
+                ACTIVE_BY_DAY[day] |= 1L << s;
+                ZHR_BY_DAY[day * SHOWERS.length + s] = (short) Math.max(1, Math.round(zhr));
+            }
+        }
+    }
+
+    private MeteorShowerCalendar() {
+    }
+
+    public static final class Shower {
+        public final String code;
+        public final String name;
+        public final int peakZhr;
+        public final double radiantRaHours;
+        public final double radiantDecDegrees;
+        public final double populationIndex;
+        final int startDay;
+        final int peakDay;
+        final int endDay;
+
+        Shower(@NonNull String code,
+               @NonNull String name,
+               int startMonth,
+               int startDayOfMonth,
+               int peakMonth,
+               int peakDayOfMonth,
+               int endMonth,
+               int endDayOfMonth,
+               int peakZhr,
+               double radiantRaHours,
+               double radiantDecDegrees,
+               double populationIndex) {
+            this.code = code;
+            this.name = name;
+            this.startDay = dayIndex(startMonth, startDayOfMonth);
+            this.peakDay = dayIndex(peakMonth, peakDayOfMonth);
+            this.endDay = dayIndex(endMonth, endDayOfMonth);
+            this.peakZhr = peakZhr;
+            this.radiantRaHours = radiantRaHours;
+            this.radiantDecDegrees = radiantDecDegrees;
+            this.populationIndex = populationIndex;
+        }
+    }
+
+    public static final class HourlyActivity {
+        public final long timeMillis;
+        public final double radiantAltitudeDeg;
+        public final double radiantAzimuthDeg;
+        public final double hourlyRate;
+
+        HourlyActivity(long timeMillis,
+                       double radiantAltitudeDeg,
+                       double radiantAzimuthDeg,
+                       double hourlyRate) {
+            this.timeMillis = timeMillis;
+            this.radiantAltitudeDeg = radiantAltitudeDeg;
+            this.radiantAzimuthDeg = radiantAzimuthDeg;
+            this.hourlyRate = hourlyRate;
+        }
+    }
+
+    public static final class NightActivity {
+        public final Shower shower;
+        public final int zhr;
+        public final List<HourlyActivity> hours;
+        @Nullable public final HourlyActivity best;
+
+        NightActivity(@NonNull Shower shower,
+                      int zhr,
+                      @NonNull List<HourlyActivity> hours,
+                      @Nullable HourlyActivity best) {
+            this.shower = shower;
+            this.zhr = zhr;
+            this.hours = hours;
+            this.best = best;
+        }
+    }
+
+    @NonNull
+    public static List<NightActivity> forNight(double lat,
+                                               double lon,
+                                               long startMillis,
+                                               long endMillis,
+                                               @NonNull TimeZone timezone,
+                                               @Nullable Integer bortle,
+                                               int moonPct) {
+        int day = dayIndex(startMillis, timezone);
+        long mask = ACTIVE_BY_DAY[day];
+        if (mask == 0L) {
+            return Collections.emptyList();
+        }
+        double limitingMagnitude = LimitingMagnitude.forConditions(bortle, moonPct);
+        long step = TimeUnit.HOURS.toMillis(1);
+        // The Sun is the same for every shower, so darkness is worked out once per hour.
+        boolean[] dark = new boolean[(int) Math.max(0L, (endMillis - startMillis + step - 1L) / step)];
+        for (int i = 0; i < dark.length; i++) {
+            dark[i] = isDark(lat, lon, startMillis + i * step);
+        }
+        List<NightActivity> result = new ArrayList<>();
+        for (int s = 0; s < SHOWERS.length; s++) {
+            if ((mask & (1L << s)) == 0L) {
+                continue;
+            }
+            Shower shower = SHOWERS[s];
+            int zhr = ZHR_BY_DAY[day * SHOWERS.length + s];
+            List<HourlyActivity> hours = new ArrayList<>();
+            HourlyActivity best = null;
+            int index = 0;
+            for (long time = startMillis; time < endMillis; time += step, index++) {
+                double[] altAz = TonightSkyService.computeAltAzAtSidereal(
+                        lat,
+                        TonightSkyService.localSiderealDegrees(lon, time),
+                        shower.radiantRaHours * 15d,
+                        shower.radiantDecDegrees);
+                double rate = dark[index]
+                        ? expectedRate(zhr, altAz[0], limitingMagnitude, shower.populationIndex)
+                        : 0d;
+                HourlyActivity hour = new HourlyActivity(time, altAz[0], altAz[1], rate);
+                hours.add(hour);
+                if (best == null || rate > best.hourlyRate) {
+                    best = hour;
+                }
+            }
+            result.add(new NightActivity(shower, zhr, Collections.unmodifiableList(hours), best));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public static double hourlyRate(double lat,
+                                    double lon,
+                                    long timeMillis,
+                                    @NonNull TimeZone timezone,
+                                    @Nullable Integer bortle,
+                                    int moonPct) {
+        int day = dayIndex(timeMillis, timezone);
+        long mask = ACTIVE_BY_DAY[day];
+        if (mask == 0L || !isDark(lat, lon, timeMillis)) {
+            return 0d;
+        }
+        double limitingMagnitude = LimitingMagnitude.forConditions(bortle, moonPct);
+        double lst = TonightSkyService.localSiderealDegrees(lon, timeMillis);
+        double total = 0d;
+        for (int s = 0; s < SHOWERS.length; s++) {
+            if ((mask & (1L << s)) == 0L) {
+                continue;
+            }
+            Shower shower = SHOWERS[s];
+            double[] altAz = TonightSkyService.computeAltAzAtSidereal(
+                    lat, lst, shower.radiantRaHours * 15d, shower.radiantDecDegrees);
+            total += expectedRate(ZHR_BY_DAY[day * SHOWERS.length + s], altAz[0],
+                    limitingMagnitude, shower.populationIndex);
+        }
+        return total;
+    }
+
+    static double expectedRate(int zhr,
+                               double radiantAltitudeDeg,
+                               double limitingMagnitude,
+                               double populationIndex) {
+        if (radiantAltitudeDeg <= 0d || zhr <= 0) {
+            return 0d;
+        }
+        double magnitude = Math.min(REFERENCE_LIMITING_MAGNITUDE, limitingMagnitude);
+        return zhr * Math.sin(Math.toRadians(radiantAltitudeDeg))
+                / Math.pow(populationIndex, REFERENCE_LIMITING_MAGNITUDE - magnitude);
+    }
+
+    // Meteors are only counted once the Sun is below astronomical twilight.
+    static boolean isDark(double lat, double lon, long timeMillis) {
+        double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, timeMillis);
+        double[] altAz = TonightSkyService.computeAltAzAtSidereal(
+                lat, TonightSkyService.localSiderealDegrees(lon, timeMillis), sun[0], sun[1]);
+        return altAz[0] < ASTRONOMICAL_TWILIGHT_DEG;
+    }
+
+    private static int dayIndex(long timeMillis, @NonNull TimeZone timezone) {
+        Calendar calendar = Calendar.getInstance(timezone);
+        calendar.setTimeInMillis(timeMillis);
+        return dayIndex(calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static int dayIndex(int month, int dayOfMonth) {
+        // Feb 29 shares Feb 28's slot so the table stays 365 days long.
+        int day = Math.min(dayOfMonth, month == 2 ? 28 : 31);
+        return Math.min(DAYS_PER_YEAR - 1, MONTH_OFFSETS[month - 1] + day - 1);
+    }
+
+    private static int dayDistance(int from, int to) {
+        return Math.floorMod(to - from, DAYS_PER_YEAR);
+    }
+}
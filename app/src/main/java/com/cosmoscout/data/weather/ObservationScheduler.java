@@ -0,0 +1,476 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.NonNull;
+
+import com.cosmoscout.data.places.PlacesScoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public final class ObservationScheduler {
+
+    // Sun below nautical twilight counts as usable observing time.
+    private static final double MAX_SUN_ALTITUDE_DEG = -12d;
+    private static final double MOON_GLARE_RADIUS_DEG = 90d;
+    private static final int MAX_LOCAL_SEARCH_PASSES = 8;
+
+    private ObservationScheduler() {
+    }
+
+    public static final class Settings {
+        public final int slotMinutes;
+        public final int targetMinutes;
+        public final int setupMinutes;
+        public final double minAltitudeDeg;
+
+        public Settings(int slotMinutes, int targetMinutes, int setupMinutes, double minAltitudeDeg) {
+            this.slotMinutes = Math.max(1, slotMinutes);
+            this.targetMinutes = Math.max(this.slotMinutes, targetMinutes);
+            this.setupMinutes = Math.max(0, setupMinutes);
+            this.minAltitudeDeg = minAltitudeDeg;
+        }
+    }
+
+    public static final Settings DEFAULT_SETTINGS = new Settings(15, 45, 15, 25d);
+
+    public static final class Entry {
+        public final TonightSkyService.VisibleObject target;
+        public final long setupStartMillis;
+        public final long startMillis;
+        public final long endMillis;
+        public final double meanAltitudeDeg;
+        public final double minMoonSeparationDeg;
+        public final double value;
+
+        Entry(@NonNull TonightSkyService.VisibleObject target,
+              long setupStartMillis,
+              long startMillis,
+              long endMillis,
+              double meanAltitudeDeg,
+              double minMoonSeparationDeg,
+              double value) {
+            this.target = target;
+            this.setupStartMillis = setupStartMillis;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.meanAltitudeDeg = meanAltitudeDeg;
+            this.minMoonSeparationDeg = minMoonSeparationDeg;
+            this.value = value;
+        }
+    }
+
+    public static final class Plan {
+        public final List<Entry> entries;
+        public final double totalValue;
+
+        Plan(@NonNull List<Entry> entries, double totalValue) {
+            this.entries = entries;
+            this.totalValue = totalValue;
+        }
+    }
+
+    @NonNull
+    public static Plan plan(double lat,
+                            double lon,
+                            @NonNull List<TonightSkyService.Window> windows,
+                            @NonNull List<TonightSkyService.VisibleObject> targets) {
+        return plan(lat, lon, windows, targets, DEFAULT_SETTINGS);
+    }
+
+    @NonNull
+    public static Plan plan(double lat,
+                            double lon,
+                            @NonNull List<TonightSkyService.Window> windows,
+                            @NonNull List<TonightSkyService.VisibleObject> targets,
+                            @NonNull Settings settings) {
+        if (windows.isEmpty() || targets.isEmpty()) {
+            return new Plan(Collections.emptyList(), 0d);
+        }
+        AltitudeTable table = AltitudeTable.build(lat, lon, windows, targets, settings);
+        if (table.slots == 0) {
+            return new Plan(Collections.emptyList(), 0d);
+        }
+        int setupSlots = (int) Math.ceil(settings.setupMinutes / (double) settings.slotMinutes);
+        int observeSlots = (int) Math.ceil(settings.targetMinutes / (double) settings.slotMinutes);
+        Schedule schedule = new Schedule(table, setupSlots, observeSlots);
+        schedule.fillGreedy();
+        for (int pass = 0; pass < MAX_LOCAL_SEARCH_PASSES; pass++) {
+            boolean improved = schedule.replaceTargets();
+            improved |= schedule.swapTargets();
+            improved |= schedule.shiftBlocks();
+            improved |= schedule.fillGreedy();
+            improved |= schedule.packAndFill();
+            if (!improved) {
+                break;
+            }
+        }
+        return schedule.toPlan(targets);
+    }
+
+    // Per-slot night grid plus altitude and moon separation for every target at every slot,
+    // computed once so the search only does array lookups and prefix-sum differences.
+    static final class AltitudeTable {
+        final int slots;
+        final int targets;
+        final long firstSlotMillis;
+        final long slotMillis;
+        final float[] altitude;
+        final float[] moonSeparation;
+        // prefixValue[t * (slots + 1) + s] is the summed value of target t over slots [0, s).
+        final double[] prefixValue;
+
+        private AltitudeTable(int slots,
+                              int targets,
+                              long firstSlotMillis,
+                              long slotMillis,
+                              float[] altitude,
+                              float[] moonSeparation,
+                              double[] prefixValue) {
+            this.slots = slots;
+            this.targets = targets;
+            this.firstSlotMillis = firstSlotMillis;
+            this.slotMillis = slotMillis;
+            this.altitude = altitude;
+            this.moonSeparation = moonSeparation;
+            this.prefixValue = prefixValue;
+        }
+
+        double blockValue(int target, int from, int to) {
+            int base = target * (slots + 1);
+            return prefixValue[base + to] - prefixValue[base + from];
+        }
+
+        @NonNull
+        static AltitudeTable build(double lat,
+                                   double lon,
+                                   @NonNull List<TonightSkyService.Window> windows,
+                                   @NonNull List<TonightSkyService.VisibleObject> targets,
+                                   @NonNull Settings settings) {
+            long slotMillis = TimeUnit.MINUTES.toMillis(settings.slotMinutes);
+            long start = Long.MAX_VALUE;
+            long end = Long.MIN_VALUE;
+            for (TonightSkyService.Window window : windows) {
+                start = Math.min(start, window.startMillis);
+                end = Math.max(end, window.endMillis);
+            }
+            int gridSlots = (int) Math.max(0L, (end - start) / slotMillis);
+            double[] quality = new double[gridSlots];
+            for (TonightSkyService.Window window : windows) {
+                if (window.status == PlacesScoring.SkyStatus.POOR) {
+                    continue;
+                }
+                int from = (int) Math.max(0L, (window.startMillis - start) / slotMillis);
+                int to = (int) Math.min(gridSlots, (window.endMillis - start + slotMillis - 1) / slotMillis);
+                for (int s = from; s < to; s++) {
+                    quality[s] = Math.max(quality[s], window.score / 100d);
+                }
+            }
+
+            double sinLat = Math.sin(Math.toRadians(lat));
+            double cosLat = Math.cos(Math.toRadians(lat));
+            double[] lst = new double[gridSlots];
+            double[] moonRa = new double[gridSlots];
+            double[] moonDec = new double[gridSlots];
+            double[] moonGlare = new double[gridSlots];
+            int firstDark = -1;
+            int lastDark = -1;
+            for (int s = 0; s < gridSlots; s++) {
+                long time = start + s * slotMillis + slotMillis / 2L;
+                lst[s] = TonightSkyService.localSiderealDegrees(lon, time);
+                double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, time);
+                if (altitude(sinLat, cosLat, lst[s], sun[0], sun[1]) > MAX_SUN_ALTITUDE_DEG) {
+                    quality[s] = 0d;
+                    // Only plan the first dark stretch; the forecast can reach into the next evening.
+                    if (firstDark >= 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (firstDark < 0) {
+                    firstDark = s;
+                }
+                lastDark = s;
+                double[] moon = Ephemeris.equatorialPosition(Ephemeris.MOON, time);
+                moonRa[s] = moon[0];
+                moonDec[s] = moon[1];
+                if (altitude(sinLat, cosLat, lst[s], moon[0], moon[1]) > 0d) {
+                    moonGlare[s] = moonIllumination(windows, time);
+                }
+            }
+            if (firstDark < 0) {
+                return new AltitudeTable(0, targets.size(), start, slotMillis,
+                        new float[0], new float[0], new double[0]);
+            }
+
+            // Trim the grid to the dark part of the night.
+            int slots = lastDark - firstDark + 1;
+            int targetCount = targets.size();
+            float[] altitudes = new float[targetCount * slots];
+            float[] separations = new float[targetCount * slots];
+            double[] prefix = new double[targetCount * (slots + 1)];
+            for (int t = 0; t < targetCount; t++) {
+                TonightSkyService.VisibleObject target = targets.get(t);
+                int base = t * (slots + 1);
+                for (int s = 0; s < slots; s++) {
+                    int grid = firstDark + s;
+                    double alt = altitude(sinLat, cosLat, lst[grid], target.raDeg, target.decDeg);
+                    double separation = Ephemeris.separation(target.raDeg, target.decDeg,
+                            moonRa[grid], moonDec[grid]);
+                    altitudes[t * slots + s] = (float) alt;
+                    separations[t * slots + s] = (float) separation;
+                    double value = 0d;
+                    if (alt >= settings.minAltitudeDeg && quality[grid] > 0d) {
+                        double glare = moonGlare[grid]
+                                * Math.max(0d, 1d - separation / MOON_GLARE_RADIUS_DEG);
+                        value = Math.sin(Math.toRadians(alt)) * quality[grid] * (1d - 0.7d * glare);
+                    }
+                    prefix[base + s + 1] = prefix[base + s] + value;
+                }
+            }
+            return new AltitudeTable(slots, targetCount, start + firstDark * slotMillis, slotMillis,
+                    altitudes, separations, prefix);
+        }
+
+        private static double altitude(double sinLat, double cosLat, double lstDeg, double raDeg, double decDeg) {
+            double dec = Math.toRadians(decDeg);
+            double ha = Math.toRadians(lstDeg - raDeg);
+            double sinAlt = Math.sin(dec) * sinLat + Math.cos(dec) * cosLat * Math.cos(ha);
+            return Math.toDegrees(Math.asin(Math.max(-1d, Math.min(1d, sinAlt))));
+        }
+
+        private static double moonIllumination(@NonNull List<TonightSkyService.Window> windows, long time) {
+            for (TonightSkyService.Window window : windows) {
+                if (time >= window.startMillis && time < window.endMillis) {
+                    return window.moonPercent / 100d;
+                }
+            }
+            return 0d;
+        }
+    }
+
+    // Blocks are setup slots followed by observing slots; a slot belongs to at most one block
+    // and each target is scheduled at most once.
+    private static final class Schedule {
+        private final AltitudeTable table;
+        private final int setupSlots;
+        private final int observeSlots;
+        private final int blockSlots;
+        private final int[] slotOwner;
+        private final int[] blockStart;
+
+        Schedule(@NonNull AltitudeTable table, int setupSlots, int observeSlots) {
+            this.table = table;
+            this.setupSlots = setupSlots;
+            this.observeSlots = observeSlots;
+            this.blockSlots = setupSlots + observeSlots;
+            this.slotOwner = new int[table.slots];
+            this.blockStart = new int[table.targets];
+            Arrays.fill(slotOwner, -1);
+            Arrays.fill(blockStart, -1);
+        }
+
+        double value(int target, int start) {
+            return table.blockValue(target, start + setupSlots, start + blockSlots);
+        }
+
+        boolean isFree(int start, int ignoredTarget) {
+            if (start < 0 || start + blockSlots > table.slots) {
+                return false;
+            }
+            for (int s = start; s < start + blockSlots; s++) {
+                if (slotOwner[s] >= 0 && slotOwner[s] != ignoredTarget) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void place(int target, int start) {
+            if (blockStart[target] >= 0) {
+                for (int s = blockStart[target]; s < blockStart[target] + blockSlots; s++) {
+                    slotOwner[s] = -1;
+                }
+            }
+            blockStart[target] = start;
+            if (start >= 0) {
+                for (int s = start; s < start + blockSlots; s++) {
+                    slotOwner[s] = target;
+                }
+            }
+        }
+
+        // Repeatedly takes the highest-valued (target, start) pair that still fits.
+        boolean fillGreedy() {
+            boolean placed = false;
+            while (true) {
+                int bestTarget = -1;
+                int bestStart = -1;
+                double bestValue = 0d;
+                for (int t = 0; t < table.targets; t++) {
+                    if (blockStart[t] >= 0) {
+                        continue;
+                    }
+                    for (int s = 0; s + blockSlots <= table.slots; s++) {
+                        double candidate = value(t, s);
+                        if (candidate > bestValue && isFree(s, -1)) {
+                            bestValue = candidate;
+                            bestTarget = t;
+                            bestStart = s;
+                        }
+                    }
+                }
+                if (bestTarget < 0) {
+                    return placed;
+                }
+                place(bestTarget, bestStart);
+                placed = true;
+            }
+        }
+
+        boolean replaceTargets() {
+            boolean improved = false;
+            for (int t = 0; t < table.targets; t++) {
+                int start = blockStart[t];
+                if (start < 0) {
+                    continue;
+                }
+                double current = value(t, start);
+                int bestReplacement = -1;
+                for (int other = 0; other < table.targets; other++) {
+                    if (blockStart[other] < 0 && value(other, start) > current + 1e-9) {
+                        current = value(other, start);
+                        bestReplacement = other;
+                    }
+                }
+                if (bestReplacement >= 0) {
+                    place(t, -1);
+                    place(bestReplacement, start);
+                    improved = true;
+                }
+            }
+            return improved;
+        }
+
+        boolean swapTargets() {
+            boolean improved = false;
+            for (int a = 0; a < table.targets; a++) {
+                for (int b = a + 1; b < table.targets; b++) {
+                    int startA = blockStart[a];
+                    int startB = blockStart[b];
+                    if (startA < 0 || startB < 0) {
+                        continue;
+                    }
+                    double before = value(a, startA) + value(b, startB);
+                    double after = value(a, startB) + value(b, startA);
+                    if (after > before + 1e-9) {
+                        place(a, -1);
+                        place(b, -1);
+                        place(a, startB);
+                        place(b, startA);
+                        improved = true;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        boolean shiftBlocks() {
+            boolean improved = false;
+            for (int t = 0; t < table.targets; t++) {
+                int start = blockStart[t];
+                if (start < 0) {
+                    continue;
+                }
+                int bestStart = start;
+                double bestValue = value(t, start);
+                for (int s = start - 1; isFree(s, t); s--) {
+                    if (value(t, s) > bestValue + 1e-9) {
+                        bestValue = value(t, s);
+                        bestStart = s;
+                    }
+                }
+                for (int s = start + 1; isFree(s, t); s++) {
+                    if (value(t, s) > bestValue + 1e-9) {
+                        bestValue = value(t, s);
+                        bestStart = s;
+                    }
+                }
+                if (bestStart != start) {
+                    place(t, bestStart);
+                    improved = true;
+                }
+            }
+            return improved;
+        }
+
+        // Gaps shorter than a block are wasted; closing them up can make room for one more target.
+        boolean packAndFill() {
+            int[] savedOwner = slotOwner.clone();
+            int[] savedStart = blockStart.clone();
+            double before = totalValue();
+            int next = 0;
+            for (int s = 0; s < table.slots; s++) {
+                int t = savedOwner[s];
+                if (t < 0 || savedStart[t] != s) {
+                    continue;
+                }
+                place(t, -1);
+                place(t, next);
+                next += blockSlots;
+            }
+            fillGreedy();
+            shiftBlocks();
+            if (totalValue() > before + 1e-9) {
+                return true;
+            }
+            System.arraycopy(savedOwner, 0, slotOwner, 0, slotOwner.length);
+            System.arraycopy(savedStart, 0, blockStart, 0, blockStart.length);
+            return false;
+        }
+
+        double totalValue() {
+            double total = 0d;
+            for (int t = 0; t < table.targets; t++) {
+                if (blockStart[t] >= 0) {
+                    total += value(t, blockStart[t]);
+                }
+            }
+            return total;
+        }
+
+        @NonNull
+        Plan toPlan(@NonNull List<TonightSkyService.VisibleObject> targets) {
+            List<Entry> entries = new ArrayList<>();
+            double total = 0d;
+            for (int s = 0; s < table.slots; s++) {
+                int t = slotOwner[s];
+                if (t < 0 || blockStart[t] != s) {
+                    continue;
+                }
+                int from = s + setupSlots;
+                int to = s + blockSlots;
+                double altitudeSum = 0d;
+                double minSeparation = 180d;
+                for (int slot = from; slot < to; slot++) {
+                    altitudeSum += table.altitude[t * table.slots + slot];
+                    minSeparation = Math.min(minSeparation, table.moonSeparation[t * table.slots + slot]);
+                }
+                double value = value(t, s);
+                total += value;
+                entries.add(new Entry(
+                        targets.get(t),
+                        table.firstSlotMillis + s * table.slotMillis,
+                        table.firstSlotMillis + from * table.slotMillis,
+                        table.firstSlotMillis + to * table.slotMillis,
+                        altitudeSum / observeSlots,
+                        minSeparation,
+                        value
+                ));
+            }
+            return new Plan(Collections.unmodifiableList(entries), total);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class SiderealObjectCache {
+
+    static final double LAT_BUCKET_DEG = 1d;
+    // One degree of sidereal rotation is four minutes of clock time.
+    static final double LST_BUCKET_DEG = 1d;
+    static final double MAGNITUDE_BUCKET = 0.1d;
+    static final double EXTINCTION_BUCKET = 0.02d;
+
+    private static final int LST_BUCKETS = (int) Math.round(360d / LST_BUCKET_DEG);
+
+    interface Loader {
+        @NonNull
+        List<TonightSkyService.VisibleObject> load(double latDeg,
+                                                   double lstDeg,
+                                                   double limitingMagnitude,
+                                                   double extinction);
+    }
+
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final int size;
+
+        Stats(long hits, long misses, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0L ? 0d : hits / (double) total;
+        }
+    }
+
+    private final Map<Long, List<TonightSkyService.VisibleObject>> entries;
+    private long hits;
+    private long misses;
+
+    SiderealObjectCache(int capacity) {
+        this.entries = new LinkedHashMap<Long, List<TonightSkyService.VisibleObject>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<TonightSkyService.VisibleObject>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // The loader always receives bucket centres, so every caller that lands in a bucket
+    // sees exactly the same objects regardless of which one populated it.
+    @NonNull
+    List<TonightSkyService.VisibleObject> get(double latDeg,
+                                              double lstDeg,
+                                              double limitingMagnitude,
+                                              double extinction,
+                                              @NonNull Loader loader) {
+        int latBucket = latBucket(latDeg);
+        int lstBucket = lstBucket(lstDeg);
+        int magnitudeBucket = (int) Math.round(limitingMagnitude / MAGNITUDE_BUCKET);
+        int extinctionBucket = (int) Math.round(Math.max(0d, extinction) / EXTINCTION_BUCKET);
+        long key = ((long) latBucket << 40) | ((long) lstBucket << 28)
+                | ((extinctionBucket & 0xFFFFL) << 12) | (magnitudeBucket & 0xFFFL);
+        synchronized (this) {
+            List<TonightSkyService.VisibleObject> cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        double centerLat = Math.max(-90d, Math.min(90d, -90d + (latBucket + 0.5d) * LAT_BUCKET_DEG));
+        double centerLst = (lstBucket + 0.5d) * LST_BUCKET_DEG;
+        List<TonightSkyService.VisibleObject> computed =
+                loader.load(centerLat, centerLst, magnitudeBucket * MAGNITUDE_BUCKET,
+                        extinctionBucket * EXTINCTION_BUCKET);
+        synchronized (this) {
+            entries.put(key, computed);
+        }
+        return computed;
+    }
+
+    @NonNull
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, entries.size());
+    }
+
+    private static int latBucket(double latDeg) {
+        double clamped = Math.max(-90d, Math.min(90d, latDeg));
+        return (int) Math.floor((clamped + 90d) / LAT_BUCKET_DEG);
+    }
+
+    private static int lstBucket(double lstDeg) {
+        double normalized = lstDeg % 360d;
+        if (normalized < 0d) {
+            normalized += 360d;
+        }
+        return ((int) Math.floor(normalized / LST_BUCKET_DEG)) % LST_BUCKETS;
+    }
+}
@@ -0,0 +1,218 @@
+package com.cosmoscout.data.weather;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Zenith sky brightness in mag/arcsec², as a Sky Quality Meter would read it.
+public final class SkyBrightness {
+
+    // Typical zenith SQM readings for Bortle classes 1..9 on a moonless night.
+    private static final double[] SQM_BY_BORTLE = {
+            21.9d, 21.6d, 21.4d, 20.8d, 20.1d, 19.3d, 18.7d, 18.0d, 17.5d
+    };
+    private static final double ASTRONOMICAL_TWILIGHT_DEG = -18d;
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int HOURS_PER_NIGHT = 24;
+
+    private SkyBrightness() {
+    }
+
+    public static double estimate(double lat,
+                                  double lon,
+                                  long timeMillis,
+                                  @Nullable Integer bortle,
+                                  double extinction) {
+        float[] out = new float[1];
+        fillBatch(new double[]{lat}, new double[]{lon}, new int[]{LimitingMagnitude.clampBortle(bortle)},
+                1, new long[]{timeMillis}, 1, extinction, out);
+        return out[0];
+    }
+
+    // Fills out[place * hours + hour] for every place at every time. Sun and Moon positions
+    // only depend on time, so they are computed once per hour and shared by all places.
+    public static void fillBatch(@NonNull double[] lats,
+                                 @NonNull double[] lons,
+                                 @NonNull int[] bortles,
+                                 int places,
+                                 @NonNull long[] times,
+                                 int hours,
+                                 double extinction,
+                                 @NonNull float[] out) {
+        for (int h = 0; h < hours; h++) {
+            long time = times[h];
+            double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, time);
+            double[] moon = Ephemeris.equatorialPosition(Ephemeris.MOON, time);
+            double phaseAngle = 180d - Ephemeris.separation(sun[0], sun[1], moon[0], moon[1]);
+            double moonIntensity = Math.pow(10d, -0.4d * (3.84d + 0.026d * phaseAngle
+                    + 4e-9d * Math.pow(phaseAngle, 4d)));
+            double lst0 = TonightSkyService.localSiderealDegrees(0d, time);
+            for (int p = 0; p < places; p++) {
+                double lst = lst0 + lons[p];
+                double sinLat = Math.sin(Math.toRadians(lats[p]));
+                double cosLat = Math.cos(Math.toRadians(lats[p]));
+                double sunAltitude = altitude(sinLat, cosLat, lst, sun[0], sun[1]);
+                double moonAltitude = altitude(sinLat, cosLat, lst, moon[0], moon[1]);
+                double nanolamberts = toNanolamberts(SQM_BY_BORTLE[Math.max(1, Math.min(SQM_BY_BORTLE.length, bortles[p])) - 1])
+                        + moonlight(moonAltitude, moonIntensity, extinction)
+                        + twilight(sunAltitude);
+                out[p * hours + h] = (float) toMagnitude(nanolamberts);
+            }
+        }
+    }
+
+    // Krisciunas & Schaefer (1991) scattered moonlight in nanolamberts, evaluated for a zenith
+    // pointing: moonlight is dimmed along the Moon's own airmass, then scattered by one airmass.
+    static double moonlight(double moonAltitude, double moonIntensity, double extinction) {
+        if (moonAltitude <= 0d) {
+            return 0d;
+        }
+        double zenithDistance = 90d - moonAltitude;
+        double rho = Math.toRadians(zenithDistance);
+        double scattering = Math.pow(10d, 5.36d) * (1.06d + Math.cos(rho) * Math.cos(rho))
+                + Math.pow(10d, 6.15d - zenithDistance / 40d);
+        double sinZ = Math.sin(rho);
+        double moonAirmass = 1d / Math.sqrt(1d - 0.96d * sinZ * sinZ);
+        return scattering * moonIntensity * Math.pow(10d, -0.4d * extinction * moonAirmass)
+                * (1d - Math.pow(10d, -0.4d * extinction));
+    }
+
+    // Empirical zenith twilight brightness, fading out at astronomical dusk.
+    private static double twilight(double sunAltitude) {
+        if (sunAltitude <= ASTRONOMICAL_TWILIGHT_DEG) {
+            return 0d;
+        }
+        double depression = Math.min(0d, sunAltitude) - ASTRONOMICAL_TWILIGHT_DEG;
+        return toNanolamberts(24.5d - 1.1d * depression);
+    }
+
+    private static double toNanolamberts(double magnitudePerArcsec2) {
+        return 34.08d * Math.exp(20.7233d - 0.92104d * magnitudePerArcsec2);
+    }
+
+    private static double toMagnitude(double nanolamberts) {
+        return (20.7233d - Math.log(nanolamberts / 34.08d)) / 0.92104d;
+    }
+
+    private static double altitude(double sinLat, double cosLat, double lstDeg, double raDeg, double decDeg) {
+        double dec = Math.toRadians(decDeg);
+        double sinAlt = Math.sin(dec) * sinLat
+                + Math.cos(dec) * cosLat * Math.cos(Math.toRadians(lstDeg - raDeg));
+        return Math.toDegrees(Math.asin(Math.max(-1d, Math.min(1d, sinAlt))));
+    }
+
+    // Nights start at local solar noon, so a place's night never straddles two entries
+    // and no timezone is needed to key it.
+    static long nightStart(double lon, long timeMillis) {
+        long noonOffset = Math.round(12d - lon / 15d) * HOUR_MS;
+        long day = TimeUnit.DAYS.toMillis(1);
+        return Math.floorDiv(timeMillis - noonOffset, day) * day + noonOffset;
+    }
+
+    // Hourly SQM per place per night. Entries are filled a whole night at a time,
+    // either for one place on demand or for the whole list through prime().
+    public static final class NightCache {
+        private final Map<String, float[]> entries;
+
+        public NightCache(int capacity) {
+            this.entries = new LinkedHashMap<String, float[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        public float sqmAt(@NonNull String placeId,
+                           double lat,
+                           double lon,
+                           @Nullable Integer bortle,
+                           long timeMillis) {
+            long start = nightStart(lon, timeMillis);
+            String key = key(placeId, start, bortle);
+            float[] night;
+            synchronized (this) {
+                night = entries.get(key);
+            }
+            if (night == null) {
+                night = new float[HOURS_PER_NIGHT];
+                fillBatch(new double[]{lat}, new double[]{lon},
+                        new int[]{LimitingMagnitude.clampBortle(bortle)}, 1,
+                        nightTimes(start), HOURS_PER_NIGHT, Extinction.REFERENCE_COEFFICIENT, night);
+                synchronized (this) {
+                    entries.put(key, night);
+                }
+            }
+            int index = (int) Math.min(HOURS_PER_NIGHT - 1, (timeMillis - start) / HOUR_MS);
+            return night[index];
+        }
+
+        // Computes tonight for every listed place in one batch, grouping places whose
+        // solar noon falls on the same hour so they share Sun and Moon positions.
+        public void prime(@NonNull String[] placeIds,
+                          @NonNull double[] lats,
+                          @NonNull double[] lons,
+                          @NonNull Integer[] bortles,
+                          int count,
+                          long timeMillis) {
+            Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    long start = nightStart(lons[i], timeMillis);
+                    if (entries.containsKey(key(placeIds[i], start, bortles[i]))) {
+                        continue;
+                    }
+                    List<Integer> members = groups.get(start);
+                    if (members == null) {
+                        members = new ArrayList<>();
+                        groups.put(start, members);
+                    }
+                    members.add(i);
+                }
+            }
+            for (Map.Entry<Long, List<Integer>> group : groups.entrySet()) {
+                List<Integer> members = group.getValue();
+                int size = members.size();
+                double[] groupLats = new double[size];
+                double[] groupLons = new double[size];
+                int[] groupBortles = new int[size];
+                for (int m = 0; m < size; m++) {
+                    int i = members.get(m);
+                    groupLats[m] = lats[i];
+                    groupLons[m] = lons[i];
+                    groupBortles[m] = LimitingMagnitude.clampBortle(bortles[i]);
+                }
+                float[] out = new float[size * HOURS_PER_NIGHT];
+                fillBatch(groupLats, groupLons, groupBortles, size, nightTimes(group.getKey()),
+                        HOURS_PER_NIGHT, Extinction.REFERENCE_COEFFICIENT, out);
+                synchronized (this) {
+                    for (int m = 0; m < size; m++) {
+                        float[] night = new float[HOURS_PER_NIGHT];
+                        System.arraycopy(out, m * HOURS_PER_NIGHT, night, 0, HOURS_PER_NIGHT);
+                        int i = members.get(m);
+                        entries.put(key(placeIds[i], group.getKey(), bortles[i]), night);
+                    }
+                }
+            }
+        }
+
+        @NonNull
+        private static long[] nightTimes(long start) {
+            long[] times = new long[HOURS_PER_NIGHT];
+            for (int h = 0; h < HOURS_PER_NIGHT; h++) {
+                times[h] = start + h * HOUR_MS;
+            }
+            return times;
+        }
+
+        @NonNull
+        private static String key(@NonNull String placeId, long nightStart, @Nullable Integer bortle) {
+            return placeId + ":" + nightStart + ":" + LimitingMagnitude.clampBortle(bortle);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.cosmoscout.data.weather;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.cosmoscout.core.Net;
+import com.cosmoscout.data.places.BortleEstimator;
 import com.cosmoscout.data.places.PlacesScoring;
 import com.cosmoscout.data.places.PlacesService;
+import com.cosmoscout.data.places.ScoringEngine;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -12,11 +15,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
@@ -26,43 +32,138 @@ import okhttp3.Response;
 public class TonightSkyService {
 
     private final PlacesService placesService = new PlacesService();
+    private final BortleEstimator bortleEstimator = new BortleEstimator();
 
     private static final String STAR_CATALOG_URL =
             "https://raw.githubusercontent.com/astronexus/hyg-database/main/hyg/v3/hyg_v37.csv.gz";
-    private static volatile List<StarEntry> cachedCatalog;
+    private static final double CATALOG_MAX_MAGNITUDE = 6.5d;
+    private static final int MAX_CATALOG_ENTRIES = 10_000;
+    private static final int MAX_STAR_OBJECTS = 20;
+    private static final int STAR_CACHE_CAPACITY = 512;
+    // Below this the horizon, trees and haze make objects impractical whatever their brightness.
+    private static final double MIN_ALTITUDE_DEG = 10d;
+    // Bortle estimates are coarse, so one lookup serves every location within a 0.1° cell.
+    private static final double BORTLE_CELL_DEG = 0.1d;
+    private static final int BORTLE_CACHE_CAPACITY = 256;
+    private static final int NO_ESTIMATE = 0;
+    private static volatile StarCatalog cachedCatalog;
+    private static final Map<Long, Integer> bortleByCell = new ConcurrentHashMap<>();
+    private static final SiderealObjectCache starCache = new SiderealObjectCache(STAR_CACHE_CAPACITY);
+
+    public interface ProgressListener {
+        void onWindows(@NonNull TimeZone timezone, @NonNull List<Window> windows);
+
+        void onObjects(@NonNull ObjectGroup group, @NonNull List<VisibleObject> objects);
+    }
+
+    public enum ObjectGroup {
+        PLANETS,
+        STARS,
+        DEEP_SKY,
+        METEOR_SHOWERS
+    }
 
     public Result fetchTonight(double lat, double lon) throws IOException {
+        return fetchTonight(lat, lon, null);
+    }
+
+    public Result fetchTonight(double lat, double lon, @Nullable Integer bortle) throws IOException {
+        return fetchTonight(lat, lon, bortle, null);
+    }
+
+    // Windows are delivered as soon as they are parsed, then each ObjectGroup in order.
+    // Callbacks run on the calling thread.
+    public Result fetchTonight(double lat,
+                               double lon,
+                               @Nullable Integer bortle,
+                               @Nullable ProgressListener listener) throws IOException {
+        Result forecast = fetchWindows(lat, lon, bortle);
+        if (listener != null) {
+            listener.onWindows(forecast.timezone, forecast.windows);
+        }
+        List<VisibleObject> objects = new ArrayList<>();
+        for (ObjectGroup group : ObjectGroup.values()) {
+            List<VisibleObject> part = buildVisibleObjects(group, lat, lon, forecast.windows,
+                    forecast.limitingMagnitude, forecast.timezone, bortle);
+            objects.addAll(part);
+            if (listener != null) {
+                listener.onObjects(group, part);
+            }
+        }
+        return new Result(forecast.timezone, forecast.windows,
+                Collections.unmodifiableList(objects), forecast.limitingMagnitude);
+    }
+
+    // Bortle class for a location that is not a saved place, or null if it cannot be estimated;
+    // callers then get the Bortle 5 default. Blocking on a cache miss.
+    @Nullable
+    public Integer estimateBortle(double lat, double lon) {
+        long cell = Math.round((lat + 90d) / BORTLE_CELL_DEG) * 10_000L + Math.round((lon + 180d) / BORTLE_CELL_DEG);
+        Integer cached = bortleByCell.get(cell);
+        if (cached != null) {
+            return cached != NO_ESTIMATE ? cached : null;
+        }
+        Integer bortle;
+        try {
+            bortle = bortleEstimator.estimateBlocking(lat, lon);
+        } catch (IOException e) {
+            // Not remembered: the next load tries again.
+            return null;
+        }
+        if (bortleByCell.size() >= BORTLE_CACHE_CAPACITY) {
+            bortleByCell.clear();
+        }
+        bortleByCell.put(cell, bortle != null ? bortle : NO_ESTIMATE);
+        return bortle;
+    }
+
+    @NonNull
+    public static SiderealObjectCache.Stats starCacheStats() {
+        return starCache.stats();
+    }
+
+    public Result fetchWindows(double lat, double lon, @Nullable Integer bortle) throws IOException {
         PlacesService.ForecastResponse response = placesService.fetchForecast(lat, lon);
         long now = System.currentTimeMillis();
         long horizon = now + TimeUnit.HOURS.toMillis(24);
 
-        List<Window> windows = new ArrayList<>();
+        List<PlacesService.ForecastHour> hours = new ArrayList<>();
         for (PlacesService.ForecastHour hour : response.hours) {
-            if (hour.timeMillis < now || hour.timeMillis > horizon) {
-                continue;
+            if (hour.timeMillis >= now && hour.timeMillis <= horizon) {
+                hours.add(hour);
             }
-            Window window = toWindow(hour, response.moonPctByDay);
-            windows.add(window);
+        }
+        int count = hours.size();
+        double[] meteorRates = new double[count];
+        for (int i = 0; i < count; i++) {
+            PlacesService.ForecastHour hour = hours.get(i);
+            int hourMoonPct = clampPercent(response.moonPctByDay.getOrDefault(hour.dayKey, 0));
+            meteorRates[i] = MeteorShowerCalendar.hourlyRate(lat, lon, hour.timeMillis,
+                    response.timezone, bortle, hourMoonPct);
+        }
+        float[] scores = new float[count];
+        ScoringEngine.scoreSeries(hours, 0, count, response.moonPctByDay, null, meteorRates,
+                ScoringEngine.Profile.tonight(), scores);
+
+        List<Window> windows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            windows.add(toWindow(hours.get(i), response.moonPctByDay, meteorRates[i], scores[i]));
         }
         Collections.sort(windows, (a, b) -> Double.compare(b.score, a.score));
-        List<VisibleObject> objects = buildVisibleObjects(lat, lon, windows);
-        return new Result(response.timezone, Collections.unmodifiableList(windows), objects);
+        int moonPct = windows.isEmpty() ? 0 : windows.get(0).moonPercent;
+        double limitingMagnitude = LimitingMagnitude.forConditions(bortle, moonPct);
+        return new Result(response.timezone, Collections.unmodifiableList(windows),
+                Collections.emptyList(), limitingMagnitude);
     }
 
     @NonNull
     private Window toWindow(@NonNull PlacesService.ForecastHour hour,
-                            @NonNull Map<Long, Integer> moonPctByDay) {
+                            @NonNull Map<Long, Integer> moonPctByDay,
+                            double meteorRate,
+                            double score) {
         int clearPct = clampPercent((int) Math.round(100d - hour.cloudCover));
         int moonPct = clampPercent(moonPctByDay.getOrDefault(hour.dayKey, 0));
         double visibility = Double.isNaN(hour.visibilityKm) ? 0d : hour.visibilityKm;
-        double visibilityScore = Math.min(1d, visibility / 40d) * 100d;
-        double moonScore = (100d - moonPct);
-        double windPenalty = Math.min(hour.windSpeed, 20d) * 2d;
-        double precipPenalty = hour.precipitation > 0.05d ? 25d : 0d;
-        double score = clearPct * 0.6d + visibilityScore * 0.15d + moonScore * 0.15d;
-        score -= windPenalty;
-        score -= precipPenalty;
-        score = Math.max(0d, Math.min(100d, score));
 
         PlacesScoring.SkyStatus status = PlacesScoring.toStatus(score);
         return new Window(
@@ -74,13 +175,18 @@ public class TonightSkyService {
                 round1(hour.windSpeed),
                 hour.precipitation,
                 score,
-                status
+                status,
+                round1(meteorRate)
         );
     }
 
-    private List<VisibleObject> buildVisibleObjects(double lat,
+    private List<VisibleObject> buildVisibleObjects(@NonNull ObjectGroup group,
+                                                    double lat,
                                                     double lon,
-                                                    @NonNull List<Window> windows) {
+                                                    @NonNull List<Window> windows,
+                                                    double limitingMagnitude,
+                                                    @NonNull TimeZone timezone,
+                                                    @Nullable Integer bortle) {
         if (windows.isEmpty()) {
             return Collections.emptyList();
         }
@@ -91,30 +197,93 @@ public class TonightSkyService {
 
         List<VisibleObject> list = new ArrayList<>();
         long time = best.startMillis;
-
-        // Saturn (Approx RA/Dec for late 2025)
-        addCustomObject(list, "Saturn", 23.8, -3.0, "planet", lat, lon, time);
-        // Jupiter (Approx RA/Dec for late 2025)
-        addCustomObject(list, "Jupiter", 7.2, 22.5, "planet", lat, lon, time);
-        // Orion Nebula
-        addCustomObject(list, "Orion Nebula", 5.59, -5.39, "nebula", lat, lon, time);
+        double extinction = Extinction.coefficient(best.visibilityKm);
+
+        switch (group) {
+            case PLANETS:
+                // Saturn (Approx RA/Dec for late 2025)
+                addCustomObject(list, "Saturn", 23.8, -3.0, 0.8, "planet", lat, lon, time, limitingMagnitude, extinction);
+                // Jupiter (Approx RA/Dec for late 2025)
+                addCustomObject(list, "Jupiter", 7.2, 22.5, -2.4, "planet", lat, lon, time, limitingMagnitude, extinction);
+                break;
+            case STARS:
+                StarCatalog catalog = loadCatalog();
+                if (catalog.isEmpty()) {
+                    break;
+                }
+                // Fixed stars only depend on latitude and sidereal time, so nearby places and
+                // repeat visits share one projection. Airmass is at least 1, so a star fainter
+                // than the limit plus the reference dimming minus the zenith extinction never
+                // shows and is not projected.
+                list.addAll(starCache.get(lat, localSiderealDegrees(lon, time), limitingMagnitude,
+                        extinction,
+                        (bucketLat, bucketLst, bucketMagnitude, bucketExtinction) -> projectStars(
+                                catalog.brighterThan(bucketMagnitude + Extinction.REFERENCE_COEFFICIENT
+                                        - bucketExtinction),
+                                bucketLat,
+                                bucketLst,
+                                bucketMagnitude,
+                                bucketExtinction,
+                                MAX_STAR_OBJECTS)));
+                break;
+            case DEEP_SKY:
+                // Orion Nebula
+                addCustomObject(list, "Orion Nebula", 5.59, -5.39, 4.0, "nebula", lat, lon, time, limitingMagnitude, extinction);
+                break;
+            case METEOR_SHOWERS:
+                addMeteorShowers(list, lat, lon, windows, best.moonPercent, timezone, bortle);
+                break;
+        }
 
         return Collections.unmodifiableList(list);
     }
 
-    private void addCustomObject(List<VisibleObject> list, String name, double ra, double dec, String type, double lat, double lon, long time) {
+    private void addCustomObject(List<VisibleObject> list, String name, double ra, double dec, double magnitude, String type, double lat, double lon, long time, double limitingMagnitude, double extinction) {
         double[] altAz = computeAltAz(lat, lon, ra * 15d, dec, time);
         if (altAz != null) {
             double altitude = altAz[0];
-            if (altitude >= 10d) {
+            double effective = Extinction.effectiveMagnitude(magnitude, altitude, extinction);
+            if (altitude >= MIN_ALTITUDE_DEG && effective <= limitingMagnitude) {
                 String direction = buildDirectionLabel(altAz[1], (int) Math.round(altitude));
                 String altitudeLabel = String.format(Locale.getDefault(), "%d° above horizon",
                         (int) Math.round(altitude));
-                list.add(new VisibleObject(name, direction, altitudeLabel, type));
+                list.add(new VisibleObject(name, direction, altitudeLabel, type, altitude, altAz[1],
+                        ra * 15d, dec, Extinction.airmass(altitude), effective));
             }
         }
     }
 
+    private void addMeteorShowers(@NonNull List<VisibleObject> list,
+                                  double lat,
+                                  double lon,
+                                  @NonNull List<Window> windows,
+                                  int moonPct,
+                                  @NonNull TimeZone timezone,
+                                  @Nullable Integer bortle) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (Window window : windows) {
+            start = Math.min(start, window.startMillis);
+            end = Math.max(end, window.endMillis);
+        }
+        List<MeteorShowerCalendar.NightActivity> showers =
+                MeteorShowerCalendar.forNight(lat, lon, start, end, timezone, bortle, moonPct);
+        for (MeteorShowerCalendar.NightActivity activity : showers) {
+            MeteorShowerCalendar.HourlyActivity peak = activity.best;
+            if (peak == null || peak.hourlyRate < 1d) {
+                continue;
+            }
+            int altitude = (int) Math.round(peak.radiantAltitudeDeg);
+            String direction = buildDirectionLabel(peak.radiantAzimuthDeg, altitude);
+            String rateLabel = String.format(Locale.getDefault(), "~%d meteors/hr",
+                    (int) Math.round(peak.hourlyRate));
+            list.add(new VisibleObject(activity.shower.name, direction, rateLabel, "meteor",
+                    peak.radiantAltitudeDeg, peak.radiantAzimuthDeg,
+                    activity.shower.radiantRaHours * 15d, activity.shower.radiantDecDegrees,
+                    Extinction.airmass(peak.radiantAltitudeDeg), Double.NaN));
+        }
+    }
+
     private double normalizeAzimuth(double value) {
         double result = value % 360d;
         if (result < 0d) {
@@ -123,7 +292,7 @@ public class TonightSkyService {
         return result;
     }
 
-    private String buildDirectionLabel(double azimuth, int altitude) {
+    private static String buildDirectionLabel(double azimuth, int altitude) {
         String[] directions = {"N", "NNE", "NE", "ENE", "E", "ESE", "SE", "SSE",
                 "S", "SSW", "SW", "WSW", "W", "WNW", "NW", "NNW"};
         int index = (int) Math.round(azimuth / 22.5) % directions.length;
@@ -142,13 +311,16 @@ public class TonightSkyService {
         public final TimeZone timezone;
         public final List<Window> windows;
         public final List<VisibleObject> objects;
+        public final double limitingMagnitude;
 
         Result(@NonNull TimeZone timezone,
                @NonNull List<Window> windows,
-               @NonNull List<VisibleObject> objects) {
+               @NonNull List<VisibleObject> objects,
+               double limitingMagnitude) {
             this.timezone = timezone;
             this.windows = windows;
             this.objects = objects;
+            this.limitingMagnitude = limitingMagnitude;
         }
     }
 
@@ -162,6 +334,7 @@ public class TonightSkyService {
         public final double precipitationMm;
         public final double score;
         public final PlacesScoring.SkyStatus status;
+        public final double meteorRate;
 
         Window(long startMillis,
                long endMillis,
@@ -171,7 +344,8 @@ public class TonightSkyService {
                double windSpeed,
                double precipitationMm,
                double score,
-               PlacesScoring.SkyStatus status) {
+               PlacesScoring.SkyStatus status,
+               double meteorRate) {
             this.startMillis = startMillis;
             this.endMillis = endMillis;
             this.clearPercent = clearPercent;
@@ -181,6 +355,7 @@ public class TonightSkyService {
             this.precipitationMm = precipitationMm;
             this.score = score;
             this.status = status;
+            this.meteorRate = meteorRate;
         }
     }
 
@@ -189,34 +364,103 @@ public class TonightSkyService {
         public final String directionLabel;
         public final String altitudeLabel;
         public final String type;
+        public final double altitudeDeg;
+        public final double azimuthDeg;
+        public final double raDeg;
+        public final double decDeg;
+        public final double airmass;
+        public final double effectiveMagnitude;
 
         VisibleObject(@NonNull String name,
                       @NonNull String directionLabel,
                       @NonNull String altitudeLabel,
-                      @NonNull String type) {
+                      @NonNull String type,
+                      double altitudeDeg,
+                      double azimuthDeg,
+                      double raDeg,
+                      double decDeg,
+                      double airmass,
+                      double effectiveMagnitude) {
             this.name = name;
             this.directionLabel = directionLabel;
             this.altitudeLabel = altitudeLabel;
             this.type = type;
+            this.altitudeDeg = altitudeDeg;
+            this.azimuthDeg = azimuthDeg;
+            this.raDeg = raDeg;
+            this.decDeg = decDeg;
+            this.airmass = airmass;
+            this.effectiveMagnitude = effectiveMagnitude;
         }
     }
 
-    private VisibleObject toVisibleObject(@NonNull StarEntry entry,
-                                          double lat,
-                                          double lon,
-                                          long timestamp) {
-        double[] altAz = computeAltAz(lat, lon, entry.raHours * 15d, entry.decDegrees, timestamp);
-        if (altAz == null) {
-            return null;
+    @NonNull
+    static List<VisibleObject> projectStars(@NonNull List<StarEntry> stars,
+                                            double lat,
+                                            double lstDeg,
+                                            int maxObjects) {
+        return projectStars(stars, lat, lstDeg, Double.POSITIVE_INFINITY,
+                Extinction.REFERENCE_COEFFICIENT, maxObjects);
+    }
+
+    // Projects the whole candidate list in one pass over primitive arrays, then keeps the
+    // maxObjects that appear brightest after extinction.
+    @NonNull
+    static List<VisibleObject> projectStars(@NonNull List<StarEntry> stars,
+                                            double lat,
+                                            double lstDeg,
+                                            double limitingMagnitude,
+                                            double extinction,
+                                            int maxObjects) {
+        int count = stars.size();
+        double[] ra = new double[count];
+        double[] dec = new double[count];
+        double[] magnitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            StarEntry entry = stars.get(i);
+            ra[i] = entry.raHours * 15d;
+            dec[i] = entry.decDegrees;
+            magnitudes[i] = entry.magnitude;
         }
-        double altitude = altAz[0];
-        if (altitude < 10d) {
-            return null;
+        float[] altitudes = new float[count];
+        float[] airmasses = new float[count];
+        float[] effective = new float[count];
+        // The list shows the sky at the best window only, so a single hour column is filled;
+        // ObservationScheduler covers the rest of the night.
+        Extinction.fillHourly(lat, ra, dec, magnitudes, count, new double[]{lstDeg},
+                new double[]{extinction}, 1, altitudes, airmasses, effective);
+
+        int limit = Math.min(count, maxObjects);
+        int[] selected = new int[limit];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (altitudes[i] < MIN_ALTITUDE_DEG || effective[i] > limitingMagnitude) {
+                continue;
+            }
+            if (size == limit && effective[i] >= effective[selected[size - 1]]) {
+                continue;
+            }
+            int position = size == limit ? size - 1 : size++;
+            while (position > 0 && effective[selected[position - 1]] > effective[i]) {
+                selected[position] = selected[position - 1];
+                position--;
+            }
+            selected[position] = i;
         }
-        String direction = buildDirectionLabel(altAz[1], (int) Math.round(altitude));
-        String altitudeLabel = String.format(Locale.getDefault(), "%d° above horizon",
-                (int) Math.round(altitude));
-        return new VisibleObject(entry.displayName, direction, altitudeLabel, "star");
+
+        List<VisibleObject> list = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            int i = selected[k];
+            StarEntry entry = stars.get(i);
+            double[] altAz = computeAltAzAtSidereal(lat, lstDeg, ra[i], dec[i]);
+            double altitude = altAz[0];
+            String direction = buildDirectionLabel(altAz[1], (int) Math.round(altitude));
+            String altitudeLabel = String.format(Locale.getDefault(), "%d° above horizon",
+                    (int) Math.round(altitude));
+            list.add(new VisibleObject(entry.displayName, direction, altitudeLabel, "star",
+                    altitude, altAz[1], ra[i], dec[i], airmasses[i], effective[i]));
+        }
+        return Collections.unmodifiableList(list);
     }
 
     private double[] computeAltAz(double latDeg,
@@ -224,6 +468,10 @@ public class TonightSkyService {
                                   double raDeg,
                                   double decDeg,
                                   long timestamp) {
+        return computeAltAzAtSidereal(latDeg, localSiderealDegrees(lonDeg, timestamp), raDeg, decDeg);
+    }
+
+    static double localSiderealDegrees(double lonDeg, long timestamp) {
         double jd = timestamp / 86_400_000d + 2440587.5d;
         double d = jd - 2451545.0d;
         double gmst = 280.46061837 + 360.98564736629 * d;
@@ -231,7 +479,14 @@ public class TonightSkyService {
         if (lst < 0d) {
             lst += 360d;
         }
-        double ha = lst - raDeg;
+        return lst;
+    }
+
+    static double[] computeAltAzAtSidereal(double latDeg,
+                                           double lstDeg,
+                                           double raDeg,
+                                           double decDeg) {
+        double ha = lstDeg - raDeg;
         if (ha < 0d) {
             ha += 360d;
         }
@@ -254,7 +509,8 @@ public class TonightSkyService {
         return new double[]{Math.toDegrees(alt), Math.toDegrees(az)};
     }
 
-    private List<StarEntry> loadCatalog() {
+    // Only a complete download is kept; after a failure the next load tries again.
+    private StarCatalog loadCatalog() {
         if (cachedCatalog != null) {
             return cachedCatalog;
         }
@@ -262,40 +518,47 @@ public class TonightSkyService {
             if (cachedCatalog != null) {
                 return cachedCatalog;
             }
-            List<StarEntry> entries = new ArrayList<>();
-            try {
-                Request request = new Request.Builder()
-                        .url(STAR_CATALOG_URL)
-                        .build();
-                try (Response response = Net.client().newCall(request).execute()) {
-                    if (!response.isSuccessful() || response.body() == null) {
-                        return Collections.emptyList();
-                    }
-
-                    InputStream is = response.body().byteStream();
-                    GZIPInputStream gzip = new GZIPInputStream(is);
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(gzip));
-
-                    String line;
-                    reader.readLine(); // header
-                    while ((line = reader.readLine()) != null) {
-                        StarEntry entry = parseStarLine(line);
-                        if (entry != null) {
-                            entries.add(entry);
-                        }
-                        if (entries.size() >= 200) {
-                            break;
-                        }
-                    }
+            Request request = new Request.Builder()
+                    .url(STAR_CATALOG_URL)
+                    .build();
+            try (Response response = Net.client().newCall(request).execute()) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    return StarCatalog.EMPTY;
                 }
-            } catch (IOException ignored) {
+                InputStream is = response.body().byteStream();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(is)));
+                reader.readLine(); // header
+                cachedCatalog = new StarCatalog(brightest(reader, MAX_CATALOG_ENTRIES));
+                return cachedCatalog;
+            } catch (IOException e) {
+                return StarCatalog.EMPTY;
             }
-            cachedCatalog = Collections.unmodifiableList(entries);
-            return cachedCatalog;
         }
     }
 
-    private StarEntry parseStarLine(@NonNull String line) {
+    // The file is ordered by catalog id, not brightness, so the cap keeps the brightest rows.
+    @NonNull
+    static List<StarEntry> brightest(@NonNull BufferedReader reader, int limit) throws IOException {
+        PriorityQueue<StarEntry> faintestFirst = new PriorityQueue<>(limit + 1,
+                (a, b) -> Double.compare(b.magnitude, a.magnitude));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            StarEntry entry = parseStarLine(line);
+            if (entry == null) {
+                continue;
+            }
+            if (faintestFirst.size() < limit) {
+                faintestFirst.add(entry);
+            } else if (entry.magnitude < faintestFirst.peek().magnitude) {
+                faintestFirst.poll();
+                faintestFirst.add(entry);
+            }
+        }
+        return new ArrayList<>(faintestFirst);
+    }
+
+    @Nullable
+    private static StarEntry parseStarLine(@NonNull String line) {
         String[] parts = line.split(",", -1);
         if (parts.length < 15) {
             return null;
@@ -304,20 +567,20 @@ public class TonightSkyService {
             double ra = parse(parts[7]);
             double dec = parse(parts[8]);
             double mag = parse(parts[13]);
-            if (Double.isNaN(ra) || Double.isNaN(dec) || Double.isNaN(mag) || mag > 2.5d) {
+            if (Double.isNaN(ra) || Double.isNaN(dec) || Double.isNaN(mag) || mag > CATALOG_MAX_MAGNITUDE) {
                 return null;
             }
             String name = parts[6].isEmpty() ? parts[5] : parts[6];
             if (name == null || name.trim().isEmpty()) {
                 return null;
             }
-            return new StarEntry(name.trim(), ra, dec);
+            return new StarEntry(name.trim(), ra, dec, mag);
         } catch (Exception e) {
             return null;
         }
     }
 
-    private double parse(String text) {
+    private static double parse(String text) {
         if (text == null || text.isEmpty()) {
             return Double.NaN;
         }
@@ -328,15 +591,51 @@ public class TonightSkyService {
         }
     }
 
-    private static final class StarEntry {
+    static final class StarEntry {
         final String displayName;
         final double raHours;
         final double decDegrees;
+        final double magnitude;
 
-        StarEntry(String displayName, double raHours, double decDegrees) {
+        StarEntry(String displayName, double raHours, double decDegrees, double magnitude) {
             this.displayName = displayName;
             this.raHours = raHours;
             this.decDegrees = decDegrees;
+            this.magnitude = magnitude;
+        }
+    }
+
+    private static final class StarCatalog {
+        static final StarCatalog EMPTY = new StarCatalog(Collections.emptyList());
+
+        private final List<StarEntry> entries;
+        private final double[] magnitudes;
+
+        StarCatalog(@NonNull List<StarEntry> source) {
+            List<StarEntry> sorted = new ArrayList<>(source);
+            Collections.sort(sorted, (a, b) -> Double.compare(a.magnitude, b.magnitude));
+            this.entries = Collections.unmodifiableList(sorted);
+            this.magnitudes = new double[sorted.size()];
+            for (int i = 0; i < magnitudes.length; i++) {
+                magnitudes[i] = sorted.get(i).magnitude;
+            }
+        }
+
+        boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        @NonNull
+        List<StarEntry> brighterThan(double limitingMagnitude) {
+            int index = Arrays.binarySearch(magnitudes, limitingMagnitude);
+            if (index < 0) {
+                index = -index - 1;
+            } else {
+                while (index < magnitudes.length && magnitudes[index] <= limitingMagnitude) {
+                    index++;
+                }
+            }
+            return entries.subList(0, index);
         }
     }
 }
@@ -112,9 +112,10 @@ public class EventsAdapter extends ListAdapter<DonkiNotification, EventsAdapter.
         }
 
         private String formatTimestamp(@NonNull Context context, long millis) {
+            java.text.DateFormat dateFormat = DateFormat.getMediumDateFormat(context);
             java.text.DateFormat timeFormat = DateFormat.getTimeFormat(context);
             Date date = new Date(millis);
-            return timeFormat.format(date);
+            return dateFormat.format(date) + " " + timeFormat.format(date);
         }
 
         private int backgroundForType(@NonNull String type) {
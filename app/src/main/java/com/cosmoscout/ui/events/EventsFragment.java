@@ -11,7 +11,10 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.cosmoscout.R;
 import com.cosmoscout.core.Net;
+import com.cosmoscout.core.Ui;
 import com.cosmoscout.data.ApiKeys;
+import com.cosmoscout.data.events.AstroEvent;
+import com.cosmoscout.data.events.AstroEventCalendar;
 import com.cosmoscout.data.events.DonkiNotification;
 import com.cosmoscout.databinding.FragmentEventsBinding;
 import com.cosmoscout.ui.RefreshableFragment;
@@ -33,6 +36,7 @@ import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +48,8 @@ public class EventsFragment extends RefreshableFragment {
     private static final String DONKI_ENDPOINT = "https://api.nasa.gov/DONKI/notifications"; // API ref: https://api.nasa.gov/
     private static final Pattern FLARE_PATTERN = Pattern.compile("(X|M|C)\\s*\\d+(?:\\.\\d+)?", Pattern.CASE_INSENSITIVE);
     private static final Pattern KP_PATTERN = Pattern.compile("KP\\s*(?:INDEX)?\\s*=?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final long ASTRO_LOOKBACK_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long ASTRO_LOOKAHEAD_MS = TimeUnit.DAYS.toMillis(90);
 
     private final List<DonkiNotification> allEvents = new ArrayList<>();
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
@@ -51,6 +57,7 @@ public class EventsFragment extends RefreshableFragment {
 
     private FragmentEventsBinding binding;
     private EventsAdapter adapter;
+    private AstroEventCalendar astroCalendar;
     @Nullable
     private String activeFilter;
 
@@ -62,6 +69,7 @@ public class EventsFragment extends RefreshableFragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         binding = FragmentEventsBinding.bind(view);
+        astroCalendar = new AstroEventCalendar(view.getContext());
         adapter = new EventsAdapter();
         binding.eventsList.setLayoutManager(new LinearLayoutManager(view.getContext()));
         binding.eventsList.setAdapter(adapter);
@@ -109,41 +117,56 @@ public class EventsFragment extends RefreshableFragment {
         binding.errorState.setVisibility(View.GONE);
         adapter.submitList(Collections.emptyList());
 
+        AstroEventCalendar calendar = astroCalendar;
         executor.execute(() -> {
+            // Sky events come from the on-device calendar, so they still show when DONKI is
+            // unreachable. They are only turned into rows on the main thread, where the fragment
+            // can check it is still attached before resolving strings.
+            List<AstroEvent> astroEvents = Collections.emptyList();
+            List<DonkiNotification> donkiEvents = Collections.emptyList();
+            boolean astroFailed = false;
+            boolean donkiFailed = false;
             try {
-                List<DonkiNotification> events = fetchEvents();
-                mainHandler.post(() -> {
-                    if (!isAdded() || binding == null) {
-                        if (onComplete != null) {
-                            onComplete.run();
-                        }
-                        return;
-                    }
-                    allEvents.clear();
-                    allEvents.addAll(events);
-                    applyFilter(activeFilter);
-                    binding.setEventsLoading(false);
+                astroEvents = queryAstroEvents(calendar);
+            } catch (Exception e) {
+                astroFailed = true;
+            }
+            try {
+                donkiEvents = fetchEvents();
+            } catch (Exception e) {
+                donkiFailed = true;
+            }
+            List<AstroEvent> astro = astroEvents;
+            List<DonkiNotification> donki = donkiEvents;
+            boolean partial = astroFailed || donkiFailed;
+            mainHandler.post(() -> {
+                if (!isAdded() || binding == null) {
                     if (onComplete != null) {
                         onComplete.run();
                     }
-                });
-            } catch (Exception e) {
-                mainHandler.post(() -> {
-                    if (binding == null) {
-                        if (onComplete != null) {
-                            onComplete.run();
-                        }
-                        return;
-                    }
-                    binding.setEventsLoading(false);
+                    return;
+                }
+                binding.setEventsLoading(false);
+                List<DonkiNotification> events = new ArrayList<>(toNotifications(astro));
+                events.addAll(donki);
+                sortForDisplay(events, System.currentTimeMillis());
+                if (partial && events.isEmpty()) {
                     binding.errorState.setVisibility(View.VISIBLE);
                     binding.setHasEvents(false);
                     adapter.submitList(Collections.emptyList());
-                    if (onComplete != null) {
-                        onComplete.run();
+                } else {
+                    allEvents.clear();
+                    allEvents.addAll(events);
+                    applyFilter(activeFilter);
+                    if (donkiFailed) {
+                        // Sky events alone still fill the list; say that the alerts are missing.
+                        Ui.toast(getActivity(), getString(R.string.events_donki_unavailable));
                     }
-                });
-            }
+                }
+                if (onComplete != null) {
+                    onComplete.run();
+                }
+            });
         });
     }
 
@@ -215,11 +238,103 @@ public class EventsFragment extends RefreshableFragment {
                         source
                 ));
             }
-            Collections.sort(events, (a, b) -> Long.compare(b.getTimestampMillis(), a.getTimestampMillis()));
             return events;
         }
     }
 
+    // Upcoming events soonest first, followed by past events most recent first.
+    private static void sortForDisplay(@NonNull List<DonkiNotification> events, long now) {
+        Collections.sort(events, (a, b) -> {
+            boolean aUpcoming = a.getTimestampMillis() >= now;
+            boolean bUpcoming = b.getTimestampMillis() >= now;
+            if (aUpcoming != bUpcoming) {
+                return aUpcoming ? -1 : 1;
+            }
+            return aUpcoming
+                    ? Long.compare(a.getTimestampMillis(), b.getTimestampMillis())
+                    : Long.compare(b.getTimestampMillis(), a.getTimestampMillis());
+        });
+    }
+
+    // Runs on the executor: the first query builds the ephemeris, so it must stay off the main thread.
+    @NonNull
+    private static List<AstroEvent> queryAstroEvents(@Nullable AstroEventCalendar calendar) {
+        if (calendar == null) {
+            return Collections.emptyList();
+        }
+        long now = System.currentTimeMillis();
+        return calendar.query(now - ASTRO_LOOKBACK_MS, now + ASTRO_LOOKAHEAD_MS);
+    }
+
+    @NonNull
+    private List<DonkiNotification> toNotifications(@NonNull List<AstroEvent> astroEvents) {
+        String source = getString(R.string.events_source_ephemeris);
+        List<DonkiNotification> result = new ArrayList<>(astroEvents.size());
+        for (AstroEvent event : astroEvents) {
+            result.add(new DonkiNotification(
+                    event.getId(),
+                    typeForAstroEvent(event),
+                    classifyAstroEvent(event),
+                    describeAstroEvent(event),
+                    event.timeMillis,
+                    source
+            ));
+        }
+        return result;
+    }
+
+    @NonNull
+    private static String typeForAstroEvent(@NonNull AstroEvent event) {
+        switch (event.kind) {
+            case LUNAR_ECLIPSE:
+            case SOLAR_ECLIPSE:
+                return "ECLIPSE";
+            case CONJUNCTION:
+                return "CONJUNCTION";
+            default:
+                return "OCCULTATION";
+        }
+    }
+
+    @NonNull
+    private String classifyAstroEvent(@NonNull AstroEvent event) {
+        switch (event.kind) {
+            case LUNAR_ECLIPSE:
+                if (event.isTotalOrCentral()) {
+                    return getString(R.string.events_classification_lunar_total);
+                }
+                return event.isPenumbralOnly()
+                        ? getString(R.string.events_classification_lunar_penumbral)
+                        : getString(R.string.events_classification_lunar_partial);
+            case SOLAR_ECLIPSE:
+                return event.isTotalOrCentral()
+                        ? getString(R.string.events_classification_solar_central)
+                        : getString(R.string.events_classification_solar_partial);
+            case CONJUNCTION:
+                return getString(R.string.events_classification_conjunction,
+                        AstroEventCalendar.bodyName(event.bodyA),
+                        AstroEventCalendar.bodyName(event.bodyB));
+            default:
+                return getString(R.string.events_classification_occultation,
+                        AstroEventCalendar.bodyName(event.bodyB));
+        }
+    }
+
+    @NonNull
+    private String describeAstroEvent(@NonNull AstroEvent event) {
+        switch (event.kind) {
+            case LUNAR_ECLIPSE:
+                return getString(R.string.events_detail_lunar_eclipse);
+            case SOLAR_ECLIPSE:
+                return getString(R.string.events_detail_solar_eclipse);
+            case CONJUNCTION:
+                return getString(R.string.events_detail_conjunction,
+                        String.format(Locale.getDefault(), "%.1f", event.separationDeg));
+            default:
+                return getString(R.string.events_detail_occultation);
+        }
+    }
+
     private long parseIssueTime(@NonNull String value, @NonNull SimpleDateFormat format) {
         if (value.isEmpty()) {
             return System.currentTimeMillis();
@@ -126,7 +126,8 @@ public class HomeFragment extends RefreshableFragment {
             double lat = location != null ? location.getLatitude() : DEFAULT_LAT;
             double lon = location != null ? location.getLongitude() : DEFAULT_LON;
             try {
-                TonightSkyService.Result result = skyService.fetchTonight(lat, lon);
+                Integer bortle = skyService.estimateBortle(lat, lon);
+                TonightSkyService.Result result = skyService.fetchWindows(lat, lon, bortle);
                 TonightSkyService.Window best = result.windows.isEmpty() ? null : result.windows.get(0);
                 mainHandler.post(() -> applyBestHour(best, result.timezone, onComplete));
             } catch (Exception e) {
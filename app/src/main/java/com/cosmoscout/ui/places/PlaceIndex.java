@@ -0,0 +1,348 @@
+package com.cosmoscout.ui.places;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cosmoscout.data.places.PlacesScoring;
+import com.cosmoscout.ui.places.PlacesController.Change;
+import com.cosmoscout.ui.places.PlacesController.Filter;
+import com.cosmoscout.ui.places.PlacesController.Sort;
+import com.cosmoscout.ui.places.PlacesController.UiPlace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Every place kept in order for each Sort, one treap per mode. Nodes carry a bitmask of the
+// filters they pass and per-filter subtree counts, so position lookups within any filter and
+// single-place updates are O(log n). While a search is set, a second set of bits marks the
+// filter members that also match it, so search results rank the same way. Updates append the
+// row changes they cause for the current sort, filter and search, ready for the adapter. Not
+// thread-safe: PlacesController only touches it from its state thread.
+final class PlaceIndex {
+
+    private static final int FILTERS = Filter.values().length;
+    // One view per filter, then one per filter narrowed to the search matches.
+    private static final int VIEWS = FILTERS * 2;
+
+    private static final class Node {
+        final UiPlace item;
+        final int priority;
+        final int mask;
+        final int[] counts = new int[VIEWS];
+        @Nullable Node left;
+        @Nullable Node right;
+
+        Node(@NonNull UiPlace item, int priority, boolean matched) {
+            this.item = item;
+            this.priority = priority;
+            int filters = mask(item);
+            this.mask = matched ? filters | filters << FILTERS : filters;
+            update();
+        }
+
+        void update() {
+            for (int f = 0; f < VIEWS; f++) {
+                counts[f] = count(left, f) + count(right, f) + ((mask >>> f) & 1);
+            }
+        }
+    }
+
+    private static final class Tree {
+        final Comparator<UiPlace> order;
+        @Nullable Node root;
+        private final Node[] halves = new Node[2];
+
+        Tree(@NonNull Comparator<UiPlace> order) {
+            this.order = order;
+        }
+
+        void insert(@NonNull Node node) {
+            root = insert(root, node);
+        }
+
+        void remove(@NonNull UiPlace item) {
+            root = remove(root, item);
+        }
+
+        // Position of item among the entries passing filter; the item must be in the tree.
+        int rank(@NonNull UiPlace item, int filter) {
+            int rank = 0;
+            Node node = root;
+            while (node != null) {
+                int c = order.compare(item, node.item);
+                if (c < 0) {
+                    node = node.left;
+                } else if (c == 0) {
+                    return rank + count(node.left, filter);
+                } else {
+                    rank += count(node.left, filter) + ((node.mask >>> filter) & 1);
+                    node = node.right;
+                }
+            }
+            return rank;
+        }
+
+        @NonNull
+        UiPlace select(int position, int filter) {
+            Node node = root;
+            while (node != null) {
+                int left = count(node.left, filter);
+                if (position < left) {
+                    node = node.left;
+                    continue;
+                }
+                position -= left;
+                if (((node.mask >>> filter) & 1) != 0) {
+                    if (position == 0) {
+                        return node.item;
+                    }
+                    position--;
+                }
+                node = node.right;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Nullable
+        private Node insert(@Nullable Node tree, @NonNull Node node) {
+            if (tree == null) {
+                return node;
+            }
+            if (node.priority > tree.priority) {
+                split(tree, node.item);
+                node.left = halves[0];
+                node.right = halves[1];
+                node.update();
+                return node;
+            }
+            if (order.compare(node.item, tree.item) < 0) {
+                tree.left = insert(tree.left, node);
+            } else {
+                tree.right = insert(tree.right, node);
+            }
+            tree.update();
+            return tree;
+        }
+
+        // Leaves entries ordered before key in halves[0] and the rest in halves[1].
+        private void split(@Nullable Node tree, @NonNull UiPlace key) {
+            if (tree == null) {
+                halves[0] = null;
+                halves[1] = null;
+                return;
+            }
+            if (order.compare(tree.item, key) < 0) {
+                split(tree.right, key);
+                tree.right = halves[0];
+                tree.update();
+                halves[0] = tree;
+            } else {
+                split(tree.left, key);
+                tree.left = halves[1];
+                tree.update();
+                halves[1] = tree;
+            }
+        }
+
+        @Nullable
+        private Node remove(@Nullable Node tree, @NonNull UiPlace item) {
+            if (tree == null) {
+                return null;
+            }
+            int c = order.compare(item, tree.item);
+            if (c == 0) {
+                return merge(tree.left, tree.right);
+            }
+            if (c < 0) {
+                tree.left = remove(tree.left, item);
+            } else {
+                tree.right = remove(tree.right, item);
+            }
+            tree.update();
+            return tree;
+        }
+
+        @Nullable
+        private static Node merge(@Nullable Node a, @Nullable Node b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                a.update();
+                return a;
+            }
+            b.left = merge(a, b.left);
+            b.update();
+            return b;
+        }
+    }
+
+    private final Map<String, UiPlace> items = new HashMap<>();
+    private final Map<Sort, Tree> trees = new EnumMap<>(Sort.class);
+    private final Random random = new Random();
+    @Nullable private PlaceTextIndex.Matches matches;
+
+    PlaceIndex() {
+        for (Sort sort : Sort.values()) {
+            trees.put(sort, new Tree(order(sort)));
+        }
+    }
+
+    void rebuild(@NonNull Collection<UiPlace> next) {
+        items.clear();
+        for (Tree tree : trees.values()) {
+            tree.root = null;
+        }
+        for (UiPlace item : next) {
+            items.put(item.place.getId(), item);
+            insert(item);
+        }
+    }
+
+    // Narrows every view to the places in matches, or widens them again for null. Re-ranks the
+    // whole index, so the rows shown next replace the list.
+    void setMatches(@Nullable PlaceTextIndex.Matches next) {
+        matches = next;
+        rebuild(new ArrayList<>(items.values()));
+    }
+
+    @Nullable
+    UiPlace get(@NonNull String placeId) {
+        return items.get(placeId);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    // Adds or replaces the place and appends the resulting row changes as seen through
+    // snapshot(sort, filter).
+    void put(@NonNull UiPlace next, @NonNull Sort sort, @NonNull Filter filter, @NonNull List<Change> out) {
+        int f = view(filter);
+        Tree shown = trees.get(sort);
+        UiPlace previous = items.put(next.place.getId(), next);
+        int from = -1;
+        if (previous != null) {
+            if (shows(filter, previous)) {
+                from = shown.rank(previous, f);
+            }
+            for (Tree tree : trees.values()) {
+                tree.remove(previous);
+            }
+        }
+        insert(next);
+        int to = shows(filter, next) ? shown.rank(next, f) : -1;
+        if (from >= 0 && to >= 0) {
+            if (from != to) {
+                out.add(new Change(Change.Type.MOVE, from, to));
+            }
+            if (!next.sameContent(previous)) {
+                out.add(new Change(Change.Type.UPDATE, to, to));
+            }
+        } else if (from >= 0) {
+            out.add(new Change(Change.Type.REMOVE, from, -1));
+        } else if (to >= 0) {
+            out.add(new Change(Change.Type.INSERT, -1, to));
+        }
+    }
+
+    void remove(@NonNull String placeId, @NonNull Sort sort, @NonNull Filter filter, @NonNull List<Change> out) {
+        UiPlace previous = items.remove(placeId);
+        if (previous == null) {
+            return;
+        }
+        if (shows(filter, previous)) {
+            out.add(new Change(Change.Type.REMOVE, trees.get(sort).rank(previous, view(filter)), -1));
+        }
+        for (Tree tree : trees.values()) {
+            tree.remove(previous);
+        }
+    }
+
+    // Rows for one sort and filter, narrowed to the search if one is set, copied in order; O(n).
+    @NonNull
+    List<UiPlace> snapshot(@NonNull Sort sort, @NonNull Filter filter) {
+        Tree tree = trees.get(sort);
+        int f = view(filter);
+        List<UiPlace> rows = new ArrayList<>(count(tree.root, f));
+        collect(tree.root, f, rows);
+        return Collections.unmodifiableList(rows);
+    }
+
+    private static void collect(@Nullable Node node, int filter, @NonNull List<UiPlace> out) {
+        // Subtrees without a single member are skipped whole.
+        if (node == null || node.counts[filter] == 0) {
+            return;
+        }
+        collect(node.left, filter, out);
+        if (((node.mask >>> filter) & 1) != 0) {
+            out.add(node.item);
+        }
+        collect(node.right, filter, out);
+    }
+
+    private void insert(@NonNull UiPlace item) {
+        boolean matched = matches != null && matches.contains(item.place.getId());
+        for (Tree tree : trees.values()) {
+            tree.insert(new Node(item, random.nextInt(), matched));
+        }
+    }
+
+    private int view(@NonNull Filter filter) {
+        return matches != null ? filter.ordinal() + FILTERS : filter.ordinal();
+    }
+
+    private boolean shows(@NonNull Filter filter, @NonNull UiPlace item) {
+        return ((mask(item) >>> filter.ordinal()) & 1) != 0
+                && (matches == null || matches.contains(item.place.getId()));
+    }
+
+    private static int mask(@NonNull UiPlace item) {
+        int mask = 1 << Filter.ALL.ordinal();
+        if (item.sky != null) {
+            if (item.sky.status == PlacesScoring.SkyStatus.GOOD) {
+                mask |= 1 << Filter.GOOD.ordinal();
+            } else if (item.sky.status == PlacesScoring.SkyStatus.OK) {
+                mask |= 1 << Filter.OK.ordinal();
+            } else if (item.sky.status == PlacesScoring.SkyStatus.POOR) {
+                mask |= 1 << Filter.POOR.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    private static int count(@Nullable Node node, int filter) {
+        return node != null ? node.counts[filter] : 0;
+    }
+
+    // Every order ends on the id, so no two places compare equal.
+    @NonNull
+    private static Comparator<UiPlace> order(@NonNull Sort sort) {
+        Comparator<UiPlace> byName = (a, b) -> a.place.getName().compareToIgnoreCase(b.place.getName());
+        Comparator<UiPlace> byId = (a, b) -> a.place.getId().compareTo(b.place.getId());
+        Comparator<UiPlace> order;
+        if (sort == Sort.DISTANCE) {
+            order = Comparator.<UiPlace>comparingDouble(
+                    item -> item.distanceKm != null ? item.distanceKm : Double.MAX_VALUE
+            ).thenComparing(byName);
+        } else if (sort == Sort.NAME) {
+            order = byName;
+        } else {
+            Comparator<UiPlace> byScore = (a, b) -> Integer.compare(
+                    b.sky != null ? b.sky.score : -1, a.sky != null ? a.sky.score : -1);
+            order = byScore.thenComparing(byName);
+        }
+        return order.thenComparing(byId);
+    }
+}
@@ -0,0 +1,257 @@
+package com.cosmoscout.ui.places;
+
+import androidx.annotation.NonNull;
+
+import com.cosmoscout.data.places.Place;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Names and notes of every place, split into words for search-as-you-type. Each word is
+// posted under its first letter and every trigram of "^word", so one- and two-letter query
+// tokens match word starts and longer ones match anywhere inside a word. Sharing trigrams does
+// not make a substring, so tokens longer than a trigram are confirmed against the text. Places
+// get int slots so postings are plain int lists. Not thread-safe: PlacesController only
+// touches it from its state thread.
+final class PlaceTextIndex {
+
+    private static final char WORD_START = '^';
+
+    // Result of one search. Only valid until a place is next put, since freed slots are reused.
+    final class Matches {
+        private final BitSet slots;
+        private final int count;
+
+        Matches(@NonNull BitSet slots) {
+            this.slots = slots;
+            this.count = slots.cardinality();
+        }
+
+        boolean contains(@NonNull String placeId) {
+            Integer slot = slotById.get(placeId);
+            return slot != null && slots.get(slot);
+        }
+
+        int size() {
+            return count;
+        }
+    }
+
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private final List<Integer> freeSlots = new ArrayList<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    // Scratch for intersections, one counter per slot; all zero between searches.
+    private int[] hits = new int[0];
+
+    // Brings the index in line with places; only entries whose text changed are re-posted.
+    void sync(@NonNull List<Place> places) {
+        Set<String> present = new HashSet<>();
+        for (Place place : places) {
+            present.add(place.getId());
+            put(place);
+        }
+        List<String> gone = new ArrayList<>();
+        for (String placeId : slotById.keySet()) {
+            if (!present.contains(placeId)) {
+                gone.add(placeId);
+            }
+        }
+        for (String placeId : gone) {
+            remove(placeId);
+        }
+    }
+
+    void put(@NonNull Place place) {
+        String notes = place.getNotes();
+        String text = String.join(" ", words(place.getName() + " " + (notes != null ? notes : "")));
+        Integer existing = slotById.get(place.getId());
+        if (existing != null && text.equals(texts.get(existing))) {
+            return;
+        }
+        if (existing != null) {
+            remove(place.getId());
+        }
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = ids.size();
+            ids.add(place.getId());
+            texts.add(text);
+        } else {
+            slot = freeSlots.remove(freeSlots.size() - 1);
+            ids.set(slot, place.getId());
+            texts.set(slot, text);
+        }
+        slotById.put(place.getId(), slot);
+        for (String gram : grams(text)) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                list = new Postings();
+                postings.put(gram, list);
+            }
+            list.add(slot);
+        }
+    }
+
+    void remove(@NonNull String placeId) {
+        Integer slot = slotById.remove(placeId);
+        if (slot == null) {
+            return;
+        }
+        for (String gram : grams(texts.get(slot))) {
+            Postings list = postings.get(gram);
+            if (list != null) {
+                list.remove(slot);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        ids.set(slot, null);
+        texts.set(slot, null);
+        freeSlots.add(slot);
+    }
+
+    // The places matching every word of query. A query without words matches all.
+    @NonNull
+    Matches search(@NonNull String query) {
+        List<String> tokens = words(query);
+        BitSet found = new BitSet(ids.size());
+        if (tokens.isEmpty()) {
+            for (int slot : slotById.values()) {
+                found.set(slot);
+            }
+            return new Matches(found);
+        }
+        List<Postings> lists = new ArrayList<>();
+        List<String> confirm = new ArrayList<>();
+        for (String token : tokens) {
+            if (token.length() < 3) {
+                lists.add(postings.get(WORD_START + token));
+            } else {
+                for (int i = 0; i + 3 <= token.length(); i++) {
+                    lists.add(postings.get(token.substring(i, i + 3)));
+                }
+                if (token.length() > 3) {
+                    confirm.add(token);
+                }
+            }
+            if (lists.contains(null)) {
+                return new Matches(found);
+            }
+        }
+        // Count hits from the rarest list up: a slot stays a candidate only while every list
+        // so far has had it.
+        Collections.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        if (hits.length < ids.size()) {
+            hits = new int[ids.size()];
+        }
+        Postings rarest = lists.get(0);
+        for (int i = 0; i < rarest.size; i++) {
+            hits[rarest.slots[i]] = 1;
+        }
+        for (int l = 1; l < lists.size(); l++) {
+            Postings list = lists.get(l);
+            for (int i = 0; i < list.size; i++) {
+                int slot = list.slots[i];
+                if (hits[slot] == l) {
+                    hits[slot] = l + 1;
+                }
+            }
+        }
+        for (int i = 0; i < rarest.size; i++) {
+            int slot = rarest.slots[i];
+            if (hits[slot] == lists.size() && containsAll(texts.get(slot), confirm)) {
+                found.set(slot);
+            }
+            hits[slot] = 0;
+        }
+        return new Matches(found);
+    }
+
+    private static boolean containsAll(@NonNull String text, @NonNull List<String> tokens) {
+        for (String token : tokens) {
+            if (!text.contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private static Set<String> grams(@NonNull String text) {
+        Set<String> grams = new HashSet<>();
+        for (String word : text.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = WORD_START + word;
+            grams.add(padded.substring(0, 2));
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+    // Lower-cased words with accents stripped, so "Öland" is found by "oland".
+    @NonNull
+    private static List<String> words(@NonNull String text) {
+        String folded = text.toLowerCase(Locale.ROOT);
+        if (!isAscii(folded)) {
+            folded = Normalizer.normalize(folded, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        }
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean inWord = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isAscii(@NonNull String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
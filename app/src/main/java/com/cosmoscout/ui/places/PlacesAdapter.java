@@ -14,8 +14,6 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
-import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.cosmoscout.R;
@@ -25,14 +23,14 @@ import com.google.android.material.chip.Chip;
 import com.google.android.material.button.MaterialButton;
 
 import java.text.DateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
-public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, PlacesAdapter.PlaceViewHolder> {
+public final class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewHolder> {
 
     public interface PlaceActionListener {
         void onShowDetails(@NonNull PlacesController.UiPlace uiPlace);
@@ -44,13 +42,51 @@ public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, P
 
     @NonNull
     private final PlaceActionListener listener;
+    @NonNull
+    private List<PlacesController.UiPlace> items = Collections.emptyList();
 
     public PlacesAdapter(@NonNull PlaceActionListener listener) {
-        super(DIFF_CALLBACK);
         this.listener = listener;
         setHasStableIds(true);
     }
 
+    // The controller already knows which rows moved, so its change set is applied as-is
+    // instead of diffing the whole list; without one every row is rebound.
+    public void submit(@NonNull List<PlacesController.UiPlace> next,
+                       @Nullable List<PlacesController.Change> changes) {
+        items = next;
+        if (changes == null) {
+            notifyDataSetChanged();
+            return;
+        }
+        for (PlacesController.Change change : changes) {
+            switch (change.type) {
+                case INSERT:
+                    notifyItemInserted(change.to);
+                    break;
+                case REMOVE:
+                    notifyItemRemoved(change.from);
+                    break;
+                case MOVE:
+                    notifyItemMoved(change.from, change.to);
+                    break;
+                case UPDATE:
+                    notifyItemChanged(change.to);
+                    break;
+            }
+        }
+    }
+
+    @NonNull
+    public List<PlacesController.UiPlace> getItems() {
+        return items;
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
     @NonNull
     @Override
     public PlaceViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -61,47 +97,15 @@ public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, P
 
     @Override
     public void onBindViewHolder(@NonNull PlaceViewHolder holder, int position) {
-        PlacesController.UiPlace item = getItem(position);
+        PlacesController.UiPlace item = items.get(position);
         holder.bind(item, listener);
     }
 
     @Override
     public long getItemId(int position) {
-        return getItem(position).place.getStableId();
+        return items.get(position).place.getStableId();
     }
 
-    private static final DiffUtil.ItemCallback<PlacesController.UiPlace> DIFF_CALLBACK =
-            new DiffUtil.ItemCallback<PlacesController.UiPlace>() {
-                @Override
-                public boolean areItemsTheSame(@NonNull PlacesController.UiPlace oldItem,
-                                               @NonNull PlacesController.UiPlace newItem) {
-                    return oldItem.place.getId().equals(newItem.place.getId());
-                }
-
-                @Override
-                public boolean areContentsTheSame(@NonNull PlacesController.UiPlace oldItem,
-                                                  @NonNull PlacesController.UiPlace newItem) {
-                    boolean skyEqual;
-                    if (oldItem.sky == null && newItem.sky == null) {
-                        skyEqual = true;
-                    } else if (oldItem.sky != null && newItem.sky != null) {
-                        skyEqual = oldItem.sky.score == newItem.sky.score
-                                && oldItem.sky.status == newItem.sky.status
-                                && oldItem.sky.updatedAt == newItem.sky.updatedAt
-                                && oldItem.sky.clearPct == newItem.sky.clearPct
-                                && oldItem.sky.moonPct == newItem.sky.moonPct
-                                && oldItem.sky.windowStart == newItem.sky.windowStart
-                                && oldItem.sky.windowEnd == newItem.sky.windowEnd;
-                    } else {
-                        skyEqual = false;
-                    }
-
-                    return skyEqual
-                            && oldItem.isPrimary == newItem.isPrimary
-                            && Objects.equals(oldItem.distanceKm, newItem.distanceKm);
-                }
-            };
-
     static final class PlaceViewHolder extends RecyclerView.ViewHolder {
 
         private final View cardRoot;
@@ -111,6 +115,7 @@ public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, P
         private final Chip windowChip;
         private final TextView metricsView;
         private final PlaceTimelineView timelineView;
+        private final ScoreSparklineView historyView;
         private final TextView updatedView;
         private final MaterialButton mapButton;
         private final MaterialButton routeButton;
@@ -127,6 +132,7 @@ public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, P
             windowChip = itemView.findViewById(R.id.bestWindowChip);
             metricsView = itemView.findViewById(R.id.placeMetrics);
             timelineView = itemView.findViewById(R.id.placeTimeline);
+            historyView = itemView.findViewById(R.id.placeHistory);
             updatedView = itemView.findViewById(R.id.updatedLabel);
             mapButton = itemView.findViewById(R.id.mapButton);
             routeButton = itemView.findViewById(R.id.routeButton);
@@ -140,14 +146,23 @@ public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, P
             titleView.setText(place.getName());
 
             primaryBadge.setVisibility(uiPlace.isPrimary ? View.VISIBLE : View.GONE);
+            historyView.setScores(uiPlace.history);
 
             PlaceSkyState state = uiPlace.sky;
             if (state != null) {
                 bindStatus(state);
                 bindWindow(state, place);
-                bindMetrics(state, uiPlace.distanceKm, place);
+                bindMetrics(state, uiPlace.displayDistanceKm, place);
                 bindUpdated(state);
                 timelineView.setValues(state.timeline);
+            } else if (uiPlace.hydrating) {
+                statusView.setText(R.string.place_status_loading);
+                statusView.setBackgroundResource(R.drawable.bg_status_pending);
+                statusView.setTextColor(ContextCompat.getColor(itemView.getContext(), R.color.colorOnSurfaceVariant));
+                windowChip.setText(R.string.best_window_format);
+                metricsView.setText(formatCoords(place));
+                updatedView.setText(R.string.place_loading_cached);
+                timelineView.setValues(null);
             } else {
                 statusView.setText(R.string.details);
                 statusView.setBackgroundResource(R.drawable.bg_status_pending);
@@ -210,7 +225,14 @@ public final class PlacesAdapter extends ListAdapter<PlacesController.UiPlace, P
             StringBuilder builder = new StringBuilder();
             builder.append(itemView.getContext().getString(R.string.clear_pct, state.clearPct));
             builder.append(" • ");
-            builder.append(itemView.getContext().getString(R.string.moon_pct, state.moonPct));
+            if (Double.isNaN(state.sqm)) {
+                builder.append(itemView.getContext().getString(R.string.moon_pct, state.moonPct));
+            } else {
+                builder.append(itemView.getContext().getString(
+                        R.string.sqm_value,
+                        String.format(Locale.getDefault(), "%.1f", state.sqm)
+                ));
+            }
             builder.append(" • ");
             if (distanceKm != null) {
                 builder.append(itemView.getContext().getString(
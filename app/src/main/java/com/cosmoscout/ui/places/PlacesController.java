@@ -1,34 +1,53 @@
 package com.cosmoscout.ui.places;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.location.Location;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.cosmoscout.core.CallHandle;
+import com.cosmoscout.core.FetchPool;
+import com.cosmoscout.data.places.BortleEstimator;
 import com.cosmoscout.data.places.Place;
+import com.cosmoscout.data.places.PlaceSpatialIndex;
 import com.cosmoscout.data.places.PlacesRepository;
 import com.cosmoscout.data.places.PlacesScoring;
 import com.cosmoscout.data.places.PlacesService;
+import com.cosmoscout.data.places.RegionalSearch;
+import com.cosmoscout.data.places.ScoreHistory;
+import com.cosmoscout.data.weather.DarknessAvailability;
+import com.cosmoscout.data.weather.MeteorShowerCalendar;
+import com.cosmoscout.data.weather.SkyBrightness;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 public final class PlacesController {
 
@@ -40,19 +59,51 @@ public final class PlacesController {
     private static final String PREF_WEIGHT_PRECIP = "night_weight_precip";
     private static final String PREF_WEIGHT_WIND = "night_weight_wind";
     private static final String PREF_WEIGHT_MOON = "night_weight_moon";
+    private static final String PREF_SESSION_MINUTES = "night_session_minutes";
     private static final String PREF_SORT = "places_sort";
     private static final String PREF_FILTER = "places_filter";
     private static final String PREF_PRIMARY = "places_primary";
 
     private static final long CACHE_WINDOW_MS = TimeUnit.MINUTES.toMillis(30);
     private static final int TIMELINE_SEGMENTS = 8;
+    private static final int DARKNESS_CACHE_CAPACITY = 256;
+    private static final String DARKNESS_DIR = "darkness";
+    private static final double DARK_CLEAR_MAX_CLOUD = 20d;
+    private static final String HISTORY_DIR = "history";
+    private static final long HISTORY_BUDGET_BYTES = 4L * 1024L * 1024L;
+    private static final int HISTORY_DAYS = 14;
+    private static final int REGION_RESULTS = 10;
+    // Every forecast goes to one host, so a lower per-host cap would only leave workers idle.
+    // The prefetch tier already keeps one worker free for rows that scroll in.
+    private static final int FETCH_PARALLELISM = 4;
+    private static final int FETCH_PER_HOST = FETCH_PARALLELISM;
+    private static final int FETCH_MAX_QUEUED = 24;
+    private static final int HYDRATE_CHUNK = 64;
+    // Places one fork/join leaf rescores; most have no raw forecast and cost a map lookup.
+    private static final int RESCORE_LEAF_PLACES = 32;
+    // Full sky states kept in memory; the rest hold only their summary until a row needs them.
+    private static final long SKY_STATE_BUDGET_BYTES = 1024L * 1024L;
+    // Rows fetched ahead of the viewport: a few while idle, more the faster the list moves so
+    // a forecast (about a second on mobile) lands before its row scrolls in.
+    private static final int PREFETCH_IDLE_ROWS = 4;
+    private static final int PREFETCH_MAX_ROWS = 16;
+    private static final float PREFETCH_LEAD_SECONDS = 1.5f;
+    // Rows show distance to 0.1 km, so smaller moves of the device leave cached distances alone.
+    private static final double DISTANCE_STEP_KM = 0.05d;
 
     public interface Listener {
-        void onPlacesUpdated(@NonNull List<UiPlace> places);
+        // places is immutable. changes lists the row edits since the previous call in
+        // application order; null means the list was replaced.
+        void onPlacesUpdated(@NonNull List<UiPlace> places, @Nullable List<Change> changes);
         void onLoadingStateChanged(boolean loading);
         void onError(@NonNull Throwable throwable);
     }
 
+    public interface RegionListener {
+        void onRegionProgress(@NonNull List<RegionalSearch.Candidate> best, boolean done);
+        void onRegionError(@NonNull Throwable throwable);
+    }
+
     public enum Filter {
         ALL, GOOD, OK, POOR
     }
@@ -64,17 +115,73 @@ public final class PlacesController {
     public static final class UiPlace {
         public final Place place;
         @Nullable public final PlaceSkyState sky;
+        // Spherical, from the spatial index; only for ranking.
         @Nullable public final Double distanceKm;
+        // Ellipsoidal, for display.
+        @Nullable public final Double displayDistanceKm;
         public final boolean isPrimary;
+        // Daily average scores for the last HISTORY_DAYS days, oldest first; -1 marks no data.
+        @Nullable public final int[] history;
+        // The saved state has not been read yet; sky is null until it has.
+        public final boolean hydrating;
 
         UiPlace(@NonNull Place place,
                 @Nullable PlaceSkyState sky,
                 @Nullable Double distanceKm,
-                boolean isPrimary) {
+                @Nullable Double displayDistanceKm,
+                boolean isPrimary,
+                @Nullable int[] history,
+                boolean hydrating) {
             this.place = place;
             this.sky = sky;
             this.distanceKm = distanceKm;
+            this.displayDistanceKm = displayDistanceKm;
             this.isPrimary = isPrimary;
+            this.history = history;
+            this.hydrating = hydrating;
+        }
+
+        boolean sameContent(@Nullable UiPlace other) {
+            if (other == null) {
+                return false;
+            }
+            boolean skyEqual;
+            if (sky == null || other.sky == null) {
+                skyEqual = sky == other.sky;
+            } else {
+                skyEqual = sky.score == other.sky.score
+                        && sky.status == other.sky.status
+                        && sky.updatedAt == other.sky.updatedAt
+                        && sky.clearPct == other.sky.clearPct
+                        && sky.moonPct == other.sky.moonPct
+                        && Double.compare(sky.sqm, other.sky.sqm) == 0
+                        && sky.windowStart == other.sky.windowStart
+                        && sky.windowEnd == other.sky.windowEnd
+                        && sky.compact == other.sky.compact;
+            }
+            return skyEqual
+                    && hydrating == other.hydrating
+                    && isPrimary == other.isPrimary
+                    && Arrays.equals(history, other.history)
+                    && Objects.equals(distanceKm, other.distanceKm)
+                    && Objects.equals(displayDistanceKm, other.displayDistanceKm);
+        }
+    }
+
+    // One row edit, in RecyclerView terms: MOVE takes the row out at from and puts it back at to.
+    public static final class Change {
+        public enum Type {
+            INSERT, REMOVE, MOVE, UPDATE
+        }
+
+        public final Type type;
+        public final int from;
+        public final int to;
+
+        Change(@NonNull Type type, int from, int to) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
         }
     }
 
@@ -86,6 +193,7 @@ public final class PlacesController {
         public final double weightPrecip;
         public final double weightWind;
         public final double weightMoon;
+        public final int sessionMinutes;
 
         public NightSettings(int windowStartMinutes,
                              int windowEndMinutes,
@@ -93,7 +201,8 @@ public final class PlacesController {
                              double weightCloud,
                              double weightPrecip,
                              double weightWind,
-                             double weightMoon) {
+                             double weightMoon,
+                             int sessionMinutes) {
             this.windowStartMinutes = windowStartMinutes;
             this.windowEndMinutes = windowEndMinutes;
             this.windCap = windCap;
@@ -101,6 +210,7 @@ public final class PlacesController {
             this.weightPrecip = weightPrecip;
             this.weightWind = weightWind;
             this.weightMoon = weightMoon;
+            this.sessionMinutes = sessionMinutes;
         }
     }
 
@@ -118,6 +228,22 @@ public final class PlacesController {
         }
     }
 
+    // requested counts emitUi calls, emitted the lists actually built; the difference was merged
+    // into a later frame.
+    public static final class EmitStats {
+        public final long requested;
+        public final long emitted;
+
+        EmitStats(long requested, long emitted) {
+            this.requested = requested;
+            this.emitted = emitted;
+        }
+
+        public long merged() {
+            return requested - emitted;
+        }
+    }
+
     static final class PlaceSkyState {
         final int score;
         final PlacesScoring.SkyStatus status;
@@ -133,6 +259,9 @@ public final class PlacesController {
         final double avgWind;
         final boolean precipFree;
         final TimeZone timezone;
+        final double sqm;
+        // Timeline and hour samples were dropped to save memory; they are still on disk.
+        final boolean compact;
 
         PlaceSkyState(int score,
                       PlacesScoring.SkyStatus status,
@@ -147,7 +276,30 @@ public final class PlacesController {
                       double avgCloud,
                       double avgWind,
                       boolean precipFree,
-                      @NonNull TimeZone timezone) {
+                      @NonNull TimeZone timezone,
+                      double sqm) {
+            this(score, status, windowStart, windowEnd, clearPct, moonPct, updatedAt, fromCache,
+                    Collections.unmodifiableList(new ArrayList<>(timeline)),
+                    Collections.unmodifiableList(new ArrayList<>(hourSamples)),
+                    avgCloud, avgWind, precipFree, timezone, sqm, false);
+        }
+
+        private PlaceSkyState(int score,
+                      PlacesScoring.SkyStatus status,
+                      long windowStart,
+                      long windowEnd,
+                      int clearPct,
+                      int moonPct,
+                      long updatedAt,
+                      boolean fromCache,
+                      @NonNull List<Integer> timeline,
+                      @NonNull List<HourSample> hourSamples,
+                      double avgCloud,
+                      double avgWind,
+                      boolean precipFree,
+                      @NonNull TimeZone timezone,
+                      double sqm,
+                      boolean compact) {
             this.score = score;
             this.status = status;
             this.windowStart = windowStart;
@@ -156,17 +308,37 @@ public final class PlacesController {
             this.moonPct = moonPct;
             this.updatedAt = updatedAt;
             this.fromCache = fromCache;
-            this.timeline = Collections.unmodifiableList(new ArrayList<>(timeline));
-            this.hourSamples = Collections.unmodifiableList(new ArrayList<>(hourSamples));
+            this.timeline = timeline;
+            this.hourSamples = hourSamples;
             this.avgCloud = avgCloud;
             this.avgWind = avgWind;
             this.precipFree = precipFree;
             this.timezone = timezone;
+            this.sqm = sqm;
+            this.compact = compact;
         }
 
         boolean isFresh(long now) {
             return now - updatedAt <= CACHE_WINDOW_MS;
         }
+
+        @NonNull
+        PlaceSkyState toCompact() {
+            return new PlaceSkyState(score, status, windowStart, windowEnd, clearPct, moonPct, updatedAt,
+                    fromCache, Collections.emptyList(), Collections.emptyList(), avgCloud, avgWind,
+                    precipFree, timezone, sqm, true);
+        }
+
+        @NonNull
+        PlaceSkyState withDetail(@NonNull List<Integer> timeline, @NonNull List<HourSample> hourSamples) {
+            return new PlaceSkyState(score, status, windowStart, windowEnd, clearPct, moonPct, updatedAt,
+                    fromCache, timeline, hourSamples, avgCloud, avgWind, precipFree, timezone, sqm);
+        }
+
+        // Rough heap cost; only used to weigh states against each other in the LRU.
+        long approxBytes() {
+            return 160L + timeline.size() * 16L + hourSamples.size() * 48L;
+        }
     }
 
     private final Context appContext;
@@ -175,23 +347,93 @@ public final class PlacesController {
     private final Listener listener;
     private final SharedPreferences prefs;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer choreographer = Choreographer.getInstance();
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
-
-    private final List<Place> allPlaces = new ArrayList<>();
-    private final Map<String, PlaceSkyState> skyStates = new HashMap<>();
-    private final Map<String, Double> distanceCache = new HashMap<>();
-    private final Set<String> inFlight = new HashSet<>();
-
-    private NightSettings nightSettings;
-    private Filter filter;
-    private Sort sort;
-    @Nullable private String primaryPlaceId;
-    @Nullable private Location deviceLocation;
+    // The only writer of the place list, sky states, distances, history and the index. Other
+    // threads read the concurrent maps and the immutable allPlaces, and the main thread only
+    // receives finished snapshots.
+    private final ExecutorService stateExecutor = Executors.newSingleThreadExecutor();
+    private final FetchPool fetchPool = new FetchPool(FETCH_PARALLELISM, FETCH_PER_HOST, FETCH_MAX_QUEUED);
+    private final SkyBrightness.NightCache darknessCache = new SkyBrightness.NightCache(DARKNESS_CACHE_CAPACITY);
+    // Year bitsets are slow enough to build that they get their own thread, away from fetches.
+    private final ExecutorService availabilityExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, DarknessAvailability> availability = new ConcurrentHashMap<>();
+    private final File availabilityDir;
+
+    private volatile List<Place> allPlaces = Collections.emptyList();
+    private final Map<String, PlaceSkyState> skyStates = new ConcurrentHashMap<>();
+    private final Map<String, Double> distanceCache = new ConcurrentHashMap<>();
+    private volatile PlaceSpatialIndex spatialIndex = new PlaceSpatialIndex(Collections.emptyList());
+    // Handle of the fetch each id is waiting on. An aborted fetch leaves at once, so the row can
+    // be fetched again while the old request unwinds.
+    private final Map<String, CallHandle> inFlight = new HashMap<>();
+    // Subset of inFlight that was queued as low-priority prefetch.
+    private final Set<String> prefetching = new HashSet<>();
+    // Last raw forecast per place, so settings changes re-score locally instead of refetching.
+    // Only kept while the place's full state is resident, so the sky state budget bounds it too.
+    private final Map<String, PlacesService.ForecastResponse> rawForecasts = new ConcurrentHashMap<>();
+    private final ScoreHistory history;
+    private final Map<String, int[]> historyScores = new ConcurrentHashMap<>();
+    // State thread only: places whose history was read since the last reload.
+    private final Set<String> historyRead = new HashSet<>();
+    // Grid searches take many requests, so they queue separately from place fetches.
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final RegionalSearch regionalSearch = new RegionalSearch(service, new BortleEstimator());
+    private final PlaceIndex index = new PlaceIndex();
+    private final PlaceTextIndex textIndex = new PlaceTextIndex();
+    // Changes waiting for the next frame.
+    private final Set<String> dirtyPlaces = new LinkedHashSet<>();
+    private final Set<String> removedPlaces = new LinkedHashSet<>();
+    // Places whose saved state is still being read, and the reload that started the read.
+    private final Set<String> hydrating = new HashSet<>();
+    private long hydration;
+    private final SkyStateLru residentStates = new SkyStateLru(SKY_STATE_BUDGET_BYTES);
+    private final Set<String> rehydrating = new HashSet<>();
+
+    // Written on the main thread, read when the state thread builds rows.
+    private volatile NightSettings nightSettings;
+    private volatile Filter filter;
+    private volatile Sort sort;
+    private volatile String query = "";
+    @Nullable private volatile String primaryPlaceId;
+    @Nullable private volatile Location deviceLocation;
     private boolean loading;
-    private boolean destroyed;
+    private volatile boolean destroyed;
     private List<UiPlace> lastUi = Collections.emptyList();
     private int visibleStart = 0;
     private int visibleEnd = -1;
+    private float scrollRowsPerSecond;
+    // State thread only.
+    @Nullable private double[] distanceOrigin;
+    private boolean emitPending;
+    private boolean rebuildPending;
+    private Sort shownSort;
+    private Filter shownFilter;
+    // Ids matching the search query, or null while there is none.
+    @Nullable private PlaceTextIndex.Matches matches;
+    @Nullable private PlaceTextIndex.Matches shownMatches;
+    private long version;
+    private volatile long emitRequested;
+    private volatile long emitted;
+    // Newest version handed to the main thread; older ones still queued there are skipped.
+    private volatile long postedVersion;
+    // Main thread only: edits of skipped snapshots, replayed with the next one. Null after a
+    // skipped reset.
+    private boolean carrying;
+    @Nullable private List<Change> carriedChanges;
+    private final Choreographer.FrameCallback emitFrame = frameTimeNanos -> onState(this::emitNow);
+
+    private static final class Snapshot {
+        final long version;
+        final List<UiPlace> rows;
+        @Nullable final List<Change> changes;
+
+        Snapshot(long version, @NonNull List<UiPlace> rows, @Nullable List<Change> changes) {
+            this.version = version;
+            this.rows = rows;
+            this.changes = changes;
+        }
+    }
 
     public PlacesController(@NonNull Context context,
                             @NonNull PlacesRepository repository,
@@ -200,6 +442,8 @@ public final class PlacesController {
         this.repository = repository;
         this.listener = listener;
         this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.availabilityDir = new File(appContext.getFilesDir(), DARKNESS_DIR);
+        this.history = new ScoreHistory(new File(appContext.getFilesDir(), HISTORY_DIR), HISTORY_BUDGET_BYTES);
         this.nightSettings = readNightSettings();
         this.filter = readFilter();
         this.sort = readSort();
@@ -207,8 +451,19 @@ public final class PlacesController {
     }
 
     public void destroy() {
+        EmitStats emits = emitStats();
+        FetchPool.Stats fetches = fetchPool.stats();
+        Log.d("PlacesController", "emits: " + emits.requested + " requested, " + emits.merged() + " merged; fetches: "
+                + fetches.submitted + " submitted, " + fetches.completed + " completed, "
+                + fetches.dropped + " dropped, " + fetches.cancelled + " cancelled, "
+                + fetches.aborted + " aborted, " + fetches.promoted + " promoted");
         destroyed = true;
+        choreographer.removeFrameCallback(emitFrame);
+        stateExecutor.shutdownNow();
         executor.shutdownNow();
+        fetchPool.shutdownNow();
+        availabilityExecutor.shutdownNow();
+        searchExecutor.shutdownNow();
     }
 
     public void reload() {
@@ -233,12 +488,20 @@ public final class PlacesController {
                 }
                 return;
             }
-            allPlaces.clear();
-            allPlaces.addAll(items);
-            hydrateCaches();
-            computeDistances();
-            emitUi();
-            refreshVisible(false);
+            List<Place> next = Collections.unmodifiableList(new ArrayList<>(items));
+            onState(() -> {
+                allPlaces = next;
+                spatialIndex = new PlaceSpatialIndex(next);
+                computeDistances();
+                textIndex.sync(next);
+                updateMatches();
+                hydrateCaches(next);
+                emitUi();
+                primeDarkness();
+                scheduleAvailability();
+                // Sparklines are read again as their rows come into view.
+                historyRead.clear();
+            });
             if (onComplete != null) {
                 onComplete.run();
             }
@@ -246,25 +509,45 @@ public final class PlacesController {
     }
 
     public void onPlaceRemoved(@NonNull String placeId) {
-        skyStates.remove(placeId);
-        distanceCache.remove(placeId);
+        onState(() -> {
+            List<Place> next = new ArrayList<>(allPlaces);
+            next.removeIf(place -> place.getId().equals(placeId));
+            allPlaces = Collections.unmodifiableList(next);
+            spatialIndex = new PlaceSpatialIndex(allPlaces);
+            skyStates.remove(placeId);
+            residentStates.remove(placeId);
+            rehydrating.remove(placeId);
+            distanceCache.remove(placeId);
+            // The current matches stay valid: the freed slot is not reused before the next sync,
+            // which searches again, and the removed id no longer matches.
+            textIndex.remove(placeId);
+            historyScores.remove(placeId);
+            historyRead.remove(placeId);
+            hydrating.remove(placeId);
+            removedPlaces.add(placeId);
+            dirtyPlaces.remove(placeId);
+            requestEmit();
+        });
+        rawForecasts.remove(placeId);
+        submit(executor, () -> history.delete(placeId));
         clearLocalSnapshot(placeId);
+        availability.remove(placeId);
+        submit(availabilityExecutor, () -> availabilityFile(placeId).delete());
         if (placeId.equals(primaryPlaceId)) {
             setPrimaryPlace(null);
-        } else {
-            emitUi();
         }
     }
 
     public void setDeviceLocation(@Nullable Location location) {
         this.deviceLocation = location;
-        computeDistances();
-        emitUi();
+        onState(this::updateDistances);
     }
 
-    public void onVisibleRangeChanged(int first, int last) {
+    // rowsPerSecond is signed: positive while scrolling towards the end of the list.
+    public void onVisibleRangeChanged(int first, int last, float rowsPerSecond) {
         visibleStart = Math.max(0, first);
         visibleEnd = Math.max(visibleStart, last);
+        scrollRowsPerSecond = rowsPerSecond;
         scheduleRangeFetch(false);
     }
 
@@ -276,7 +559,7 @@ public final class PlacesController {
         if (filter == next) return;
         filter = next;
         prefs.edit().putString(PREF_FILTER, next.name()).apply();
-        emitUi();
+        onState(this::requestEmit);
     }
 
     public Filter getFilter() {
@@ -287,24 +570,48 @@ public final class PlacesController {
         if (sort == next) return;
         sort = next;
         prefs.edit().putString(PREF_SORT, next.name()).apply();
-        emitUi();
+        onState(this::requestEmit);
     }
 
     public Sort getSort() {
         return sort;
     }
 
+    // Narrows the list to places whose name or notes match, on top of the filter and sort.
+    public void setQuery(@NonNull String next) {
+        String trimmed = next.trim();
+        if (query.equals(trimmed)) return;
+        query = trimmed;
+        onState(() -> {
+            updateMatches();
+            requestEmit();
+        });
+    }
+
+    @NonNull
+    public String getQuery() {
+        return query;
+    }
+
     public void setPrimaryPlace(@Nullable String placeId) {
         if (Objects.equals(primaryPlaceId, placeId)) {
             return;
         }
+        String previous = primaryPlaceId;
         primaryPlaceId = placeId;
         if (placeId == null) {
             prefs.edit().remove(PREF_PRIMARY).apply();
         } else {
             prefs.edit().putString(PREF_PRIMARY, placeId).apply();
         }
-        emitUi();
+        onState(() -> {
+            if (placeId != null) {
+                emitPlace(placeId);
+            }
+            if (previous != null) {
+                emitPlace(previous);
+            }
+        });
     }
 
     @Nullable
@@ -319,7 +626,19 @@ public final class PlacesController {
     public void updateNightSettings(@NonNull NightSettings settings) {
         nightSettings = settings;
         persistNightSettings(settings);
-        refreshVisible(true);
+        rescoreCached(settings);
+        if (lastUi.isEmpty()) {
+            return;
+        }
+        // Only rows without a raw forecast in memory still need the network.
+        int start = Math.max(0, Math.min(visibleStart, lastUi.size() - 1));
+        int end = Math.max(start, Math.min(visibleEnd, lastUi.size() - 1));
+        for (int i = start; i <= end; i++) {
+            Place place = lastUi.get(i).place;
+            if (!rawForecasts.containsKey(place.getId())) {
+                requestFetch(place, true);
+            }
+        }
     }
 
     @Nullable
@@ -330,10 +649,118 @@ public final class PlacesController {
     @NonNull
     public List<HourSample> getHourSamples(@NonNull String placeId) {
         PlaceSkyState state = skyStates.get(placeId);
-        if (state != null) {
-            return state.hourSamples;
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        if (state.compact) {
+            // The detail sheet is open now; decode this one place here and keep it afterwards.
+            onState(() -> rehydrate(placeId));
+            return detailHours(prefs.getString(keyHours(placeId), null), state.windowStart, state.clearPct);
+        }
+        return state.hourSamples;
+    }
+
+    // Drops detail of the least recently shown places: half of it when memory runs low or the
+    // UI is hidden, all of it once the process is in the background and can be killed, or when
+    // memory is critical while running.
+    public void onTrimMemory(int level) {
+        long target;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            target = 0L;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            target = residentStates.budgetBytes() / 2L;
+        } else {
+            return;
+        }
+        onState(() -> {
+            for (String id : residentStates.trimTo(target)) {
+                compactState(id);
+            }
+        });
+    }
+
+    // Start of the next run of at least minHours astronomically dark, moonless hours that the
+    // forecast does not rule out, or -1 when unknown or none within a year.
+    public long findNextDarkNight(@NonNull String placeId, int minHours) {
+        DarknessAvailability bits = availability.get(placeId);
+        if (bits == null) {
+            return -1L;
         }
-        return Collections.emptyList();
+        return bits.nextDarkWindow(System.currentTimeMillis(), minHours, true);
+    }
+
+    // Best spots within radiusKm of the device tonight, scored with the current night settings.
+    // Progress arrives after every refinement pass, then once more with done set. Nothing
+    // arrives once handle is cancelled.
+    public void searchRegion(double radiusKm,
+                             @NonNull CallHandle handle,
+                             @NonNull RegionListener regionListener) {
+        Location origin = deviceLocation;
+        if (origin == null) {
+            regionListener.onRegionError(new IOException("Location unavailable"));
+            return;
+        }
+        NightSettings settings = nightSettings;
+        long[] window = resolveWindow(TimeZone.getDefault(), settings);
+        RegionalSearch.Query query = new RegionalSearch.Query(
+                origin.getLatitude(),
+                origin.getLongitude(),
+                radiusKm,
+                window[0],
+                window[1],
+                new PlacesScoring.Weights(
+                        settings.weightCloud,
+                        settings.weightPrecip,
+                        settings.weightWind,
+                        settings.weightMoon
+                ),
+                settings.windCap,
+                TimeUnit.MINUTES.toMillis(settings.sessionMinutes),
+                REGION_RESULTS
+        );
+        PlaceSpatialIndex saved = spatialIndex;
+        submit(searchExecutor, () -> {
+            try {
+                List<RegionalSearch.Candidate> best = regionalSearch.search(query, saved,
+                        (partial, pass, passes) -> mainHandler.post(() -> {
+                            if (!destroyed && !handle.isCancelled()) {
+                                regionListener.onRegionProgress(partial, false);
+                            }
+                        }), handle);
+                mainHandler.post(() -> {
+                    if (!destroyed && !handle.isCancelled()) regionListener.onRegionProgress(best, true);
+                });
+            } catch (IOException | RuntimeException e) {
+                mainHandler.post(() -> {
+                    if (!destroyed && !handle.isCancelled()) regionListener.onRegionError(e);
+                });
+            }
+        });
+    }
+
+    // The saved place closest to a point, or null when nothing is saved.
+    @Nullable
+    public PlaceSpatialIndex.Neighbor closestSavedPlace(double lat, double lon) {
+        List<PlaceSpatialIndex.Neighbor> nearest = spatialIndex.nearest(lat, lon, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    @Nullable
+    public Double exactDistanceKm(@NonNull Place place) {
+        Location origin = deviceLocation;
+        if (origin == null) {
+            return null;
+        }
+        float[] results = new float[1];
+        Location.distanceBetween(
+                origin.getLatitude(),
+                origin.getLongitude(),
+                place.getLat(),
+                place.getLon(),
+                results
+        );
+        return results[0] / 1000d;
     }
 
     @NonNull
@@ -350,146 +777,376 @@ public final class PlacesController {
         listener.onLoadingStateChanged(next);
     }
 
-    private void hydrateCaches() {
-        for (Place place : allPlaces) {
-            String id = place.getId();
-            if (skyStates.containsKey(id)) {
+    // Rows render at once as skeletons; the saved states are decoded on the background
+    // executor from one bulk read of the preferences and arrive in chunks.
+    private void hydrateCaches(@NonNull List<Place> places) {
+        long generation = ++hydration;
+        hydrating.clear();
+        List<Place> pending = new ArrayList<>();
+        for (Place place : places) {
+            if (!skyStates.containsKey(place.getId())) {
+                hydrating.add(place.getId());
+                pending.add(place);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        submit(executor, () -> {
+            Map<String, ?> values = prefs.getAll();
+            List<String> ids = new ArrayList<>(HYDRATE_CHUNK);
+            Map<String, PlaceSkyState> states = new HashMap<>();
+            long decodedBytes = 0L;
+            for (int i = 0; i < pending.size(); i++) {
+                Place place = pending.get(i);
+                ids.add(place.getId());
+                // Past the memory budget only summaries are built; rows decode the rest on demand.
+                boolean detail = decodedBytes < SKY_STATE_BUDGET_BYTES;
+                PlaceSkyState cached = buildStateFromCache(place, values, detail);
+                if (cached != null) {
+                    states.put(place.getId(), cached);
+                    decodedBytes += cached.approxBytes();
+                }
+                if (ids.size() == HYDRATE_CHUNK || i == pending.size() - 1) {
+                    List<String> chunkIds = ids;
+                    Map<String, PlaceSkyState> chunkStates = states;
+                    onState(() -> applyHydrated(generation, chunkIds, chunkStates));
+                    ids = new ArrayList<>(HYDRATE_CHUNK);
+                    states = new HashMap<>();
+                }
+            }
+        });
+    }
+
+    private void applyHydrated(long generation,
+                               @NonNull List<String> ids,
+                               @NonNull Map<String, PlaceSkyState> states) {
+        if (generation != hydration) {
+            return;
+        }
+        for (String id : ids) {
+            if (!hydrating.remove(id)) {
                 continue;
             }
-            PlaceSkyState cached = buildStateFromCache(place);
-            if (cached != null) {
-                skyStates.put(id, cached);
+            PlaceSkyState cached = states.get(id);
+            // A fetch that finished first is newer than anything saved.
+            if (cached != null && !skyStates.containsKey(id)) {
+                putSkyState(id, cached);
             }
+            emitPlace(id);
         }
     }
 
-    private void emitUi() {
-        List<UiPlace> models = new ArrayList<>();
-        for (Place place : allPlaces) {
-            PlaceSkyState state = skyStates.get(place.getId());
-            if (!passesFilter(state)) {
+    // State thread. Full states count against the LRU; whatever it pushes out is compacted.
+    private void putSkyState(@NonNull String placeId, @NonNull PlaceSkyState state) {
+        skyStates.put(placeId, state);
+        if (state.compact) {
+            residentStates.remove(placeId);
+            return;
+        }
+        for (String evicted : residentStates.put(placeId, state.approxBytes())) {
+            compactState(evicted);
+        }
+    }
+
+    private void compactState(@NonNull String placeId) {
+        rawForecasts.remove(placeId);
+        PlaceSkyState state = skyStates.get(placeId);
+        if (state != null && !state.compact) {
+            skyStates.put(placeId, state.toCompact());
+            emitPlace(placeId);
+        }
+    }
+
+    // State thread. Rows about to be shown stay resident; compacted ones decode again.
+    private void ensureResident(@NonNull List<String> placeIds) {
+        for (String id : placeIds) {
+            PlaceSkyState state = skyStates.get(id);
+            if (state == null) {
                 continue;
             }
-            models.add(new UiPlace(
-                    place,
-                    state,
-                    distanceCache.get(place.getId()),
-                    place.getId().equals(primaryPlaceId)
-            ));
+            if (state.compact) {
+                rehydrate(id);
+            } else {
+                residentStates.touch(id);
+            }
         }
-        sort(models);
-        lastUi = Collections.unmodifiableList(models);
-        listener.onPlacesUpdated(lastUi);
     }
 
-    private boolean passesFilter(@Nullable PlaceSkyState state) {
-        if (filter == Filter.ALL) {
-            return true;
+    private void rehydrate(@NonNull String placeId) {
+        if (!rehydrating.add(placeId)) {
+            return;
         }
-        if (state == null) {
-            return false;
+        submit(executor, () -> {
+            String rawTimeline = prefs.getString(keyTimeline(placeId), null);
+            String rawHours = prefs.getString(keyHours(placeId), null);
+            onState(() -> {
+                if (!rehydrating.remove(placeId)) {
+                    return;
+                }
+                PlaceSkyState current = skyStates.get(placeId);
+                if (current == null || !current.compact) {
+                    return;
+                }
+                putSkyState(placeId, current.withDetail(
+                        detailTimeline(rawTimeline, current.clearPct),
+                        detailHours(rawHours, current.windowStart, current.clearPct)));
+                emitPlace(placeId);
+            });
+        });
+    }
+
+    @NonNull
+    public EmitStats emitStats() {
+        return new EmitStats(emitRequested, emitted);
+    }
+
+    @NonNull
+    public FetchPool.Stats fetchStats() {
+        return fetchPool.stats();
+    }
+
+    private void onState(@NonNull Runnable task) {
+        submit(stateExecutor, task);
+    }
+
+    // Workers and the fragment can still hand over work after destroy() has shut the
+    // executors down; it is dropped, since nothing is shown any more.
+    private void submit(@NonNull ExecutorService target, @NonNull Runnable task) {
+        if (destroyed) return;
+        try {
+            target.execute(task);
+        } catch (RejectedExecutionException ignored) {
+            // destroy() raced with the caller.
         }
-        switch (filter) {
-            case GOOD:
-                return state.status == PlacesScoring.SkyStatus.GOOD;
-            case OK:
-                return state.status == PlacesScoring.SkyStatus.OK;
-            case POOR:
-                return state.status == PlacesScoring.SkyStatus.POOR;
-            default:
-                return true;
+    }
+
+    // Every row may have changed: rebuild the index on the next frame. State thread only, like
+    // the other emit methods.
+    private void emitUi() {
+        rebuildPending = true;
+        requestEmit();
+    }
+
+    private void emitPlace(@NonNull String placeId) {
+        dirtyPlaces.add(placeId);
+        requestEmit();
+    }
+
+    // Any number of state changes within one frame produce a single snapshot: the frame
+    // callback hands the work back to this thread.
+    private void requestEmit() {
+        emitRequested++;
+        if (!emitPending) {
+            emitPending = true;
+            mainHandler.post(() -> {
+                if (!destroyed) {
+                    choreographer.postFrameCallback(emitFrame);
+                }
+            });
         }
     }
 
-    private void sort(@NonNull List<UiPlace> models) {
-        Comparator<UiPlace> comparator;
-        if (sort == Sort.DISTANCE) {
-            comparator = Comparator.comparingDouble(
-                    item -> item.distanceKm != null ? item.distanceKm : Double.MAX_VALUE
-            );
-        } else if (sort == Sort.NAME) {
-            comparator = Comparator.comparing(item -> item.place.getName(), String.CASE_INSENSITIVE_ORDER);
+    private void emitNow() {
+        emitPending = false;
+        Sort sort = this.sort;
+        Filter filter = this.filter;
+        PlaceTextIndex.Matches matches = this.matches;
+        boolean reset = rebuildPending || sort != shownSort || filter != shownFilter || matches != shownMatches;
+        if (matches != shownMatches) {
+            index.setMatches(matches);
+        }
+        List<Change> changes = new ArrayList<>();
+        // Past a quarter of the list, one rebuild and a full rebind beat row-by-row edits.
+        if (rebuildPending || dirtyPlaces.size() * 4 > index.size()) {
+            List<Place> places = allPlaces;
+            List<UiPlace> models = new ArrayList<>(places.size());
+            for (Place place : places) {
+                models.add(toUiPlace(place, skyStates.get(place.getId())));
+            }
+            index.rebuild(models);
+            reset = true;
         } else {
-            comparator = (a, b) -> {
-                int scoreA = a.sky != null ? a.sky.score : -1;
-                int scoreB = b.sky != null ? b.sky.score : -1;
-                if (scoreA == scoreB) {
-                    return a.place.getName().compareToIgnoreCase(b.place.getName());
+            for (String id : removedPlaces) {
+                index.remove(id, sort, filter, changes);
+            }
+            for (String id : dirtyPlaces) {
+                UiPlace current = index.get(id);
+                if (current != null) {
+                    index.put(toUiPlace(current.place, skyStates.get(id)), sort, filter, changes);
                 }
-                return Integer.compare(scoreB, scoreA);
-            };
+            }
+        }
+        rebuildPending = false;
+        dirtyPlaces.clear();
+        removedPlaces.clear();
+        if (!reset && changes.isEmpty()) {
+            return;
+        }
+        shownSort = sort;
+        shownFilter = filter;
+        shownMatches = matches;
+        emitted++;
+        List<UiPlace> rows = index.snapshot(sort, filter);
+        Snapshot snapshot = new Snapshot(++version, rows, reset ? null : changes);
+        postedVersion = snapshot.version;
+        mainHandler.post(() -> deliver(snapshot));
+    }
+
+    private void updateMatches() {
+        String current = query;
+        matches = current.isEmpty() ? null : textIndex.search(current);
+    }
+
+    // Main thread. A snapshot with a newer one queued behind it is skipped, but its edits are
+    // kept so the newer one still arrives as a change set.
+    private void deliver(@NonNull Snapshot snapshot) {
+        if (destroyed) return;
+        List<Change> changes = snapshot.changes;
+        if (carrying) {
+            List<Change> merged = null;
+            if (carriedChanges != null && changes != null) {
+                merged = new ArrayList<>(carriedChanges);
+                merged.addAll(changes);
+            }
+            changes = merged;
         }
-        Collections.sort(models, comparator);
+        if (snapshot.version < postedVersion) {
+            carrying = true;
+            carriedChanges = changes;
+            return;
+        }
+        carrying = false;
+        carriedChanges = null;
+        lastUi = snapshot.rows;
+        listener.onPlacesUpdated(lastUi, changes);
+    }
+
+    @NonNull
+    private UiPlace toUiPlace(@NonNull Place place, @Nullable PlaceSkyState state) {
+        Double distanceKm = distanceCache.get(place.getId());
+        // Only rows being rebuilt pay for the exact figure; it follows the ranking distance,
+        // which changes by at least a display step before a row is rebuilt for it.
+        return new UiPlace(
+                place,
+                state,
+                distanceKm,
+                distanceKm != null ? exactDistanceKm(place) : null,
+                place.getId().equals(primaryPlaceId),
+                historyScores.get(place.getId()),
+                state == null && hydrating.contains(place.getId())
+        );
     }
 
     private void scheduleRangeFetch(boolean force) {
         if (lastUi.isEmpty()) {
             return;
         }
-        int start = Math.max(0, Math.min(visibleStart, lastUi.size() - 1));
-        int end = Math.max(start, Math.min(visibleEnd, lastUi.size() - 1));
+        int last = lastUi.size() - 1;
+        int start = Math.max(0, Math.min(visibleStart, last));
+        int end = Math.max(start, Math.min(visibleEnd, last));
         for (int i = start; i <= end; i++) {
             UiPlace ui = lastUi.get(i);
-            requestFetch(ui.place, force);
+            if (prefetching.remove(ui.place.getId())) {
+                fetchPool.promote(ui.place.getId());
+            }
+            // The saved state may be fresh; the next snapshot asks again once it is read.
+            if (ui.hydrating && !force) {
+                continue;
+            }
+            requestFetch(ui.place, force, false);
+        }
+
+        int ahead = PREFETCH_IDLE_ROWS + Math.round(Math.abs(scrollRowsPerSecond) * PREFETCH_LEAD_SECONDS);
+        ahead = Math.min(PREFETCH_MAX_ROWS, ahead);
+        int behind = PREFETCH_IDLE_ROWS / 2;
+        boolean up = scrollRowsPerSecond < 0f;
+        int prefetchStart = Math.max(0, start - (up ? ahead : behind));
+        int prefetchEnd = Math.min(last, end + (up ? behind : ahead));
+
+        List<String> shown = new ArrayList<>(prefetchEnd - prefetchStart + 1);
+        for (int i = prefetchStart; i <= prefetchEnd; i++) {
+            shown.add(lastUi.get(i).place.getId());
+        }
+        onState(() -> {
+            ensureResident(shown);
+            loadHistory(shown);
+        });
+
+        // Fetches for rows that fell out of the window are not worth finishing. Queued ones are
+        // dropped here; running ones have their request cancelled and clean up when they fail.
+        if (!inFlight.isEmpty()) {
+            Set<String> wanted = new HashSet<>(shown);
+            Iterator<String> it = inFlight.keySet().iterator();
+            while (it.hasNext()) {
+                String id = it.next();
+                if (wanted.contains(id)) {
+                    continue;
+                }
+                if (fetchPool.cancel(id) || fetchPool.abort(id)) {
+                    it.remove();
+                    prefetching.remove(id);
+                }
+            }
+        }
+
+        // Nearest rows first in the scroll direction, then the short margin behind.
+        for (int i = 1; i <= Math.max(ahead, behind); i++) {
+            int forward = up ? start - i : end + i;
+            int backward = up ? end + i : start - i;
+            if (i <= ahead && forward >= prefetchStart && forward <= prefetchEnd
+                    && !lastUi.get(forward).hydrating) {
+                requestFetch(lastUi.get(forward).place, false, true);
+            }
+            if (i <= behind && backward >= prefetchStart && backward <= prefetchEnd
+                    && !lastUi.get(backward).hydrating) {
+                requestFetch(lastUi.get(backward).place, false, true);
+            }
         }
     }
 
     private void requestFetch(@NonNull Place place, boolean force) {
+        requestFetch(place, force, false);
+    }
+
+    private void requestFetch(@NonNull Place place, boolean force, boolean prefetch) {
         String id = place.getId();
         PlaceSkyState current = skyStates.get(id);
         if (!force && current != null && current.isFresh(System.currentTimeMillis())) {
             return;
         }
-        if (inFlight.contains(id)) {
+        if (inFlight.containsKey(id)) {
             return;
         }
-        inFlight.add(id);
-        executor.execute(() -> performFetch(place, force));
+        CallHandle handle = new CallHandle();
+        inFlight.put(id, handle);
+        if (prefetch) {
+            prefetching.add(id);
+        }
+        fetchPool.submit(PlacesService.FORECAST_HOST, id, prefetch, () -> performFetch(place, force, handle),
+                () -> mainHandler.post(() -> fetchDone(id, handle)), handle);
+    }
+
+    // Main thread. Returns false if the id has since been aborted, and maybe fetched again.
+    private boolean fetchDone(@NonNull String placeId, @NonNull CallHandle handle) {
+        if (!inFlight.remove(placeId, handle)) {
+            return false;
+        }
+        prefetching.remove(placeId);
+        return true;
     }
 
-    private void performFetch(@NonNull Place place, boolean force) {
+    private void performFetch(@NonNull Place place, boolean force, @NonNull CallHandle handle) {
         try {
-            NightSettings settings = nightSettings;
-            PlacesService.ForecastResponse response = service.fetchForecast(place.getLat(), place.getLon());
-            long[] window = resolveWindow(response.timezone, settings);
-            List<PlacesService.ForecastHour> hours = sliceHours(response.hours, window[0], window[1]);
-            if (hours.isEmpty()) {
-                throw new IOException("No forecast hours");
-            }
-            PlacesScoring.Weights weights = new PlacesScoring.Weights(
-                    settings.weightCloud,
-                    settings.weightPrecip,
-                    settings.weightWind,
-                    settings.weightMoon
-            );
-            PlacesScoring.ScoreResult best = PlacesScoring.findBestWindow(
-                    hours,
-                    response.moonPctByDay,
-                    weights,
-                    settings.windCap
-            );
-            if (best == null) {
-                throw new IOException("Unable to score window");
-            }
-            int score = clampScore((int) Math.round(best.score));
-            List<Integer> timeline = PlacesScoring.buildTimeline(hours, TIMELINE_SEGMENTS);
-            List<HourSample> samples = toHourSamples(hours);
-            PlaceSkyState state = new PlaceSkyState(
-                    score,
-                    best.status,
-                    best.windowStart,
-                    best.windowEnd,
-                    best.clearPct,
-                    best.moonPct,
-                    System.currentTimeMillis(),
-                    false,
-                    timeline,
-                    samples,
-                    best.avgCloud,
-                    best.avgWind,
-                    best.precipFree,
-                    response.timezone
-            );
+            PlacesService.ForecastResponse response = service.fetchForecast(place.getLat(), place.getLon(), handle);
+            if (destroyed || handle.isCancelled()) {
+                // The screen closed or the row left the window while the body downloaded.
+                mainHandler.post(() -> fetchDone(place.getId(), handle));
+                return;
+            }
+            rawForecasts.put(place.getId(), response);
+            // Read after the download so a settings change made meanwhile is not lost.
+            PlaceSkyState state = scoreForecast(place, response, nightSettings, System.currentTimeMillis());
             PlacesRepository.ComputedFields fields = new PlacesRepository.ComputedFields(
                     state.score,
                     state.windowStart,
@@ -500,43 +1157,359 @@ public final class PlacesController {
             );
             repository.updateComputedFields(place.getId(), fields, err -> {});
             saveLocalSnapshot(place.getId(), state);
-            mainHandler.post(() -> {
-                inFlight.remove(place.getId());
-                if (destroyed) return;
-                skyStates.put(place.getId(), state);
-                emitUi();
+            int[] recent = recordHistory(place.getId(), state);
+            updateAvailabilityForecast(place.getId(), response.hours);
+            mainHandler.post(() -> fetchDone(place.getId(), handle));
+            onState(() -> {
+                putSkyState(place.getId(), state);
+                if (recent != null) {
+                    historyScores.put(place.getId(), recent);
+                }
+                emitPlace(place.getId());
             });
         } catch (IOException e) {
             mainHandler.post(() -> {
-                inFlight.remove(place.getId());
-                if (destroyed) return;
+                boolean prefetch = prefetching.contains(place.getId());
+                // An aborted request is not an error: the row left the screen.
+                if (!fetchDone(place.getId(), handle) || prefetch || handle.isCancelled() || destroyed) {
+                    return;
+                }
                 listener.onError(e);
             });
         }
     }
 
+    @NonNull
+    private PlaceSkyState scoreForecast(@NonNull Place place,
+                                        @NonNull PlacesService.ForecastResponse response,
+                                        @NonNull NightSettings settings,
+                                        long updatedAt) throws IOException {
+        long[] window = resolveWindow(response.timezone, settings);
+        List<PlacesService.ForecastHour> hours = sliceHours(response.hours, window[0], window[1]);
+        if (hours.isEmpty()) {
+            throw new IOException("No forecast hours");
+        }
+        PlacesScoring.Weights weights = new PlacesScoring.Weights(
+                settings.weightCloud,
+                settings.weightPrecip,
+                settings.weightWind,
+                settings.weightMoon
+        );
+        double[] sqm = new double[hours.size()];
+        double[] meteorRates = new double[hours.size()];
+        for (int i = 0; i < sqm.length; i++) {
+            PlacesService.ForecastHour hour = hours.get(i);
+            sqm[i] = darknessCache.sqmAt(place.getId(), place.getLat(), place.getLon(),
+                    place.getBortle(), hour.timeMillis);
+            int moonPct = Math.max(0, Math.min(100, response.moonPctByDay.getOrDefault(hour.dayKey, 0)));
+            meteorRates[i] = MeteorShowerCalendar.hourlyRate(place.getLat(), place.getLon(),
+                    hour.timeMillis, response.timezone, place.getBortle(), moonPct);
+        }
+        PlacesScoring.ScoreResult best = PlacesScoring.findBestWindow(
+                hours,
+                response.moonPctByDay,
+                sqm,
+                meteorRates,
+                weights,
+                settings.windCap,
+                TimeUnit.MINUTES.toMillis(settings.sessionMinutes)
+        );
+        if (best == null) {
+            throw new IOException("Unable to score window");
+        }
+        int score = clampScore((int) Math.round(best.score));
+        List<Integer> timeline = PlacesScoring.buildTimeline(hours, TIMELINE_SEGMENTS);
+        List<HourSample> samples = toHourSamples(hours);
+        return new PlaceSkyState(
+                score,
+                best.status,
+                best.windowStart,
+                best.windowEnd,
+                best.clearPct,
+                best.moonPct,
+                updatedAt,
+                false,
+                timeline,
+                samples,
+                best.avgCloud,
+                best.avgWind,
+                best.precipFree,
+                response.timezone,
+                best.sqm
+        );
+    }
+
+    // Runs PlacesScoring again over every raw forecast held in memory, split across the
+    // fork/join pool. The data is as old as it was, so states keep their fetch time and only the
+    // local snapshot is rewritten. The results reach the index as ordinary place updates.
+    private void rescoreCached(@NonNull NightSettings settings) {
+        Map<String, Long> fetchedAt = new HashMap<>();
+        for (Map.Entry<String, PlaceSkyState> entry : skyStates.entrySet()) {
+            fetchedAt.put(entry.getKey(), entry.getValue().updatedAt);
+        }
+        List<Place> places = allPlaces;
+        submit(executor, () -> {
+            Map<String, PlaceSkyState> rescored = new ConcurrentHashMap<>();
+            Set<String> failed = ConcurrentHashMap.newKeySet();
+            ForkJoinPool.commonPool().invoke(
+                    new RescoreTask(places, 0, places.size(), settings, fetchedAt, rescored, failed));
+            if (!failed.isEmpty()) {
+                mainHandler.post(() -> refetchVisible(failed));
+            }
+            if (rescored.isEmpty()) {
+                return;
+            }
+            onState(() -> {
+                if (nightSettings != settings) return;
+                for (Place place : places) {
+                    PlaceSkyState state = rescored.get(place.getId());
+                    if (state != null) {
+                        putSkyState(place.getId(), state);
+                        emitPlace(place.getId());
+                    }
+                }
+            });
+        });
+    }
+
+    private final class RescoreTask extends RecursiveAction {
+        private final List<Place> places;
+        private final int from;
+        private final int to;
+        private final NightSettings settings;
+        private final Map<String, Long> fetchedAt;
+        private final Map<String, PlaceSkyState> rescored;
+        private final Set<String> failed;
+
+        RescoreTask(@NonNull List<Place> places,
+                    int from,
+                    int to,
+                    @NonNull NightSettings settings,
+                    @NonNull Map<String, Long> fetchedAt,
+                    @NonNull Map<String, PlaceSkyState> rescored,
+                    @NonNull Set<String> failed) {
+            this.places = places;
+            this.from = from;
+            this.to = to;
+            this.settings = settings;
+            this.fetchedAt = fetchedAt;
+            this.rescored = rescored;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > RESCORE_LEAF_PLACES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RescoreTask(places, from, mid, settings, fetchedAt, rescored, failed),
+                        new RescoreTask(places, mid, to, settings, fetchedAt, rescored, failed));
+                return;
+            }
+            for (int i = from; i < to && !destroyed; i++) {
+                Place place = places.get(i);
+                PlacesService.ForecastResponse response = rawForecasts.get(place.getId());
+                if (response == null) {
+                    continue;
+                }
+                Long updatedAt = fetchedAt.get(place.getId());
+                try {
+                    PlaceSkyState state = scoreForecast(place, response, settings,
+                            updatedAt != null ? updatedAt : System.currentTimeMillis());
+                    saveLocalSnapshot(place.getId(), state);
+                    rescored.put(place.getId(), state);
+                } catch (IOException ignored) {
+                    // The new window misses the forecast; a fetch will replace it.
+                    rawForecasts.remove(place.getId());
+                    failed.add(place.getId());
+                }
+            }
+        }
+    }
+
+    // Main thread. Rows off screen keep their previous score until their next refresh.
+    private void refetchVisible(@NonNull Set<String> placeIds) {
+        if (destroyed || lastUi.isEmpty()) {
+            return;
+        }
+        int start = Math.max(0, Math.min(visibleStart, lastUi.size() - 1));
+        int end = Math.max(start, Math.min(visibleEnd, lastUi.size() - 1));
+        for (int i = start; i <= end; i++) {
+            Place place = lastUi.get(i).place;
+            if (placeIds.contains(place.getId())) {
+                requestFetch(place, true);
+            }
+        }
+    }
+
+    @Nullable
+    private int[] recordHistory(@NonNull String placeId, @NonNull PlaceSkyState state) {
+        try {
+            history.append(placeId, state.updatedAt, state.score, state.clearPct, state.moonPct);
+            return history.dailyScores(placeId, HISTORY_DAYS, state.updatedAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // State thread. Only rows in or next to the visible window are read, each once per reload,
+    // so a long list costs a screenful of file reads rather than two per place.
+    private void loadHistory(@NonNull List<String> placeIds) {
+        List<String> pending = new ArrayList<>();
+        for (String id : placeIds) {
+            if (historyRead.add(id)) {
+                pending.add(id);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        submit(executor, () -> {
+            long now = System.currentTimeMillis();
+            Map<String, int[]> loaded = new HashMap<>();
+            for (String id : pending) {
+                try {
+                    loaded.put(id, history.dailyScores(id, HISTORY_DAYS, now));
+                } catch (IOException ignored) {
+                    // Unreadable history only loses the sparkline.
+                }
+            }
+            onState(() -> {
+                for (Map.Entry<String, int[]> entry : loaded.entrySet()) {
+                    // Removed meanwhile, or read again after a reload.
+                    if (!historyRead.contains(entry.getKey())) {
+                        continue;
+                    }
+                    historyScores.put(entry.getKey(), entry.getValue());
+                    emitPlace(entry.getKey());
+                }
+            });
+        });
+    }
+
+    // One batch for the whole list so visible fetches find tonight's darkness already cached.
+    private void primeDarkness() {
+        List<Place> places = allPlaces;
+        int count = places.size();
+        if (count == 0) {
+            return;
+        }
+        String[] ids = new String[count];
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        Integer[] bortles = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            Place place = places.get(i);
+            ids[i] = place.getId();
+            lats[i] = place.getLat();
+            lons[i] = place.getLon();
+            bortles[i] = place.getBortle();
+        }
+        submit(executor, () -> darknessCache.prime(ids, lats, lons, bortles, count,
+                System.currentTimeMillis()));
+    }
+
+    private void scheduleAvailability() {
+        List<Place> places = allPlaces;
+        submit(availabilityExecutor, () -> {
+            long now = System.currentTimeMillis();
+            DarknessAvailability.Ephemerides table = null;
+            for (Place place : places) {
+                String id = place.getId();
+                DarknessAvailability current = availability.get(id);
+                if (current != null && current.isUsable(place.getLat(), place.getLon(), now)) {
+                    continue;
+                }
+                File file = availabilityFile(id);
+                try {
+                    DarknessAvailability stored = DarknessAvailability.readFrom(file);
+                    if (stored.isUsable(place.getLat(), place.getLon(), now)) {
+                        availability.put(id, stored);
+                        continue;
+                    }
+                } catch (IOException ignored) {
+                    // Missing or unreadable; rebuilt below.
+                }
+                if (table == null) {
+                    table = DarknessAvailability.prepare(now);
+                }
+                DarknessAvailability built = DarknessAvailability.compute(place.getLat(), place.getLon(), table);
+                availability.put(id, built);
+                writeAvailability(id, built);
+            }
+        });
+    }
+
+    private void updateAvailabilityForecast(@NonNull String placeId,
+                                            @NonNull List<PlacesService.ForecastHour> hours) {
+        submit(availabilityExecutor, () -> {
+            DarknessAvailability current = availability.get(placeId);
+            if (current == null) {
+                return;
+            }
+            DarknessAvailability updated = current.withForecast(hours, DARK_CLEAR_MAX_CLOUD);
+            availability.put(placeId, updated);
+            writeAvailability(placeId, updated);
+        });
+    }
+
+    private void writeAvailability(@NonNull String placeId, @NonNull DarknessAvailability bits) {
+        if (!availabilityDir.exists() && !availabilityDir.mkdirs()) {
+            return;
+        }
+        try {
+            bits.writeTo(availabilityFile(placeId));
+        } catch (IOException ignored) {
+            // Kept in memory; rebuilt on the next launch.
+        }
+    }
+
+    @NonNull
+    private File availabilityFile(@NonNull String placeId) {
+        return new File(availabilityDir, placeId.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin");
+    }
+
     private int clampScore(int value) {
         if (value < 0) return 0;
         if (value > 100) return 100;
         return value;
     }
 
+    // Distances used for DISTANCE sort are spherical, from the spatial index; rows and the
+    // detail sheet display the ellipsoidal figure from exactDistanceKm.
     private void computeDistances() {
+        distanceCache.clear();
         Location origin = deviceLocation;
         if (origin == null) {
-            distanceCache.clear();
+            distanceOrigin = null;
             return;
         }
-        float[] results = new float[1];
-        for (Place place : allPlaces) {
-            Location.distanceBetween(
-                    origin.getLatitude(),
-                    origin.getLongitude(),
-                    place.getLat(),
-                    place.getLon(),
-                    results
-            );
-            distanceCache.put(place.getId(), results[0] / 1000d);
+        distanceOrigin = new double[]{origin.getLatitude(), origin.getLongitude()};
+        spatialIndex.distancesFrom(origin.getLatitude(), origin.getLongitude(), distanceCache);
+    }
+
+    // A location update only touches the rows whose distance moved by a display step, so a
+    // walking user does not re-sort the whole list every fix.
+    private void updateDistances() {
+        Location origin = deviceLocation;
+        if (origin == null || distanceOrigin == null) {
+            computeDistances();
+            emitUi();
+            return;
+        }
+        double lat = origin.getLatitude();
+        double lon = origin.getLongitude();
+        if (PlaceSpatialIndex.distanceKm(distanceOrigin[0], distanceOrigin[1], lat, lon) < DISTANCE_STEP_KM) {
+            return;
+        }
+        distanceOrigin = new double[]{lat, lon};
+        Map<String, Double> next = new HashMap<>();
+        spatialIndex.distancesFrom(lat, lon, next);
+        for (Map.Entry<String, Double> entry : next.entrySet()) {
+            Double previous = distanceCache.get(entry.getKey());
+            if (previous == null || Math.abs(previous - entry.getValue()) >= DISTANCE_STEP_KM) {
+                distanceCache.put(entry.getKey(), entry.getValue());
+                emitPlace(entry.getKey());
+            }
         }
     }
 
@@ -588,35 +1561,36 @@ public final class PlacesController {
         return new long[]{start.getTimeInMillis(), end.getTimeInMillis()};
     }
 
-    private PlaceSkyState buildStateFromCache(@NonNull Place place) {
+    private PlaceSkyState buildStateFromCache(@NonNull Place place,
+                                              @NonNull Map<String, ?> values,
+                                              boolean detail) {
         PlacesRepository.ComputedFields fields = repository.getCachedComputedFields(place.getId());
         if (fields != null && fields.isValid()) {
-            return composeState(place.getId(), fields, true);
+            return composeState(place.getId(), fields, true, values, detail);
         }
-        return restoreFromLocalOnly(place.getId());
+        return restoreFromLocalOnly(place.getId(), values, detail);
     }
 
     private PlaceSkyState composeState(@NonNull String placeId,
                                        @NonNull PlacesRepository.ComputedFields fields,
-                                       boolean fromCache) {
-        List<Integer> timeline = readTimeline(placeId);
-        if (timeline.isEmpty()) {
-            timeline = fallbackTimeline(fields.clearPct);
-        }
-        List<HourSample> samples = readHourSamples(placeId);
-        if (samples.isEmpty()) {
-            samples = Collections.singletonList(new HourSample(
-                    fields.windowStart,
-                    fields.clearPct,
-                    0d,
-                    0d
-            ));
-        }
-        TimeZone timezone = readTimezone(placeId);
-        double avgCloud = readDouble(keyAvgCloud(placeId), 100d - fields.clearPct);
-        double avgWind = readDouble(keyAvgWind(placeId), 0d);
-        boolean precipFree = prefs.getBoolean(keyPrecip(placeId), true);
-        return new PlaceSkyState(
+                                       boolean fromCache,
+                                       @NonNull Map<String, ?> values,
+                                       boolean detail) {
+        List<Integer> timeline = detail
+                ? detailTimeline(stringValue(values, keyTimeline(placeId)), fields.clearPct)
+                : Collections.emptyList();
+        List<HourSample> samples = detail
+                ? detailHours(stringValue(values, keyHours(placeId)), fields.windowStart, fields.clearPct)
+                : Collections.emptyList();
+        String timezoneId = stringValue(values, keyTimezone(placeId));
+        TimeZone timezone = timezoneId == null || timezoneId.isEmpty()
+                ? TimeZone.getDefault()
+                : TimeZone.getTimeZone(timezoneId);
+        double avgCloud = doubleValue(values, keyAvgCloud(placeId), 100d - fields.clearPct);
+        double avgWind = doubleValue(values, keyAvgWind(placeId), 0d);
+        Object precip = values.get(keyPrecip(placeId));
+        boolean precipFree = !(precip instanceof Boolean) || (Boolean) precip;
+        PlaceSkyState state = new PlaceSkyState(
                 clampScore(fields.score),
                 PlacesScoring.toStatus(fields.score),
                 fields.windowStart,
@@ -630,21 +1604,25 @@ public final class PlacesController {
                 avgCloud,
                 avgWind,
                 precipFree,
-                timezone
+                timezone,
+                doubleValue(values, keySqm(placeId), Double.NaN)
         );
+        return detail ? state : state.toCompact();
     }
 
     @Nullable
-    private PlaceSkyState restoreFromLocalOnly(@NonNull String placeId) {
-        int score = prefs.getInt(keyLocalScore(placeId), -1);
+    private PlaceSkyState restoreFromLocalOnly(@NonNull String placeId,
+                                               @NonNull Map<String, ?> values,
+                                               boolean detail) {
+        int score = (int) longValue(values, keyLocalScore(placeId), -1L);
         if (score < 0) {
             return null;
         }
-        long updated = prefs.getLong(keyLocalUpdated(placeId), 0L);
-        long winStart = prefs.getLong(keyLocalWindowStart(placeId), 0L);
-        long winEnd = prefs.getLong(keyLocalWindowEnd(placeId), 0L);
-        int clear = prefs.getInt(keyLocalClear(placeId), 0);
-        int moon = prefs.getInt(keyLocalMoon(placeId), 0);
+        long updated = longValue(values, keyLocalUpdated(placeId), 0L);
+        long winStart = longValue(values, keyLocalWindowStart(placeId), 0L);
+        long winEnd = longValue(values, keyLocalWindowEnd(placeId), 0L);
+        int clear = (int) longValue(values, keyLocalClear(placeId), 0L);
+        int moon = (int) longValue(values, keyLocalMoon(placeId), 0L);
         PlacesRepository.ComputedFields fields = new PlacesRepository.ComputedFields(
                 score,
                 winStart,
@@ -653,7 +1631,7 @@ public final class PlacesController {
                 moon,
                 updated
         );
-        return composeState(placeId, fields, true);
+        return composeState(placeId, fields, true, values, detail);
     }
 
     private void saveLocalSnapshot(@NonNull String placeId, @NonNull PlaceSkyState state) {
@@ -670,6 +1648,7 @@ public final class PlacesController {
                 .putBoolean(keyPrecip(placeId), state.precipFree);
         writeDouble(editor, keyAvgCloud(placeId), state.avgCloud);
         writeDouble(editor, keyAvgWind(placeId), state.avgWind);
+        writeDouble(editor, keySqm(placeId), state.sqm);
         editor.apply();
     }
 
@@ -681,6 +1660,7 @@ public final class PlacesController {
                 .remove(keyAvgCloud(placeId))
                 .remove(keyAvgWind(placeId))
                 .remove(keyPrecip(placeId))
+                .remove(keySqm(placeId))
                 .remove(keyLocalScore(placeId))
                 .remove(keyLocalClear(placeId))
                 .remove(keyLocalMoon(placeId))
@@ -690,22 +1670,19 @@ public final class PlacesController {
                 .apply();
     }
 
-    private List<Integer> readTimeline(@NonNull String placeId) {
-        String raw = prefs.getString(keyTimeline(placeId), null);
-        return raw == null ? Collections.emptyList() : decodeTimeline(raw);
-    }
-
-    private List<HourSample> readHourSamples(@NonNull String placeId) {
-        String raw = prefs.getString(keyHours(placeId), null);
-        return raw == null ? Collections.emptyList() : decodeHours(raw);
+    @NonNull
+    private List<Integer> detailTimeline(@Nullable String raw, int clearPct) {
+        List<Integer> timeline = raw == null ? Collections.emptyList() : decodeTimeline(raw);
+        return timeline.isEmpty() ? fallbackTimeline(clearPct) : timeline;
     }
 
-    private TimeZone readTimezone(@NonNull String placeId) {
-        String id = prefs.getString(keyTimezone(placeId), null);
-        if (id == null || id.isEmpty()) {
-            return TimeZone.getDefault();
+    @NonNull
+    private List<HourSample> detailHours(@Nullable String raw, long windowStart, int clearPct) {
+        List<HourSample> samples = raw == null ? Collections.emptyList() : decodeHours(raw);
+        if (samples.isEmpty()) {
+            return Collections.singletonList(new HourSample(windowStart, clearPct, 0d, 0d));
         }
-        return TimeZone.getTimeZone(id);
+        return samples;
     }
 
     private String encodeTimeline(@NonNull List<Integer> values) {
@@ -776,6 +1753,23 @@ public final class PlacesController {
         editor.putLong(key, Double.doubleToRawLongBits(value));
     }
 
+    @Nullable
+    private static String stringValue(@NonNull Map<String, ?> values, @NonNull String key) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    // Ints and longs both come back from getAll() boxed as their own type.
+    private static long longValue(@NonNull Map<String, ?> values, @NonNull String key, long fallback) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : fallback;
+    }
+
+    private static double doubleValue(@NonNull Map<String, ?> values, @NonNull String key, double fallback) {
+        Object value = values.get(key);
+        return value instanceof Long ? Double.longBitsToDouble((Long) value) : fallback;
+    }
+
     private double readDouble(@NonNull String key, double fallback) {
         if (!prefs.contains(key)) {
             return fallback;
@@ -790,6 +1784,7 @@ public final class PlacesController {
     private String keyAvgCloud(String id) { return "avg_cloud_" + id; }
     private String keyAvgWind(String id) { return "avg_wind_" + id; }
     private String keyPrecip(String id) { return "precip_" + id; }
+    private String keySqm(String id) { return "sqm_" + id; }
     private String keyLocalScore(String id) { return "score_" + id; }
     private String keyLocalClear(String id) { return "clear_" + id; }
     private String keyLocalMoon(String id) { return "moon_" + id; }
@@ -823,13 +1818,16 @@ public final class PlacesController {
         double weightPrecip = readDouble(PREF_WEIGHT_PRECIP, 0.2d);
         double weightWind = readDouble(PREF_WEIGHT_WIND, 0.1d);
         double weightMoon = readDouble(PREF_WEIGHT_MOON, 0.1d);
-        return new NightSettings(start, end, windCap, weightCloud, weightPrecip, weightWind, weightMoon);
+        int sessionMinutes = prefs.getInt(PREF_SESSION_MINUTES, 180);
+        return new NightSettings(start, end, windCap, weightCloud, weightPrecip, weightWind, weightMoon,
+                sessionMinutes);
     }
 
     private void persistNightSettings(@NonNull NightSettings settings) {
         SharedPreferences.Editor editor = prefs.edit()
                 .putInt(PREF_WINDOW_START, settings.windowStartMinutes)
-                .putInt(PREF_WINDOW_END, settings.windowEndMinutes);
+                .putInt(PREF_WINDOW_END, settings.windowEndMinutes)
+                .putInt(PREF_SESSION_MINUTES, settings.sessionMinutes);
         writeDouble(editor, PREF_WIND_CAP, settings.windCap);
         writeDouble(editor, PREF_WEIGHT_CLOUD, settings.weightCloud);
         writeDouble(editor, PREF_WEIGHT_PRECIP, settings.weightPrecip);
@@ -3,8 +3,10 @@ package com.cosmoscout.ui.places;
 import android.Manifest;
 import android.app.Activity;
 import android.app.TimePickerDialog;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.util.Log;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -13,7 +15,10 @@ import android.location.Location;
 import android.location.LocationManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -23,6 +28,7 @@ import android.webkit.JavascriptInterface;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.PopupMenu;
@@ -41,14 +47,18 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.cosmoscout.R;
+import com.cosmoscout.core.CallHandle;
 import com.cosmoscout.core.Perms;
 import com.cosmoscout.core.Ui;
 import com.cosmoscout.data.places.BortleEstimator;
 import com.cosmoscout.data.places.Place;
+import com.cosmoscout.data.places.PlaceSpatialIndex;
 import com.cosmoscout.data.places.PlacesRepository;
 import com.cosmoscout.data.places.PlacesRepositoryImpl;
 import com.cosmoscout.data.places.PlacesScoring;
+import com.cosmoscout.data.places.RegionalSearch;
 import com.cosmoscout.ui.RefreshableFragment;
+import com.cosmoscout.ui.places.PlacesController.Change;
 import com.cosmoscout.ui.places.PlacesController.Filter;
 import com.cosmoscout.ui.places.PlacesController.HourSample;
 import com.cosmoscout.ui.places.PlacesController.NightSettings;
@@ -75,6 +85,12 @@ import okhttp3.Call;
 public class PlacesFragment extends RefreshableFragment implements PlacesAdapter.PlaceActionListener {
 
     private static final int REQUEST_COARSE_LOCATION = 4021;
+    private static final int NEXT_DARK_MIN_HOURS = 3;
+    private static final double[] REGION_RADII_KM = {25d, 50d, 100d, 200d};
+    // Unsaved region results this close to a saved place are labelled with it.
+    private static final double REGION_NEAR_SAVED_KM = 30d;
+    // Scroll samples further apart than this mean the list had stopped in between.
+    private static final long SCROLL_SAMPLE_MAX_MS = 100L;
 
     private PlacesRepository repository;
     private PlacesController controller;
@@ -89,6 +105,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
     private Chip chipGood;
     private Chip chipOk;
     private Chip chipPoor;
+    private EditText searchInput;
     private ImageButton overflowButton;
     private View addButton;
 
@@ -104,12 +121,34 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
     }
 
     private boolean listErrorToastShown;
+    private long lastScrollUptime;
+    private float scrollPxPerSecond;
+
+    // Fragments only get onLowMemory, so the trim levels are taken from the context.
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (controller != null) {
+                controller.onTrimMemory(level);
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    };
 
     private final PlacesController.Listener controllerListener = new PlacesController.Listener() {
         @Override
-        public void onPlacesUpdated(@NonNull List<UiPlace> places) {
+        public void onPlacesUpdated(@NonNull List<UiPlace> places,
+                                    @Nullable List<Change> changes) {
             lastLoadHadError = false;
-            adapter.submitList(places);
+            adapter.submit(places, changes);
             updateEmptyState(places.isEmpty());
             updateVisibleRange();
             listErrorToastShown = false;
@@ -145,6 +184,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
 
         repository = new PlacesRepositoryImpl(context);
         controller = new PlacesController(context, repository, controllerListener);
+        context.registerComponentCallbacks(memoryCallbacks);
         adapter = new PlacesAdapter(this);
 
         placesList = view.findViewById(R.id.placesList);
@@ -156,6 +196,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         chipGood = view.findViewById(R.id.filterGood);
         chipOk = view.findViewById(R.id.filterOk);
         chipPoor = view.findViewById(R.id.filterPoor);
+        searchInput = view.findViewById(R.id.searchInput);
         overflowButton = view.findViewById(R.id.placesOverflow);
         addButton = view.findViewById(R.id.addPlaceBtn);
 
@@ -165,8 +206,22 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         placesList.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
             public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                long now = SystemClock.uptimeMillis();
+                long elapsed = now - lastScrollUptime;
+                lastScrollUptime = now;
+                float sample = elapsed > 0 && elapsed <= SCROLL_SAMPLE_MAX_MS ? dy * 1000f / elapsed : 0f;
+                // Per-frame deltas jitter; half-and-half smoothing is enough to read a direction.
+                scrollPxPerSecond = (scrollPxPerSecond + sample) / 2f;
                 updateVisibleRange();
             }
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    scrollPxPerSecond = 0f;
+                    updateVisibleRange();
+                }
+            }
         });
 
         applyInsets();
@@ -182,6 +237,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         }
 
         setupFilterChips();
+        setupSearch();
 
         controller.setDeviceLocation(getLastKnownCoarseLocation());
         controller.reload();
@@ -199,6 +255,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         }
         cancelPendingBortleCall();
         if (controller != null) {
+            requireContext().unregisterComponentCallbacks(memoryCallbacks);
             controller.destroy();
         }
         super.onDestroyView();
@@ -212,6 +269,24 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         });
     }
 
+    private void setupSearch() {
+        if (searchInput == null) return;
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                controller.setQuery(s.toString());
+            }
+        });
+    }
+
     private void setupFilterChips() {
         Filter filter = controller.getFilter();
         updateChipState(chipAll, filter == Filter.ALL);
@@ -234,6 +309,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         PopupMenu popup = new PopupMenu(anchor.getContext(), anchor);
         popup.getMenu().add(Menu.NONE, 1, Menu.NONE, R.string.tonight_settings);
         popup.getMenu().add(Menu.NONE, 2, Menu.NONE, R.string.sort_by);
+        popup.getMenu().add(Menu.NONE, 3, Menu.NONE, R.string.region_search);
         popup.setOnMenuItemClickListener(item -> {
             if (item.getItemId() == 1) {
                 showTonightSettingsDialog();
@@ -241,6 +317,9 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
             } else if (item.getItemId() == 2) {
                 showSortDialog();
                 return true;
+            } else if (item.getItemId() == 3) {
+                showRegionSearchDialog();
+                return true;
             }
             return false;
         });
@@ -258,10 +337,108 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         }).setNegativeButton(R.string.cancel, null).show();
     }
 
+    private void showRegionSearchDialog() {
+        String[] labels = new String[REGION_RADII_KM.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = getString(R.string.region_radius_km, (int) REGION_RADII_KM[i]);
+        }
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(R.string.region_search)
+                .setItems(labels, (dialog, which) -> startRegionSearch(REGION_RADII_KM[which]))
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void startRegionSearch(double radiusKm) {
+        CallHandle search = new CallHandle();
+        AlertDialog progress = new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(R.string.region_search)
+                .setMessage(R.string.region_searching)
+                .setNegativeButton(R.string.cancel, (dialog, which) -> search.cancel())
+                .setOnCancelListener(dialog -> search.cancel())
+                .show();
+        controller.searchRegion(radiusKm, search, new PlacesController.RegionListener() {
+            @Override
+            public void onRegionProgress(@NonNull List<RegionalSearch.Candidate> best, boolean done) {
+                if (!isAdded() || !progress.isShowing()) {
+                    return;
+                }
+                if (!done) {
+                    progress.setMessage(TextUtils.join("\n", formatCandidates(best)));
+                    return;
+                }
+                progress.dismiss();
+                showRegionResults(best);
+            }
+
+            @Override
+            public void onRegionError(@NonNull Throwable throwable) {
+                progress.dismiss();
+                if (isAdded()) {
+                    Ui.toast(requireActivity(), getString(R.string.region_search_failed));
+                }
+            }
+        });
+    }
+
+    private void showRegionResults(@NonNull List<RegionalSearch.Candidate> best) {
+        if (best.isEmpty()) {
+            Ui.toast(requireActivity(), getString(R.string.region_no_results));
+            return;
+        }
+        List<String> labels = formatCandidates(best);
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(R.string.region_results)
+                .setItems(labels.toArray(new String[0]), (dialog, which) -> {
+                    RegionalSearch.Candidate candidate = best.get(which);
+                    if (candidate.placeId != null) {
+                        return;
+                    }
+                    AddPlaceDialogController added = showAddPlaceDialog();
+                    if (added != null) {
+                        added.latField.setText(String.format(Locale.US, "%.5f", candidate.lat));
+                        added.lonField.setText(String.format(Locale.US, "%.5f", candidate.lon));
+                        if (candidate.bortle != null) {
+                            added.setBortleValue(String.valueOf(candidate.bortle));
+                        }
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    @NonNull
+    private List<String> formatCandidates(@NonNull List<RegionalSearch.Candidate> candidates) {
+        List<String> labels = new ArrayList<>(candidates.size());
+        for (RegionalSearch.Candidate candidate : candidates) {
+            int score = (int) Math.round(Math.max(0d, Math.min(100d, candidate.result.score)));
+            String where = null;
+            if (candidate.placeId != null) {
+                for (UiPlace ui : adapter.getItems()) {
+                    if (ui.place.getId().equals(candidate.placeId)) {
+                        where = ui.place.getName();
+                        break;
+                    }
+                }
+            }
+            if (where == null) {
+                where = String.format(Locale.getDefault(), "%.3f, %.3f", candidate.lat, candidate.lon);
+                PlaceSpatialIndex.Neighbor closest = controller.closestSavedPlace(candidate.lat, candidate.lon);
+                if (closest != null && closest.distanceKm <= REGION_NEAR_SAVED_KM) {
+                    where = getString(R.string.region_near_saved, where, closest.distanceKm,
+                            closest.place.getName());
+                }
+            }
+            labels.add(getString(R.string.region_candidate, score, candidate.distanceKm, where));
+        }
+        return labels;
+    }
+
     private void showTonightSettingsDialog() {
         View content = LayoutInflater.from(requireContext()).inflate(R.layout.dialog_tonight_settings, null, false);
         TextInputEditText startField = content.findViewById(R.id.windowStartInput);
         TextInputEditText endField = content.findViewById(R.id.windowEndInput);
+        TextInputEditText sessionField = content.findViewById(R.id.sessionLengthInput);
         TextInputEditText windField = content.findViewById(R.id.windCapInput);
         TextInputEditText cloudField = content.findViewById(R.id.weightCloudInput);
         TextInputEditText precipField = content.findViewById(R.id.weightPrecipInput);
@@ -271,6 +448,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         NightSettings settings = controller.getNightSettings();
         startField.setText(formatMinutes(settings.windowStartMinutes));
         endField.setText(formatMinutes(settings.windowEndMinutes));
+        sessionField.setText(String.format(Locale.getDefault(), "%.1f", settings.sessionMinutes / 60d));
         windField.setText(String.format(Locale.getDefault(), "%.1f", settings.windCap));
         cloudField.setText(String.format(Locale.getDefault(), "%.2f", settings.weightCloud));
         precipField.setText(String.format(Locale.getDefault(), "%.2f", settings.weightPrecip));
@@ -289,16 +467,18 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         new MaterialAlertDialogBuilder(requireContext()).setTitle(R.string.tonight_settings).setView(content).setNegativeButton(R.string.cancel, null).setPositiveButton(R.string.save, (dialog, which) -> {
             Integer start = parseMinutesValue(startField.getText());
             Integer end = parseMinutesValue(endField.getText());
+            Double sessionHours = parseDouble(sessionField.getText());
             Double windCap = parseDouble(windField.getText());
             Double weightCloud = parseDouble(cloudField.getText());
             Double weightPrecip = parseDouble(precipField.getText());
             Double weightWind = parseDouble(windWeightField.getText());
             Double weightMoon = parseDouble(moonField.getText());
-            if (start == null || end == null || windCap == null || weightCloud == null || weightPrecip == null || weightWind == null || weightMoon == null) {
+            if (start == null || end == null || sessionHours == null || sessionHours < 0d || windCap == null || weightCloud == null || weightPrecip == null || weightWind == null || weightMoon == null) {
                 showToast(R.string.invalid_coords);
                 return;
             }
-            controller.updateNightSettings(new NightSettings(start, end, windCap, weightCloud, weightPrecip, weightWind, weightMoon));
+            int sessionMinutes = (int) Math.round(sessionHours * 60d);
+            controller.updateNightSettings(new NightSettings(start, end, windCap, weightCloud, weightPrecip, weightWind, weightMoon, sessionMinutes));
         }).show();
     }
 
@@ -355,13 +535,22 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
             return;
         }
-        controller.onVisibleRangeChanged(first, last);
+        int rowHeight = placesList.getHeight() / (last - first + 1);
+        float rowsPerSecond = rowHeight > 0 ? scrollPxPerSecond / rowHeight : 0f;
+        controller.onVisibleRangeChanged(first, last, rowsPerSecond);
     }
 
     private void updateEmptyState(boolean isEmpty) {
         if (emptyState != null) {
             emptyState.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
         }
+        boolean searching = !controller.getQuery().isEmpty();
+        if (emptySubtitle != null) {
+            emptySubtitle.setText(searching ? R.string.search_no_matches : R.string.places_empty_title);
+        }
+        if (emptyAction != null) {
+            emptyAction.setVisibility(searching ? View.GONE : View.VISIBLE);
+        }
         if (addButton != null) {
             addButton.setVisibility(isEmpty ? View.GONE : View.VISIBLE);
         }
@@ -402,8 +591,9 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         if (place.getBortle() != null) {
             subtitleText.append(" • ").append(getString(R.string.bortle)).append(" ").append(place.getBortle());
         }
-        if (uiPlace.distanceKm != null) {
-            subtitleText.append(" • ").append(getString(R.string.distance_away, String.format(Locale.getDefault(), "%.1f", uiPlace.distanceKm)));
+        Double distanceKm = controller.exactDistanceKm(place);
+        if (distanceKm != null) {
+            subtitleText.append(" • ").append(getString(R.string.distance_away, String.format(Locale.getDefault(), "%.1f", distanceKm)));
         }
         subtitle.setText(subtitleText.toString());
 
@@ -423,7 +613,15 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
             score.setText(String.valueOf(state.score));
             cloudLine.setText(getString(R.string.clear_pct, state.clearPct));
             windLine.setText(getString(R.string.detail_wind, state.avgWind));
-            moonLine.setText(getString(R.string.moon_pct, state.moonPct));
+            long nextDark = controller.findNextDarkNight(place.getId(), NEXT_DARK_MIN_HOURS);
+            if (nextDark > 0L) {
+                java.text.DateFormat dateFormat = DateFormat.getMediumDateFormat(requireContext());
+                dateFormat.setTimeZone(controller.getTimezone(place.getId()));
+                moonLine.setText(getString(R.string.detail_moon_next_dark, state.moonPct,
+                        dateFormat.format(new Date(nextDark))));
+            } else {
+                moonLine.setText(getString(R.string.moon_pct, state.moonPct));
+            }
             long minutes = Math.max(0, TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - state.updatedAt));
             updated.setText(minutes == 0 ? getString(R.string.updated_just_now) : getString(R.string.updated_ago, minutes));
             populateTimeline(timeline, controller.getHourSamples(place.getId()), controller.getTimezone(place.getId()));
@@ -613,9 +811,10 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         });
     }
 
-    private void showAddPlaceDialog() {
+    @Nullable
+    private AddPlaceDialogController showAddPlaceDialog() {
         if (!isAdded()) {
-            return;
+            return null;
         }
         View content = LayoutInflater.from(requireContext()).inflate(R.layout.bottomsheet_add_place, null, false);
         AddPlaceDialogController dialogController = new AddPlaceDialogController(content);
@@ -635,6 +834,7 @@ public class PlacesFragment extends RefreshableFragment implements PlacesAdapter
         dialogController.estimateBortleButton.setOnClickListener(v -> requestBortleEstimate(dialogController, false));
         dialog.show();
         activeDialog = dialogController;
+        return dialogController;
     }
 
     private void handleSavePlace(@NonNull AddPlaceDialogController dialogController) {
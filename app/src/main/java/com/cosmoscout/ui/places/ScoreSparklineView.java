@@ -0,0 +1,110 @@
+package com.cosmoscout.ui.places;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.cosmoscout.R;
+
+// Daily score history as a line; days without data (-1) break the line.
+public final class ScoreSparklineView extends View {
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dotPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+
+    @Nullable private int[] scores;
+
+    public ScoreSparklineView(Context context) {
+        super(context);
+        init();
+    }
+
+    public ScoreSparklineView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public ScoreSparklineView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        int color = ContextCompat.getColor(getContext(), R.color.colorPrimary);
+        linePaint.setColor(color);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(dp(1.5f));
+        linePaint.setStrokeJoin(Paint.Join.ROUND);
+        dotPaint.setColor(color);
+        dotPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public void setScores(@Nullable int[] data) {
+        scores = data;
+        setVisibility(hasData(data) ? VISIBLE : INVISIBLE);
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int[] data = scores;
+        if (data == null || data.length == 0) {
+            return;
+        }
+        float inset = dp(2);
+        float width = getWidth() - getPaddingLeft() - getPaddingRight() - inset * 2;
+        float height = getHeight() - getPaddingTop() - getPaddingBottom() - inset * 2;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        float step = data.length > 1 ? width / (data.length - 1) : 0f;
+        float left = getPaddingLeft() + inset;
+        float bottom = getPaddingTop() + inset + height;
+        path.reset();
+        boolean drawing = false;
+        float lastX = 0f;
+        float lastY = 0f;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] < 0) {
+                drawing = false;
+                continue;
+            }
+            float x = left + step * i;
+            float y = bottom - height * Math.min(100, data[i]) / 100f;
+            if (drawing) {
+                path.lineTo(x, y);
+            } else {
+                path.moveTo(x, y);
+                drawing = true;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        canvas.drawPath(path, linePaint);
+        canvas.drawCircle(lastX, lastY, dp(2), dotPaint);
+    }
+
+    private static boolean hasData(@Nullable int[] data) {
+        if (data == null) {
+            return false;
+        }
+        for (int value : data) {
+            if (value >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private float dp(float value) {
+        return value * getResources().getDisplayMetrics().density;
+    }
+}
@@ -0,0 +1,70 @@
+package com.cosmoscout.ui.places;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Which places may keep their full sky state, by estimated size in least-recently-used order.
+// It only does the bookkeeping: the caller compacts whatever put and trimTo return. Not
+// thread-safe; PlacesController uses it from its state thread.
+final class SkyStateLru {
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    SkyStateLru(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Records a full state for placeId and returns the places to compact to get back under
+    // the budget. The newest entry is never returned.
+    @NonNull
+    List<String> put(@NonNull String placeId, long bytes) {
+        Long previous = sizes.put(placeId, bytes);
+        totalBytes += bytes - (previous != null ? previous : 0L);
+        return evictOver(budgetBytes, placeId);
+    }
+
+    void touch(@NonNull String placeId) {
+        sizes.get(placeId);
+    }
+
+    void remove(@NonNull String placeId) {
+        Long previous = sizes.remove(placeId);
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+    }
+
+    // Shrinks to at most targetBytes once; later puts may grow back to the full budget.
+    @NonNull
+    List<String> trimTo(long targetBytes) {
+        return evictOver(Math.max(0L, targetBytes), null);
+    }
+
+    long budgetBytes() {
+        return budgetBytes;
+    }
+
+    @NonNull
+    private List<String> evictOver(long limit, @Nullable String keep) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+        while (totalBytes > limit && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            it.remove();
+        }
+        return evicted;
+    }
+}
@@ -18,6 +18,8 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.cosmoscout.R;
+import com.cosmoscout.data.weather.ObservationScheduler;
+import com.cosmoscout.data.weather.SiderealObjectCache;
 import com.cosmoscout.data.weather.TonightSkyService;
 import com.cosmoscout.databinding.FragmentTonightBinding;
 import com.cosmoscout.ui.RefreshableFragment;
@@ -46,6 +48,7 @@ public class TonightFragment extends RefreshableFragment {
 
     private FragmentTonightBinding binding;
     private TonightObjectsAdapter objectsAdapter;
+    private int loadGeneration;
 
     public TonightFragment() {
         super(R.layout.fragment_tonight);
@@ -67,6 +70,7 @@ public class TonightFragment extends RefreshableFragment {
         binding.setStatusText(null);
         binding.setBestHourText(getString(R.string.tonight_best_hour_placeholder));
         binding.setErrorText(null);
+        binding.setPlanText(null);
 
         loadTonightSnapshot(null);
     }
@@ -92,16 +96,35 @@ public class TonightFragment extends RefreshableFragment {
         binding.setIsLoading(true);
         binding.setStatusText(null);
         binding.setErrorText(null);
+        binding.setPlanText(null);
         binding.setBestHourText(getString(R.string.tonight_best_hour_placeholder));
 
         Location location = resolveLocation();
         final double lat = location != null ? location.getLatitude() : DEFAULT_LAT;
         final double lon = location != null ? location.getLongitude() : DEFAULT_LON;
 
+        final int generation = ++loadGeneration;
         executor.execute(() -> {
             try {
-                TonightSkyService.Result result = skyService.fetchTonight(lat, lon);
-                mainHandler.post(() -> applyForecast(result, onComplete));
+                Integer bortle = skyService.estimateBortle(lat, lon);
+                TonightSkyService.Result result = skyService.fetchTonight(lat, lon, bortle,
+                        new TonightSkyService.ProgressListener() {
+                            @Override
+                            public void onWindows(@NonNull TimeZone timezone,
+                                                  @NonNull List<TonightSkyService.Window> windows) {
+                                mainHandler.post(() -> applyWindows(generation, timezone, windows));
+                            }
+
+                            @Override
+                            public void onObjects(@NonNull TonightSkyService.ObjectGroup group,
+                                                  @NonNull List<TonightSkyService.VisibleObject> objects) {
+                                mainHandler.post(() -> applyObjects(generation, group, objects));
+                            }
+                        });
+                // Lays the visible objects onto tonight's dark hours, a block per target.
+                ObservationScheduler.Plan plan = ObservationScheduler.plan(lat, lon,
+                        result.windows, result.objects);
+                mainHandler.post(() -> finishObjects(generation, result, plan, onComplete));
             } catch (Exception e) {
                 Log.w("TonightFragment", "Failed to load tonight forecast", e);
                 postError(R.string.tonight_error_message, onComplete);
@@ -109,17 +132,13 @@ public class TonightFragment extends RefreshableFragment {
         });
     }
 
-    private void applyForecast(@Nullable TonightSkyService.Result result,
-                               @Nullable Runnable onComplete) {
-        if (!canUpdateUi()) {
-            if (onComplete != null) {
-                onComplete.run();
-            }
+    private void applyWindows(int generation,
+                              @NonNull TimeZone timezone,
+                              @NonNull List<TonightSkyService.Window> windows) {
+        if (!canUpdateUi() || generation != loadGeneration) {
             return;
         }
-        TonightSkyService.Window best = result != null && !result.windows.isEmpty()
-                ? result.windows.get(0) : null;
-        java.util.TimeZone timezone = result != null ? result.timezone : java.util.TimeZone.getDefault();
+        TonightSkyService.Window best = windows.isEmpty() ? null : windows.get(0);
         if (best == null) {
             binding.setErrorText(getString(R.string.tonight_no_windows));
             binding.setStatusText(null);
@@ -129,16 +148,32 @@ public class TonightFragment extends RefreshableFragment {
             binding.setBestHourText(formatRange(best.startMillis, best.endMillis, timezone));
             binding.setStatusText(getString(R.string.tonight_status_format, best.clearPercent, best.moonPercent));
             binding.setErrorText(null);
-            List<TonightObjectItem> mapped = result != null
-                    ? mapObjects(result.objects)
-                    : Collections.emptyList();
-            if (mapped.isEmpty()) {
+        }
+        binding.setIsLoading(false);
+    }
+
+    private void applyObjects(int generation,
+                              @NonNull TonightSkyService.ObjectGroup group,
+                              @NonNull List<TonightSkyService.VisibleObject> objects) {
+        if (!canUpdateUi() || generation != loadGeneration) {
+            return;
+        }
+        if (objects.isEmpty() && !objectsAdapter.hasGroups()) {
+            return;
+        }
+        objectsAdapter.mergeGroup(group.ordinal(), mapObjects(objects));
+    }
+
+    private void finishObjects(int generation,
+                               @NonNull TonightSkyService.Result result,
+                               @NonNull ObservationScheduler.Plan plan,
+                               @Nullable Runnable onComplete) {
+        if (canUpdateUi() && generation == loadGeneration) {
+            if (result.objects.isEmpty()) {
                 objectsAdapter.submitList(fallbackObjects());
-            } else {
-                objectsAdapter.submitList(mapped);
             }
+            binding.setPlanText(formatPlan(plan, result.timezone));
         }
-        binding.setIsLoading(false);
         if (onComplete != null) {
             onComplete.run();
         }
@@ -163,6 +198,24 @@ public class TonightFragment extends RefreshableFragment {
         });
     }
 
+    @Nullable
+    private String formatPlan(@NonNull ObservationScheduler.Plan plan, @NonNull TimeZone timezone) {
+        if (plan.entries.isEmpty()) {
+            return null;
+        }
+        ZoneId zoneId = resolveZoneId(timezone);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("h:mm a", Locale.getDefault());
+        StringBuilder text = new StringBuilder();
+        for (ObservationScheduler.Entry entry : plan.entries) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            String start = formatter.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(entry.startMillis), zoneId));
+            text.append(getString(R.string.tonight_plan_entry, start, entry.target.name));
+        }
+        return text.toString();
+    }
+
     private boolean canUpdateUi() {
         return binding != null && isAdded();
     }
@@ -314,5 +367,8 @@ public class TonightFragment extends RefreshableFragment {
     public void onDestroy() {
         super.onDestroy();
         executor.shutdownNow();
+        SiderealObjectCache.Stats stars = TonightSkyService.starCacheStats();
+        Log.d("TonightFragment", "star cache: " + stars.hits + " hits, " + stars.misses + " misses, "
+                + stars.size + " entries");
     }
 }
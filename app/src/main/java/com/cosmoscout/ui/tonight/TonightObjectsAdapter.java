@@ -10,10 +10,13 @@ import com.cosmoscout.databinding.ItemTonightObjectBinding;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 final class TonightObjectsAdapter extends RecyclerView.Adapter<TonightObjectsAdapter.ObjectViewHolder> {
 
     private final List<TonightObjectItem> items = new ArrayList<>();
+    private final TreeMap<Integer, Integer> groupSizes = new TreeMap<>();
 
     @NonNull
     @Override
@@ -38,9 +41,42 @@ final class TonightObjectsAdapter extends RecyclerView.Adapter<TonightObjectsAda
     public void submitList(@NonNull List<TonightObjectItem> data) {
         items.clear();
         items.addAll(data);
+        groupSizes.clear();
         notifyDataSetChanged();
     }
 
+    public boolean hasGroups() {
+        return !groupSizes.isEmpty();
+    }
+
+    // Groups are kept in ascending key order; replacing a group only touches its own range.
+    public void mergeGroup(int group, @NonNull List<TonightObjectItem> data) {
+        if (groupSizes.isEmpty() && !items.isEmpty()) {
+            int removed = items.size();
+            items.clear();
+            notifyItemRangeRemoved(0, removed);
+        }
+        int start = 0;
+        for (Map.Entry<Integer, Integer> entry : groupSizes.headMap(group).entrySet()) {
+            start += entry.getValue();
+        }
+        Integer previous = groupSizes.get(group);
+        int oldSize = previous != null ? previous : 0;
+        if (oldSize > 0) {
+            items.subList(start, start + oldSize).clear();
+            notifyItemRangeRemoved(start, oldSize);
+        }
+        items.addAll(start, data);
+        groupSizes.put(group, data.size());
+        if (!data.isEmpty()) {
+            notifyItemRangeInserted(start, data.size());
+        }
+        if (start > 0 && start + data.size() == items.size() && (oldSize == 0) != data.isEmpty()) {
+            // The previous tail row gains or loses its divider.
+            notifyItemChanged(start - 1);
+        }
+    }
+
     static final class ObjectViewHolder extends RecyclerView.ViewHolder {
         private final ItemTonightObjectBinding binding;
 
@@ -0,0 +1,220 @@
+package com.cosmoscout.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FetchPoolTest {
+
+    private static final String HOST = "api.example.com";
+    private static final long TIMEOUT_MS = 5000L;
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> dropped = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private FetchPool pool;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void fullQueue_dropsOldestWaitingTask() throws Exception {
+        pool = new FetchPool(1, 1, 2);
+        block(HOST, "busy");
+        submit(HOST, "a", false);
+        submit(HOST, "b", false);
+        submit(HOST, "c", false);
+
+        assertEquals(Collections.singletonList("a"), dropped);
+        assertEquals(1L, pool.stats().dropped);
+        assertEquals(2, pool.stats().queued);
+
+        release.countDown();
+        awaitCompleted(3);
+        assertEquals(Arrays.asList("busy", "b", "c"), ran);
+    }
+
+    @Test
+    public void fullQueue_dropsPrefetchBeforeOlderRegularTask() throws Exception {
+        pool = new FetchPool(1, 1, 2);
+        block(HOST, "busy");
+        submit(HOST, "regular", false);
+        submit(HOST, "prefetch", true);
+        submit(HOST, "newer", false);
+
+        assertEquals(Collections.singletonList("prefetch"), dropped);
+        release.countDown();
+        awaitCompleted(3);
+        assertEquals(Arrays.asList("busy", "regular", "newer"), ran);
+    }
+
+    @Test
+    public void prefetch_neverTakesLastFreeWorker() throws Exception {
+        pool = new FetchPool(2, 2, 10);
+        block(HOST, "busy");
+        submit(HOST, "prefetch", true);
+
+        assertEquals(1, pool.stats().running);
+        assertEquals(1, pool.stats().queued);
+
+        release.countDown();
+        awaitCompleted(2);
+        assertEquals(Arrays.asList("busy", "prefetch"), ran);
+    }
+
+    @Test
+    public void regularTasks_runBeforeEarlierPrefetches() throws Exception {
+        pool = new FetchPool(1, 1, 10);
+        block(HOST, "busy");
+        submit(HOST, "prefetch", true);
+        submit(HOST, "regular", false);
+
+        release.countDown();
+        awaitCompleted(3);
+        assertEquals(Arrays.asList("busy", "regular", "prefetch"), ran);
+    }
+
+    @Test
+    public void perHostLimit_letsOtherHostsRun() throws Exception {
+        pool = new FetchPool(2, 1, 10);
+        block("a.example.com", "a1");
+        block("a.example.com", "a2");
+        block("b.example.com", "b1");
+
+        assertEquals(2, pool.stats().running);
+        assertEquals(1, pool.stats().queued);
+
+        release.countDown();
+        awaitCompleted(3);
+        assertTrue(ran.containsAll(Arrays.asList("a1", "a2", "b1")));
+    }
+
+    @Test
+    public void promote_movesQueuedPrefetchToBackOfRegularTier() throws Exception {
+        pool = new FetchPool(1, 1, 10);
+        block(HOST, "busy");
+        submit(HOST, "early", true);
+        submit(HOST, "late", true);
+        submit(HOST, "regular", false);
+
+        assertTrue(pool.promote("late"));
+        assertFalse(pool.promote("late"));
+        assertFalse(pool.promote("regular"));
+        assertFalse(pool.promote("unknown"));
+        assertFalse(pool.promote("busy"));
+        assertEquals(1L, pool.stats().promoted);
+
+        release.countDown();
+        awaitCompleted(4);
+        assertEquals(Arrays.asList("busy", "regular", "late", "early"), ran);
+    }
+
+    @Test
+    public void cancel_removesQueuedTaskWithoutDropCallback() throws Exception {
+        pool = new FetchPool(1, 1, 10);
+        block(HOST, "busy");
+        submit(HOST, "a", false);
+        submit(HOST, "b", true);
+
+        assertTrue(pool.cancel("a"));
+        assertTrue(pool.cancel("b"));
+        assertFalse(pool.cancel("a"));
+        assertFalse(pool.cancel("busy"));
+        assertEquals(2L, pool.stats().cancelled);
+        assertEquals(0, pool.stats().queued);
+
+        release.countDown();
+        awaitCompleted(1);
+        assertEquals(Collections.singletonList("busy"), ran);
+        assertTrue(dropped.isEmpty());
+    }
+
+    @Test
+    public void abort_cancelsHandleOfRunningTaskOnce() throws Exception {
+        pool = new FetchPool(2, 2, 10);
+        CallHandle handle = new CallHandle();
+        CountDownLatch started = new CountDownLatch(1);
+        pool.submit(HOST, "busy", false, () -> {
+            started.countDown();
+            awaitRelease();
+            ran.add("busy");
+        }, null, handle);
+        block(HOST, "plain");
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        assertTrue(pool.abort("busy"));
+        assertTrue(handle.isCancelled());
+        assertTrue(pool.abort("busy"));
+        assertFalse(pool.abort("plain"));
+        assertFalse(pool.abort("unknown"));
+        assertEquals(1L, pool.stats().aborted);
+
+        release.countDown();
+        awaitCompleted(2);
+        assertFalse(pool.abort("busy"));
+    }
+
+    @Test
+    public void shutdownNow_dropsQueuedAbortsRunningAndRejectsNewTasks() throws Exception {
+        pool = new FetchPool(1, 1, 10);
+        CallHandle handle = new CallHandle();
+        CountDownLatch started = new CountDownLatch(1);
+        pool.submit(HOST, "busy", false, () -> {
+            started.countDown();
+            awaitRelease();
+        }, null, handle);
+        submit(HOST, "queued", false);
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        pool.shutdownNow();
+        assertTrue(handle.isCancelled());
+        assertEquals(Collections.singletonList("queued"), dropped);
+        assertEquals(0, pool.stats().queued);
+        assertEquals(1L, pool.stats().aborted);
+
+        submit(HOST, "late", false);
+        assertEquals(Arrays.asList("queued", "late"), dropped);
+        assertFalse(ran.contains("late"));
+    }
+
+    private void submit(String host, String key, boolean prefetch) {
+        pool.submit(host, key, prefetch, () -> ran.add(key), () -> dropped.add(key), null);
+    }
+
+    // A keyed task that holds its worker until release opens.
+    private void block(String host, String key) {
+        pool.submit(host, key, false, () -> {
+            awaitRelease();
+            ran.add(key);
+        }, () -> dropped.add(key), null);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitCompleted(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (pool.stats().completed < count) {
+            assertTrue("timed out waiting for tasks", System.currentTimeMillis() < deadline);
+            Thread.sleep(5L);
+        }
+    }
+}
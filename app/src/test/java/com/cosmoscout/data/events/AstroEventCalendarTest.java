@@ -0,0 +1,102 @@
+package com.cosmoscout.data.events;
+
+import com.cosmoscout.data.weather.Ephemeris;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AstroEventCalendarTest {
+
+    private static final long YEAR_2025 = 1735689600000L;
+    private static final long YEAR_2026 = 1767225600000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // Greatest eclipse times from the NASA eclipse catalogue.
+    private static final long LUNAR_2025_03_14 = 1741935420000L; // 06:57 UTC, total
+    private static final long LUNAR_2025_09_07 = 1757268660000L; // 18:11 UTC, total
+    private static final long SOLAR_2025_03_29 = 1743245220000L; // 10:47 UTC, partial
+    private static final long SOLAR_2025_09_21 = 1758483720000L; // 19:42 UTC, partial
+    private static final long VENUS_JUPITER_2025_08_12 = 1754956800000L;
+
+    @Test
+    public void generate_findsThe2025Eclipses() {
+        List<AstroEvent> events = AstroEventCalendar.generate(YEAR_2025, YEAR_2026);
+        List<AstroEvent> lunar = ofKind(events, AstroEvent.Kind.LUNAR_ECLIPSE);
+        List<AstroEvent> solar = ofKind(events, AstroEvent.Kind.SOLAR_ECLIPSE);
+
+        assertEquals(2, lunar.size());
+        assertEquals(LUNAR_2025_03_14, lunar.get(0).timeMillis, HOUR);
+        assertEquals(LUNAR_2025_09_07, lunar.get(1).timeMillis, HOUR);
+        assertTrue(lunar.get(0).isTotalOrCentral());
+        assertTrue(lunar.get(1).isTotalOrCentral());
+
+        assertEquals(2, solar.size());
+        assertEquals(SOLAR_2025_03_29, solar.get(0).timeMillis, HOUR);
+        assertEquals(SOLAR_2025_09_21, solar.get(1).timeMillis, HOUR);
+        assertFalse(solar.get(0).isTotalOrCentral());
+        assertFalse(solar.get(1).isTotalOrCentral());
+    }
+
+    @Test
+    public void generate_findsVenusJupiterConjunction() {
+        List<AstroEvent> events = AstroEventCalendar.generate(YEAR_2025, YEAR_2026);
+        AstroEvent found = null;
+        for (AstroEvent event : ofKind(events, AstroEvent.Kind.CONJUNCTION)) {
+            if (event.bodyA == Ephemeris.VENUS && event.bodyB == Ephemeris.JUPITER) {
+                found = event;
+            }
+        }
+        assertNotNull(found);
+        assertEquals(VENUS_JUPITER_2025_08_12, found.timeMillis, DAY);
+        assertTrue(found.separationDeg < 1.2d);
+    }
+
+    @Test
+    public void generate_isSortedAndInRange() {
+        List<AstroEvent> events = AstroEventCalendar.generate(YEAR_2025, YEAR_2026);
+        assertFalse(events.isEmpty());
+        long previous = Long.MIN_VALUE;
+        for (AstroEvent event : events) {
+            assertTrue(event.timeMillis >= previous);
+            assertTrue(event.timeMillis >= YEAR_2025 - DAY && event.timeMillis <= YEAR_2026 + DAY);
+            previous = event.timeMillis;
+        }
+    }
+
+    @Test
+    public void query_reloadsTheStoredCalendar() throws IOException {
+        File file = File.createTempFile("astro_events", ".bin");
+        assertTrue(file.delete());
+        try {
+            long now = System.currentTimeMillis();
+            List<AstroEvent> generated = new AstroEventCalendar(file).query(now, now + 365L * DAY);
+            assertTrue(file.exists());
+
+            List<AstroEvent> reloaded = new AstroEventCalendar(file).query(now, now + 365L * DAY);
+            assertEquals(generated.size(), reloaded.size());
+            for (int i = 0; i < generated.size(); i++) {
+                assertEquals(generated.get(i).getId(), reloaded.get(i).getId());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static List<AstroEvent> ofKind(List<AstroEvent> events, AstroEvent.Kind kind) {
+        List<AstroEvent> out = new ArrayList<>();
+        for (AstroEvent event : events) {
+            if (event.kind == kind) {
+                out.add(event);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,149 @@
+package com.cosmoscout.data.places;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlaceSpatialIndexTest {
+
+    private static final double EARTH_RADIUS_KM = 6371d;
+    private static final double TOLERANCE_KM = 1e-6;
+    // Query points on and around the seams a lat/lon grid gets wrong.
+    private static final double[][] QUERIES = {
+            {0d, 179.95d}, {0d, -179.95d}, {45d, 180d}, {-33d, -179.5d},
+            {89.95d, 0d}, {89.95d, 179d}, {-89.95d, -90d}, {90d, 0d}, {-90d, 0d},
+            {52d, 4d}, {0d, 0d},
+    };
+
+    @Test
+    public void nearest_matchesBruteForceAcrossSeams() {
+        List<Place> places = scatter(new Random(7L), 400);
+        PlaceSpatialIndex index = new PlaceSpatialIndex(places);
+        for (double[] query : QUERIES) {
+            for (int k : new int[]{1, 5, 25}) {
+                List<PlaceSpatialIndex.Neighbor> found = index.nearest(query[0], query[1], k);
+                List<Place> expected = bruteNearest(places, query[0], query[1], k);
+                assertEquals(k, found.size());
+                for (int i = 0; i < k; i++) {
+                    assertEquals(expected.get(i).getId(), found.get(i).place.getId());
+                    assertEquals(haversineKm(query[0], query[1], expected.get(i)),
+                            found.get(i).distanceKm, TOLERANCE_KM);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void within_matchesBruteForceAcrossSeams() {
+        List<Place> places = scatter(new Random(11L), 400);
+        PlaceSpatialIndex index = new PlaceSpatialIndex(places);
+        for (double[] query : QUERIES) {
+            for (double radiusKm : new double[]{0d, 50d, 300d, 2000d}) {
+                Map<String, Double> found = new HashMap<>();
+                for (PlaceSpatialIndex.Neighbor neighbor : index.within(query[0], query[1], radiusKm)) {
+                    assertNull(found.put(neighbor.place.getId(), neighbor.distanceKm));
+                }
+                Set<String> expected = new HashSet<>();
+                for (Place place : places) {
+                    if (haversineKm(query[0], query[1], place) <= radiusKm) {
+                        expected.add(place.getId());
+                    }
+                }
+                assertEquals(expected, found.keySet());
+                for (Place place : places) {
+                    Double distance = found.get(place.getId());
+                    if (distance != null) {
+                        assertEquals(haversineKm(query[0], query[1], place), distance, TOLERANCE_KM);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearest_acrossAntimeridianBeatsSameSideOfDateLine() {
+        List<Place> places = new ArrayList<>();
+        places.add(place("east", 0d, 179.9d));
+        places.add(place("west", 0d, 179d));
+        PlaceSpatialIndex index = new PlaceSpatialIndex(places);
+
+        List<PlaceSpatialIndex.Neighbor> found = index.nearest(0d, -179.9d, 2);
+
+        assertEquals("east", found.get(0).place.getId());
+        assertEquals(22.2d, found.get(0).distanceKm, 0.1d);
+        assertEquals("west", found.get(1).place.getId());
+    }
+
+    @Test
+    public void emptyIndexOrNonPositiveK_returnsNothing() {
+        PlaceSpatialIndex empty = new PlaceSpatialIndex(new ArrayList<>());
+        assertTrue(empty.nearest(0d, 0d, 3).isEmpty());
+        assertTrue(empty.within(0d, 0d, 100d).isEmpty());
+
+        List<Place> places = new ArrayList<>();
+        places.add(place("a", 10d, 10d));
+        PlaceSpatialIndex index = new PlaceSpatialIndex(places);
+        assertTrue(index.nearest(10d, 10d, 0).isEmpty());
+        assertEquals(1, index.nearest(10d, 10d, 5).size());
+        assertTrue(index.within(10d, 10d, -1d).isEmpty());
+    }
+
+    // Clusters straddling the antimeridian and around both poles, plus a global spread.
+    private static List<Place> scatter(Random random, int count) {
+        List<Place> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double lat;
+            double lon;
+            switch (i % 4) {
+                case 0:
+                    lat = -60d + random.nextDouble() * 120d;
+                    lon = 178d + random.nextDouble() * 4d;
+                    lon = lon > 180d ? lon - 360d : lon;
+                    break;
+                case 1:
+                    lat = 87d + random.nextDouble() * 3d;
+                    lon = -180d + random.nextDouble() * 360d;
+                    break;
+                case 2:
+                    lat = -90d + random.nextDouble() * 3d;
+                    lon = -180d + random.nextDouble() * 360d;
+                    break;
+                default:
+                    lat = Math.toDegrees(Math.asin(2d * random.nextDouble() - 1d));
+                    lon = -180d + random.nextDouble() * 360d;
+                    break;
+            }
+            places.add(place("p" + i, lat, lon));
+        }
+        return places;
+    }
+
+    private static List<Place> bruteNearest(List<Place> places, double lat, double lon, int k) {
+        List<Place> sorted = new ArrayList<>(places);
+        sorted.sort(Comparator.comparingDouble(place -> haversineKm(lat, lon, place)));
+        return sorted.subList(0, k);
+    }
+
+    private static double haversineKm(double lat, double lon, Place place) {
+        double phi1 = Math.toRadians(lat);
+        double phi2 = Math.toRadians(place.getLat());
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(place.getLon() - lon);
+        double a = Math.sin(dPhi / 2d) * Math.sin(dPhi / 2d)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2d) * Math.sin(dLambda / 2d);
+        return 2d * EARTH_RADIUS_KM * Math.asin(Math.min(1d, Math.sqrt(a)));
+    }
+
+    private static Place place(String id, double lat, double lon) {
+        return new Place(id, id, lat, lon, null, null, 0L, null);
+    }
+}
@@ -0,0 +1,157 @@
+package com.cosmoscout.data.places;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ScoreHistoryTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // 2026-06-15 00:00 UTC.
+    private static final long NOW = 1781481600000L;
+    private static final long BUDGET = 1024L * 1024L;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("history").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void append_isReadBackInTimeOrder() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, BUDGET);
+        history.append("a", NOW - 2 * HOUR, 40, 50, 10);
+        history.append("a", NOW - 3 * HOUR, 30, 40, 10);
+        history.append("a", NOW - HOUR, 50, 60, 10);
+
+        ScoreHistory.Series series = history.query("a");
+        assertEquals(3, series.size);
+        assertEquals(NOW - 3 * HOUR, series.times[0]);
+        assertEquals(30, series.scores[0]);
+        assertEquals(50, series.scores[2]);
+        assertEquals(0, history.query("b").size);
+    }
+
+    @Test
+    public void dailyScores_averagesEachDayAndMarksGaps() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, BUDGET);
+        history.append("a", NOW - 2 * DAY + HOUR, 20, 0, 0);
+        history.append("a", NOW - 2 * DAY + 2 * HOUR, 40, 0, 0);
+        history.append("a", NOW + HOUR, 90, 0, 0);
+
+        int[] days = history.dailyScores("a", 4, NOW + 2 * HOUR);
+        assertArrayEquals(new int[]{-1, 30, -1, 90}, days);
+    }
+
+    @Test
+    public void compact_rollsOldRawPointsIntoWeightedHourlyBuckets() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, BUDGET);
+        long hour = NOW - 3 * DAY;
+        history.append("a", hour + 1_000L, 10, 20, 30);
+        history.append("a", hour + 2_000L, 20, 40, 30);
+        history.append("a", hour + 3_000L, 60, 60, 30);
+        history.append("a", NOW - HOUR, 80, 80, 0);
+
+        history.compact("a", NOW);
+
+        ScoreHistory.Series series = history.query("a");
+        assertEquals(2, series.size);
+        assertEquals(hour, series.times[0]);
+        assertEquals(30, series.scores[0]);
+        assertEquals(40, series.clearPcts[0]);
+        assertEquals(3, series.counts[0]);
+        assertEquals(NOW - HOUR, series.times[1]);
+        assertEquals(1, series.counts[1]);
+    }
+
+    @Test
+    public void compact_movesAgedBucketsDownTheTiersAndDropsTheOldest() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, BUDGET);
+        long daily = NOW - 30 * DAY;
+        long weekly = NOW - 400 * DAY;
+        history.append("a", daily + HOUR, 10, 0, 0);
+        history.append("a", daily + 5 * HOUR, 30, 0, 0);
+        history.append("a", weekly, 50, 0, 0);
+        history.append("a", NOW - 6 * 365 * DAY, 70, 0, 0);
+
+        history.compact("a", NOW);
+
+        ScoreHistory.Series series = history.query("a");
+        assertEquals(2, series.size);
+        // Weekly buckets start on the epoch week boundary.
+        assertEquals(Math.floorDiv(weekly, 7 * DAY) * 7 * DAY, series.times[0]);
+        assertEquals(50, series.scores[0]);
+        assertEquals(daily, series.times[1]);
+        assertEquals(20, series.scores[1]);
+        assertEquals(2, series.counts[1]);
+    }
+
+    @Test
+    public void append_compactsOnceTheLogIsFullWithoutLosingSamples() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, BUDGET);
+        int appended = 300;
+        for (int i = 0; i < appended; i++) {
+            history.append("a", NOW - (appended - i) * 10 * 60_000L, 50, 50, 50);
+        }
+
+        ScoreHistory.Series series = history.query("a");
+        assertTrue(series.size < appended);
+        int samples = 0;
+        for (int i = 0; i < series.size; i++) {
+            samples += series.counts[i];
+            assertEquals(50, series.scores[i]);
+        }
+        assertEquals(appended, samples);
+    }
+
+    @Test
+    public void budget_dropsTheLeastRecentlyWrittenPlaces() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, 600L);
+        history.append("old", NOW - 3 * DAY, 10, 0, 0);
+        history.compact("old", NOW);
+        assertTrue(new File(dir, "old.bin").setLastModified(1_000L));
+        assertTrue(new File(dir, "old.log").setLastModified(1_000L));
+        for (int i = 0; i < 40; i++) {
+            history.append("new", NOW - 4 * DAY + i * HOUR, 60, 0, 0);
+        }
+        // An old point forces compaction, which then enforces the budget.
+        history.append("new", NOW, 60, 0, 0);
+
+        assertEquals(0, history.query("old").size);
+        assertTrue(history.query("new").size > 0);
+    }
+
+    @Test
+    public void delete_removesEverything() throws IOException {
+        ScoreHistory history = new ScoreHistory(dir, BUDGET);
+        history.append("a", NOW - 3 * DAY, 10, 0, 0);
+        history.compact("a", NOW);
+        history.append("a", NOW, 20, 0, 0);
+
+        history.delete("a");
+
+        assertEquals(0, history.query("a").size);
+        assertFalse(new File(dir, "a.log").exists());
+        assertFalse(new File(dir, "a.bin").exists());
+    }
+}
@@ -0,0 +1,39 @@
+package com.cosmoscout.data.weather;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EphemerisTest {
+
+    private static final long MARCH_EQUINOX_2025 = 1742461260000L; // 2025-03-20 09:01 UTC
+    private static final long JUNE_SOLSTICE_2025 = 1750473720000L; // 2025-06-21 02:42 UTC
+
+    @Test
+    public void sun_isAtTheEquinoxPoint() {
+        double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, MARCH_EQUINOX_2025);
+        // J2000 frame: precession since 2000 puts the equinox a third of a degree off.
+        assertEquals(0d, Ephemeris.normalize(sun[0] + 180d) - 180d, 0.5d);
+        assertEquals(0d, sun[1], 0.2d);
+    }
+
+    @Test
+    public void sun_reachesTheObliquityAtTheSolstice() {
+        double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, JUNE_SOLSTICE_2025);
+        assertEquals(90d, sun[0], 0.5d);
+        assertEquals(23.44d, sun[1], 0.05d);
+    }
+
+    @Test
+    public void eclipticToEquatorial_mapsTheSolsticePoint() {
+        double[] point = Ephemeris.eclipticToEquatorial(90d, 0d);
+        assertEquals(90d, point[0], 1e-9d);
+        assertEquals(23.4392911d, point[1], 1e-9d);
+    }
+
+    @Test
+    public void separation_handlesTheWrap() {
+        assertEquals(2d, Ephemeris.separation(359d, 0d, 1d, 0d), 1e-9d);
+        assertEquals(90d, Ephemeris.separation(10d, 90d, 200d, 0d), 1e-9d);
+    }
+}
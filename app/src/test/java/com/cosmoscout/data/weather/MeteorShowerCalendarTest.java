@@ -0,0 +1,57 @@
+package com.cosmoscout.data.weather;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MeteorShowerCalendarTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // The Perseid radiant never sets from 45°N, so only the Sun can zero its rate.
+    private static final double LAT = 45d;
+    private static final double LON = 0d;
+    // 2026-08-12 12:00 UTC, the afternoon before the Perseid peak night.
+    private static final long NOON = 1786536000000L;
+
+    @Test
+    public void hourlyRate_isZeroInDaylight() {
+        assertEquals(0d, MeteorShowerCalendar.hourlyRate(LAT, LON, NOON + hours(2), UTC, 1, 0), 0d);
+    }
+
+    @Test
+    public void hourlyRate_countsAfterAstronomicalDusk() {
+        assertTrue(MeteorShowerCalendar.hourlyRate(LAT, LON, NOON + hours(14), UTC, 1, 0) > 10d);
+    }
+
+    @Test
+    public void forNight_onlyRatesDarkHours() {
+        List<MeteorShowerCalendar.NightActivity> night = MeteorShowerCalendar.forNight(
+                LAT, LON, NOON, NOON + hours(24), UTC, 1, 0);
+        MeteorShowerCalendar.NightActivity perseids = null;
+        for (MeteorShowerCalendar.NightActivity activity : night) {
+            if (activity.shower.code.equals("PER")) {
+                perseids = activity;
+            }
+        }
+        assertNotNull(perseids);
+        int rated = 0;
+        for (MeteorShowerCalendar.HourlyActivity hour : perseids.hours) {
+            assertTrue(hour.radiantAltitudeDeg > 0d);
+            boolean dark = MeteorShowerCalendar.isDark(LAT, LON, hour.timeMillis);
+            assertEquals(dark, hour.hourlyRate > 0d);
+            if (dark) {
+                rated++;
+            }
+        }
+        assertTrue(rated > 0 && rated < perseids.hours.size());
+        assertTrue(MeteorShowerCalendar.isDark(LAT, LON, perseids.best.timeMillis));
+    }
+
+    private static long hours(int count) {
+        return TimeUnit.HOURS.toMillis(count);
+    }
+}
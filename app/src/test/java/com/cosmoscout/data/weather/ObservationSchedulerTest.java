@@ -0,0 +1,90 @@
+package com.cosmoscout.data.weather;
+
+import com.cosmoscout.data.places.PlacesScoring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ObservationSchedulerTest {
+
+    private static final double LAT = 45d;
+    private static final double LON = 0d;
+    // 2025-10-01 12:00 UTC; the Moon is a waxing crescent that sets early.
+    private static final long NOON = 1759320000000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long HALF_SLOT =
+            TimeUnit.MINUTES.toMillis(ObservationScheduler.DEFAULT_SETTINGS.slotMinutes) / 2L;
+
+    @Test
+    public void plan_placesTargetsInDarkNonOverlappingBlocks() {
+        List<TonightSkyService.VisibleObject> targets = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            targets.add(target("T" + i, i * 15d, 20d + (i % 4) * 10d));
+        }
+        ObservationScheduler.Plan plan = ObservationScheduler.plan(LAT, LON, night(80d), targets);
+
+        assertTrue(plan.entries.size() >= 4);
+        Set<String> seen = new HashSet<>();
+        long previousEnd = Long.MIN_VALUE;
+        double total = 0d;
+        for (ObservationScheduler.Entry entry : plan.entries) {
+            assertTrue(seen.add(entry.target.name));
+            assertTrue(entry.setupStartMillis >= previousEnd);
+            assertTrue(entry.setupStartMillis < entry.startMillis);
+            assertTrue(entry.startMillis < entry.endMillis);
+            assertTrue(entry.meanAltitudeDeg >= ObservationScheduler.DEFAULT_SETTINGS.minAltitudeDeg);
+            // Darkness is judged at the middle of each slot.
+            assertTrue(sunAltitude(entry.setupStartMillis + HALF_SLOT) < -12d);
+            assertTrue(sunAltitude(entry.endMillis - HALF_SLOT) < -12d);
+            previousEnd = entry.endMillis;
+            total += entry.value;
+        }
+        assertEquals(total, plan.totalValue, 1e-9d);
+    }
+
+    @Test
+    public void plan_skipsTargetsThatNeverRise() {
+        List<TonightSkyService.VisibleObject> targets = new ArrayList<>();
+        targets.add(target("Southern", 0d, -80d));
+        targets.add(target("Polar", 0d, 85d));
+        ObservationScheduler.Plan plan = ObservationScheduler.plan(LAT, LON, night(80d), targets);
+
+        assertEquals(1, plan.entries.size());
+        assertEquals("Polar", plan.entries.get(0).target.name);
+    }
+
+    @Test
+    public void plan_isEmptyUnderPoorSkies() {
+        List<TonightSkyService.VisibleObject> targets = new ArrayList<>();
+        targets.add(target("Polar", 0d, 85d));
+        assertTrue(ObservationScheduler.plan(LAT, LON, night(10d), targets).entries.isEmpty());
+        assertTrue(ObservationScheduler.plan(LAT, LON, new ArrayList<>(), targets).entries.isEmpty());
+    }
+
+    private static List<TonightSkyService.Window> night(double score) {
+        PlacesScoring.SkyStatus status = score >= 50d ? PlacesScoring.SkyStatus.GOOD : PlacesScoring.SkyStatus.POOR;
+        List<TonightSkyService.Window> windows = new ArrayList<>();
+        for (int h = 0; h < 24; h++) {
+            windows.add(new TonightSkyService.Window(NOON + h * HOUR, NOON + (h + 1) * HOUR,
+                    90, 10, 30d, 2d, 0d, score, status, 0d));
+        }
+        return windows;
+    }
+
+    private static TonightSkyService.VisibleObject target(String name, double raDeg, double decDeg) {
+        return new TonightSkyService.VisibleObject(name, "N", "0°", "star", 0d, 0d, raDeg, decDeg, 1d, 1d);
+    }
+
+    private static double sunAltitude(long timeMillis) {
+        double[] sun = Ephemeris.equatorialPosition(Ephemeris.SUN, timeMillis);
+        return TonightSkyService.computeAltAzAtSidereal(LAT,
+                TonightSkyService.localSiderealDegrees(LON, timeMillis), sun[0], sun[1])[0];
+    }
+}
@@ -0,0 +1,107 @@
+package com.cosmoscout.data.weather;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SiderealObjectCacheTest {
+
+    private static final double ALTITUDE_TOLERANCE_DEG = 1.0d;
+    private static final double AZIMUTH_TOLERANCE_DEG = 2.0d;
+
+    @Test
+    public void cachedObjects_matchDirectComputation() {
+        List<TonightSkyService.StarEntry> stars = randomStars(400, 7L);
+        SiderealObjectCache cache = new SiderealObjectCache(64);
+        Random random = new Random(11L);
+        for (int sample = 0; sample < 200; sample++) {
+            double lat = -60d + random.nextDouble() * 120d;
+            double lst = random.nextDouble() * 360d;
+            List<TonightSkyService.VisibleObject> cached = cache.get(lat, lst, 6.5d,
+                    Extinction.REFERENCE_COEFFICIENT,
+                    (bucketLat, bucketLst, magnitude, extinction) -> TonightSkyService.projectStars(
+                            stars, bucketLat, bucketLst, Integer.MAX_VALUE));
+            List<TonightSkyService.VisibleObject> direct =
+                    TonightSkyService.projectStars(stars, lat, lst, Integer.MAX_VALUE);
+
+            Map<String, TonightSkyService.VisibleObject> byName = new HashMap<>();
+            for (TonightSkyService.VisibleObject object : cached) {
+                byName.put(object.name, object);
+            }
+            for (TonightSkyService.VisibleObject expected : direct) {
+                if (expected.altitudeDeg < 10d + ALTITUDE_TOLERANCE_DEG) {
+                    // Objects this close to the cut-off may legitimately fall either side of it.
+                    continue;
+                }
+                TonightSkyService.VisibleObject actual = byName.get(expected.name);
+                assertNotNull("missing " + expected.name, actual);
+                assertEquals(expected.altitudeDeg, actual.altitudeDeg, ALTITUDE_TOLERANCE_DEG);
+                if (expected.altitudeDeg < 60d) {
+                    assertEquals(0d, angularDifference(expected.azimuthDeg, actual.azimuthDeg),
+                            AZIMUTH_TOLERANCE_DEG);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearbyPlacesAndTimes_shareEntries() {
+        List<TonightSkyService.StarEntry> stars = randomStars(50, 3L);
+        SiderealObjectCache cache = new SiderealObjectCache(16);
+        int[] loads = new int[1];
+        SiderealObjectCache.Loader loader = (bucketLat, bucketLst, magnitude, extinction) -> {
+            loads[0]++;
+            return TonightSkyService.projectStars(stars, bucketLat, bucketLst, 20);
+        };
+
+        List<TonightSkyService.VisibleObject> first = cache.get(52.2d, 100.1d, 5.6d, 0.2d, loader);
+        List<TonightSkyService.VisibleObject> nearby = cache.get(52.7d, 100.9d, 5.6d, 0.2d, loader);
+        cache.get(52.2d, 100.1d, 5.6d, 0.2d, loader);
+        cache.get(-33.9d, 100.1d, 5.6d, 0.2d, loader);
+
+        assertSame(first, nearby);
+        assertEquals(2, loads[0]);
+        SiderealObjectCache.Stats stats = cache.stats();
+        assertEquals(2L, stats.hits);
+        assertEquals(2L, stats.misses);
+        assertEquals(0.5d, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void capacity_evictsLeastRecentlyUsed() {
+        SiderealObjectCache cache = new SiderealObjectCache(2);
+        SiderealObjectCache.Loader loader = (bucketLat, bucketLst, magnitude, extinction) -> new ArrayList<>();
+        cache.get(10d, 10d, 5d, 0.2d, loader);
+        cache.get(20d, 10d, 5d, 0.2d, loader);
+        cache.get(10d, 10d, 5d, 0.2d, loader);
+        cache.get(30d, 10d, 5d, 0.2d, loader);
+        cache.get(10d, 10d, 5d, 0.2d, loader);
+
+        SiderealObjectCache.Stats stats = cache.stats();
+        assertEquals(2, stats.size);
+        assertEquals(2L, stats.hits);
+        assertEquals(3L, stats.misses);
+    }
+
+    private static List<TonightSkyService.StarEntry> randomStars(int count, long seed) {
+        Random random = new Random(seed);
+        List<TonightSkyService.StarEntry> stars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double raHours = random.nextDouble() * 24d;
+            double dec = Math.toDegrees(Math.asin(random.nextDouble() * 2d - 1d));
+            stars.add(new TonightSkyService.StarEntry("Star " + i, raHours, dec, 1d + i * 0.01d));
+        }
+        return stars;
+    }
+
+    private static double angularDifference(double a, double b) {
+        double diff = Math.abs(a - b) % 360d;
+        return diff > 180d ? 360d - diff : diff;
+    }
+}
@@ -0,0 +1,32 @@
+package com.cosmoscout.data.weather;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SkyBrightnessTest {
+
+    // K&S (1991) eq. 20 at full Moon (phase angle 0): I* = 10^(-0.4 * 3.84).
+    private static final double FULL_MOON_INTENSITY = Math.pow(10d, -0.4d * 3.84d);
+    // The Mauna Kea V-band coefficient K&S fitted their model with.
+    private static final double MAUNA_KEA_K = 0.172d;
+
+    // Reference values are K&S eq. 15 worked by hand for a zenith pointing (X = 1):
+    // B = f(rho) * I* * 10^(-0.4 k X_moon) * (1 - 10^(-0.4 k X)).
+    @Test
+    public void moonlight_matchesKrisciunasSchaeferWithTheMoonHigh() {
+        // Z_moon = 30: f = 6.658e5, X_moon = 1.147.
+        assertEquals(2367.6d, SkyBrightness.moonlight(60d, FULL_MOON_INTENSITY, MAUNA_KEA_K), 1d);
+    }
+
+    @Test
+    public void moonlight_matchesKrisciunasSchaeferWithTheMoonLow() {
+        // Z_moon = 70: the Moon's own long path dims it, so the zenith sky is much darker.
+        assertEquals(837.6d, SkyBrightness.moonlight(20d, FULL_MOON_INTENSITY, MAUNA_KEA_K), 1d);
+    }
+
+    @Test
+    public void moonlight_isZeroBelowTheHorizon() {
+        assertEquals(0d, SkyBrightness.moonlight(-5d, FULL_MOON_INTENSITY, MAUNA_KEA_K), 0d);
+    }
+}
@@ -0,0 +1,53 @@
+package com.cosmoscout.data.weather;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TonightSkyServiceTest {
+
+    @Test
+    public void brightest_keepsBrightestRowsWhateverTheFileOrder() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        // Catalog order is by id, so the brightest stars are spread through the file.
+        double[] magnitudes = {5.9d, 0.5d, 6.2d, 3.1d, -1.4d, 4.4d, 2.0d};
+        for (int i = 0; i < magnitudes.length; i++) {
+            csv.append(row(i, "Star " + i, magnitudes[i])).append('\n');
+        }
+        csv.append(row(99, "Too faint", 7.5d)).append('\n');
+        csv.append(row(100, "", 1.0d)).append('\n');
+
+        List<TonightSkyService.StarEntry> kept = TonightSkyService.brightest(
+                new BufferedReader(new StringReader(csv.toString())), 3);
+
+        List<String> names = new ArrayList<>();
+        for (TonightSkyService.StarEntry entry : kept) {
+            names.add(entry.displayName);
+        }
+        Collections.sort(names);
+        assertEquals(3, names.size());
+        assertEquals("Star 1", names.get(0));
+        assertEquals("Star 4", names.get(1));
+        assertEquals("Star 6", names.get(2));
+    }
+
+    @Test
+    public void brightest_returnsEverythingUnderTheLimit() throws IOException {
+        String csv = row(1, "Vega", 0.03d) + "\n" + row(2, "Deneb", 1.25d) + "\n";
+        List<TonightSkyService.StarEntry> kept = TonightSkyService.brightest(
+                new BufferedReader(new StringReader(csv)), 10);
+        assertEquals(2, kept.size());
+    }
+
+    // HYG v3 layout: proper name in column 6, RA/Dec in 7/8, magnitude in 13.
+    private static String row(int id, String name, double magnitude) {
+        return id + ",,,,,," + name + ",12.5,-30.0,10,0,0,0," + magnitude + ",1.0,,,,,,,,,";
+    }
+}
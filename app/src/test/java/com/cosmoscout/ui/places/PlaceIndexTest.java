@@ -0,0 +1,259 @@
+package com.cosmoscout.ui.places;
+
+import com.cosmoscout.data.places.Place;
+import com.cosmoscout.data.places.PlacesScoring;
+import com.cosmoscout.ui.places.PlacesController.Change;
+import com.cosmoscout.ui.places.PlacesController.Filter;
+import com.cosmoscout.ui.places.PlacesController.PlaceSkyState;
+import com.cosmoscout.ui.places.PlacesController.Sort;
+import com.cosmoscout.ui.places.PlacesController.UiPlace;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class PlaceIndexTest {
+
+    private static final PlacesScoring.SkyStatus[] STATUSES = {
+            null, PlacesScoring.SkyStatus.GOOD, PlacesScoring.SkyStatus.OK, PlacesScoring.SkyStatus.POOR
+    };
+
+    @Test
+    public void snapshot_ordersEachSortAndKeepsOnlyFilterMembers() {
+        PlaceIndex index = new PlaceIndex();
+        List<UiPlace> items = new ArrayList<>();
+        items.add(item("a", "Zeta Ridge", 80, PlacesScoring.SkyStatus.GOOD, 12d));
+        items.add(item("b", "alpha Lake", 40, PlacesScoring.SkyStatus.OK, 3d));
+        items.add(item("c", "Mid Point", 80, PlacesScoring.SkyStatus.GOOD, null));
+        items.add(item("d", "Beta Hill", 10, PlacesScoring.SkyStatus.POOR, 7d));
+        items.add(item("e", "Unscored", 0, null, 1d));
+        index.rebuild(items);
+
+        assertEquals(ids("c", "a", "b", "d", "e"), ids(index.snapshot(Sort.SCORE, Filter.ALL)));
+        assertEquals(ids("e", "b", "d", "a", "c"), ids(index.snapshot(Sort.DISTANCE, Filter.ALL)));
+        assertEquals(ids("b", "d", "c", "e", "a"), ids(index.snapshot(Sort.NAME, Filter.ALL)));
+        assertEquals(ids("c", "a"), ids(index.snapshot(Sort.SCORE, Filter.GOOD)));
+        assertEquals(ids("b"), ids(index.snapshot(Sort.NAME, Filter.OK)));
+        assertEquals(ids("d"), ids(index.snapshot(Sort.DISTANCE, Filter.POOR)));
+    }
+
+    @Test
+    public void put_reportsMoveThenUpdateWithinTheShownFilter() {
+        PlaceIndex index = new PlaceIndex();
+        List<UiPlace> items = new ArrayList<>();
+        items.add(item("a", "A", 90, PlacesScoring.SkyStatus.GOOD, 1d));
+        items.add(item("b", "B", 70, PlacesScoring.SkyStatus.GOOD, 2d));
+        items.add(item("c", "C", 50, PlacesScoring.SkyStatus.GOOD, 3d));
+        index.rebuild(items);
+
+        List<Change> changes = new ArrayList<>();
+        index.put(item("c", "C", 95, PlacesScoring.SkyStatus.GOOD, 3d), Sort.SCORE, Filter.GOOD, changes);
+
+        assertEquals(2, changes.size());
+        assertChange(changes.get(0), Change.Type.MOVE, 2, 0);
+        assertChange(changes.get(1), Change.Type.UPDATE, 0, 0);
+    }
+
+    @Test
+    public void put_leavingOrEnteringTheFilterIsARemoveOrInsert() {
+        PlaceIndex index = new PlaceIndex();
+        List<UiPlace> items = new ArrayList<>();
+        items.add(item("a", "A", 90, PlacesScoring.SkyStatus.GOOD, 1d));
+        items.add(item("b", "B", 70, PlacesScoring.SkyStatus.GOOD, 2d));
+        index.rebuild(items);
+
+        List<Change> changes = new ArrayList<>();
+        index.put(item("a", "A", 20, PlacesScoring.SkyStatus.POOR, 1d), Sort.SCORE, Filter.GOOD, changes);
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), Change.Type.REMOVE, 0, -1);
+
+        changes.clear();
+        index.put(item("a", "A", 20, PlacesScoring.SkyStatus.POOR, 1d), Sort.SCORE, Filter.POOR, changes);
+        assertTrue(changes.isEmpty());
+
+        changes.clear();
+        index.put(item("z", "Z", 30, PlacesScoring.SkyStatus.POOR, 9d), Sort.SCORE, Filter.POOR, changes);
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), Change.Type.INSERT, -1, 0);
+    }
+
+    @Test
+    public void remove_reportsOnlyForTheShownFilterAndIgnoresUnknownIds() {
+        PlaceIndex index = new PlaceIndex();
+        List<UiPlace> items = new ArrayList<>();
+        items.add(item("a", "A", 90, PlacesScoring.SkyStatus.GOOD, 1d));
+        items.add(item("b", "B", 40, PlacesScoring.SkyStatus.OK, 2d));
+        index.rebuild(items);
+
+        List<Change> changes = new ArrayList<>();
+        index.remove("missing", Sort.SCORE, Filter.ALL, changes);
+        index.remove("a", Sort.SCORE, Filter.OK, changes);
+        assertTrue(changes.isEmpty());
+        assertNull(index.get("a"));
+
+        index.remove("b", Sort.NAME, Filter.ALL, changes);
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), Change.Type.REMOVE, 0, -1);
+        assertEquals(0, index.size());
+    }
+
+    // Replays random edits the way the adapter would and checks every emitted change set turns
+    // the previous rows into the new snapshot, for every sort and filter.
+    @Test
+    public void changeSets_replayToTheSnapshotAcrossSortsAndFilters() {
+        Random random = new Random(7L);
+        for (Sort sort : Sort.values()) {
+            for (Filter filter : Filter.values()) {
+                PlaceIndex index = new PlaceIndex();
+                List<UiPlace> seed = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    seed.add(randomItem(random, "p" + i));
+                }
+                index.rebuild(seed);
+                List<String> shown = new ArrayList<>(ids(index.snapshot(sort, filter)));
+                for (int step = 0; step < 400; step++) {
+                    List<Change> changes = new ArrayList<>();
+                    String id = "p" + random.nextInt(50);
+                    if (random.nextInt(4) == 0) {
+                        index.remove(id, sort, filter, changes);
+                    } else {
+                        index.put(randomItem(random, id), sort, filter, changes);
+                    }
+                    apply(shown, changes, id);
+                    assertEquals(ids(index.snapshot(sort, filter)), shown);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matches_narrowEveryViewAndClearRestoresIt() {
+        PlaceIndex index = new PlaceIndex();
+        List<UiPlace> items = new ArrayList<>();
+        items.add(item("a", "A", 90, PlacesScoring.SkyStatus.GOOD, 1d));
+        items.add(item("b", "B", 70, PlacesScoring.SkyStatus.GOOD, 2d));
+        items.add(item("c", "C", 50, PlacesScoring.SkyStatus.OK, 3d));
+        index.rebuild(items);
+
+        index.setMatches(search(3, "even"));
+        assertEquals(ids("a", "c"), ids(index.snapshot(Sort.SCORE, Filter.ALL)));
+        assertEquals(ids("a"), ids(index.snapshot(Sort.SCORE, Filter.GOOD)));
+
+        List<Change> changes = new ArrayList<>();
+        index.put(item("b", "B", 95, PlacesScoring.SkyStatus.GOOD, 2d), Sort.SCORE, Filter.ALL, changes);
+        assertTrue(changes.isEmpty());
+        index.put(item("c", "C", 99, PlacesScoring.SkyStatus.GOOD, 3d), Sort.SCORE, Filter.GOOD, changes);
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), Change.Type.INSERT, -1, 0);
+
+        index.setMatches(null);
+        assertEquals(ids("c", "b", "a"), ids(index.snapshot(Sort.SCORE, Filter.ALL)));
+    }
+
+    // The same replay with a search set: changes are positions among the matching rows.
+    @Test
+    public void changeSets_replayToTheSnapshotWhileSearching() {
+        Random random = new Random(11L);
+        PlaceTextIndex.Matches matches = search(50, "even");
+        for (Sort sort : Sort.values()) {
+            for (Filter filter : Filter.values()) {
+                PlaceIndex index = new PlaceIndex();
+                List<UiPlace> seed = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    seed.add(randomItem(random, "p" + i));
+                }
+                index.rebuild(seed);
+                index.setMatches(matches);
+                List<String> shown = new ArrayList<>(ids(index.snapshot(sort, filter)));
+                for (int step = 0; step < 400; step++) {
+                    List<Change> changes = new ArrayList<>();
+                    String id = "p" + random.nextInt(50);
+                    if (random.nextInt(4) == 0) {
+                        index.remove(id, sort, filter, changes);
+                    } else {
+                        index.put(randomItem(random, id), sort, filter, changes);
+                    }
+                    apply(shown, changes, id);
+                    assertEquals(ids(index.snapshot(sort, filter)), shown);
+                }
+                for (String id : shown) {
+                    assertTrue(matches.contains(id));
+                }
+            }
+        }
+    }
+
+    // Places "a" to "z" and "p0" onwards, named "even" or "odd" by their position.
+    private static PlaceTextIndex.Matches search(int count, String query) {
+        PlaceTextIndex text = new PlaceTextIndex();
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = i % 2 == 0 ? "even" : "odd";
+            if (i < 26) {
+                places.add(new Place(String.valueOf((char) ('a' + i)), name, 0d, 0d, null, null, 0L, null));
+            }
+            places.add(new Place("p" + i, name, 0d, 0d, null, null, 0L, null));
+        }
+        text.sync(places);
+        return text.search(query);
+    }
+
+    // One edit touches one place, so an insert always brings in id.
+    private static void apply(List<String> rows, List<Change> changes, String id) {
+        for (Change change : changes) {
+            switch (change.type) {
+                case INSERT:
+                    rows.add(change.to, id);
+                    break;
+                case REMOVE:
+                    assertEquals(id, rows.remove(change.from));
+                    break;
+                case MOVE:
+                    rows.add(change.to, rows.remove(change.from));
+                    break;
+                default:
+                    assertEquals(id, rows.get(change.to));
+                    break;
+            }
+        }
+    }
+
+    private static UiPlace randomItem(Random random, String id) {
+        PlacesScoring.SkyStatus status = STATUSES[random.nextInt(STATUSES.length)];
+        Double distance = random.nextInt(5) == 0 ? null : (double) random.nextInt(20);
+        return item(id, "Place " + random.nextInt(10), random.nextInt(5) * 20, status, distance);
+    }
+
+    private static UiPlace item(String id, String name, int score, PlacesScoring.SkyStatus status, Double distanceKm) {
+        Place place = new Place(id, name, 0d, 0d, null, null, 0L, null);
+        PlaceSkyState sky = status == null ? null : new PlaceSkyState(score, status, 0L, 0L, 0, 0, 0L, false,
+                Collections.emptyList(), Collections.emptyList(), 0d, 0d, true, TimeZone.getTimeZone("UTC"), 0d);
+        return new UiPlace(place, sky, distanceKm, distanceKm, false, null, false);
+    }
+
+    private static void assertChange(Change change, Change.Type type, int from, int to) {
+        assertEquals(type, change.type);
+        assertEquals(from, change.from);
+        assertEquals(to, change.to);
+    }
+
+    private static List<String> ids(String... ids) {
+        List<String> out = new ArrayList<>();
+        Collections.addAll(out, ids);
+        return out;
+    }
+
+    private static List<String> ids(List<UiPlace> rows) {
+        List<String> out = new ArrayList<>();
+        for (UiPlace row : rows) {
+            out.add(row.place.getId());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,216 @@
+package com.cosmoscout.ui.places;
+
+import com.cosmoscout.data.places.Place;
+
+import org.junit.Test;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlaceTextIndexTest {
+
+    private static final String[] WORDS = {
+            "cherry", "springs", "ring", "spring", "dark", "sky", "park", "aaa", "aaaa", "banana",
+            "ananas", "öland", "mont", "mégantic", "ridge", "ste", "este", "north",
+    };
+
+    @Test
+    public void longTokens_matchAnywhereInsideWords() {
+        PlaceTextIndex index = index(
+                place("cherry", "Cherry Springs", null),
+                place("ridge", "Ridge Top", "spring camping"));
+
+        assertMatches(index, "spri", "cherry", "ridge");
+        assertMatches(index, "ring", "cherry", "ridge");
+        assertMatches(index, "erry", "cherry");
+        assertMatches(index, "amp", "ridge");
+        assertMatches(index, "ringx");
+        assertMatches(index, "gsp");
+    }
+
+    @Test
+    public void shortTokens_matchWordStartsOnly() {
+        PlaceTextIndex index = index(
+                place("cherry", "Cherry Springs", null),
+                place("sky", "Sky Meadows", null));
+
+        assertMatches(index, "s", "cherry", "sky");
+        assertMatches(index, "sp", "cherry");
+        assertMatches(index, "me", "sky");
+        assertMatches(index, "ri");
+        assertMatches(index, "y");
+    }
+
+    @Test
+    public void removedSlot_isReusedWithoutStaleMatches() {
+        PlaceTextIndex index = index(place("a", "Cherry Springs", null), place("b", "Dark Park", null));
+
+        index.remove("a");
+        index.put(place("c", "Sky Meadows", null));
+
+        assertMatches(index, "cherry");
+        assertMatches(index, "sky", "c");
+        assertMatches(index, "park", "b");
+        PlaceTextIndex.Matches all = index.search("");
+        assertEquals(2, all.size());
+        assertFalse(all.contains("a"));
+        assertTrue(all.contains("b"));
+        assertTrue(all.contains("c"));
+    }
+
+    @Test
+    public void put_reindexesChangedTextOnly() {
+        PlaceTextIndex index = index(place("a", "Cherry Springs", null));
+
+        index.put(place("a", "Cherry Springs", null));
+        assertMatches(index, "cherry", "a");
+
+        index.put(place("a", "Dark Park", "renamed"));
+        assertMatches(index, "cherry");
+        assertMatches(index, "renamed", "a");
+        assertMatches(index, "dark park", "a");
+    }
+
+    @Test
+    public void accents_andCase_areFolded() {
+        PlaceTextIndex index = index(
+                place("oland", "Öland Alvar", null),
+                place("megantic", "Mont-Mégantic", null));
+
+        assertMatches(index, "oland", "oland");
+        assertMatches(index, "ÖLAND", "oland");
+        assertMatches(index, "ol", "oland");
+        assertMatches(index, "megan", "megantic");
+        assertMatches(index, "MÉGANTIC", "megantic");
+        assertMatches(index, "mont megantic", "megantic");
+    }
+
+    @Test
+    public void repeatedTrigramToken_needsTheWholeRun() {
+        PlaceTextIndex index = index(
+                place("three", "aaa", null),
+                place("four", "baaaab", null),
+                place("split", "aaa aaa", null));
+
+        assertMatches(index, "aaa", "three", "four", "split");
+        assertMatches(index, "aaaa", "four");
+        assertMatches(index, "aaaaa");
+    }
+
+    @Test
+    public void tokensSharingTrigrams_eachMustMatch() {
+        PlaceTextIndex index = index(
+                place("both", "Spring Ring", null),
+                place("springs", "Springs", null),
+                place("ring", "Ring Road", null),
+                place("banana", "Banana", null),
+                place("ananas", "Ananas", null));
+
+        assertMatches(index, "ring spring", "both", "springs");
+        assertMatches(index, "spring ring", "both", "springs");
+        assertMatches(index, "ring road", "ring");
+        assertMatches(index, "nana", "banana", "ananas");
+        assertMatches(index, "bana nana", "banana");
+        assertMatches(index, "nana anas", "ananas");
+    }
+
+    @Test
+    public void randomTexts_matchBruteForce() {
+        Random random = new Random(3L);
+        PlaceTextIndex index = new PlaceTextIndex();
+        List<Place> places = new ArrayList<>();
+        for (int round = 0; round < 300; round++) {
+            Place place = place("p" + random.nextInt(40), phrase(random), random.nextBoolean() ? phrase(random) : null);
+            places.removeIf(existing -> existing.getId().equals(place.getId()));
+            if (random.nextInt(5) == 0) {
+                index.remove(place.getId());
+            } else {
+                places.add(place);
+                index.put(place);
+            }
+            String query = random.nextBoolean() ? phrase(random) : fragment(random);
+            PlaceTextIndex.Matches matches = index.search(query);
+            Set<String> expected = bruteSearch(places, query);
+            assertEquals(query, expected.size(), matches.size());
+            for (Place candidate : places) {
+                assertEquals(query + " / " + candidate.getName(), expected.contains(candidate.getId()),
+                        matches.contains(candidate.getId()));
+            }
+        }
+    }
+
+    private static void assertMatches(PlaceTextIndex index, String query, String... ids) {
+        PlaceTextIndex.Matches matches = index.search(query);
+        assertEquals(query, ids.length, matches.size());
+        for (String id : ids) {
+            assertTrue(query + " should match " + id, matches.contains(id));
+        }
+    }
+
+    // Same rules as the index, applied to every place: a short token must start a word, a
+    // longer one must appear inside one.
+    private static Set<String> bruteSearch(List<Place> places, String query) {
+        List<String> tokens = Arrays.asList(fold(query).split(" +"));
+        Set<String> found = new HashSet<>();
+        for (Place place : places) {
+            List<String> words = Arrays.asList(fold(place.getName() + " "
+                    + (place.getNotes() != null ? place.getNotes() : "")).trim().split(" +"));
+            boolean all = true;
+            for (String token : tokens) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                boolean any = false;
+                for (String word : words) {
+                    any |= token.length() < 3 ? word.startsWith(token) : word.contains(token);
+                }
+                all &= any;
+            }
+            if (all) {
+                found.add(place.getId());
+            }
+        }
+        return found;
+    }
+
+    private static String fold(String text) {
+        return Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD).replaceAll("\\p{M}+", "").replaceAll("[^\\p{L}\\p{N}]+", " ");
+    }
+
+    private static String phrase(Random random) {
+        int count = 1 + random.nextInt(3);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(random.nextBoolean() ? " " : "-");
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String fragment(Random random) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        int start = random.nextInt(word.length());
+        int end = start + 1 + random.nextInt(word.length() - start);
+        return word.substring(start, end);
+    }
+
+    private static PlaceTextIndex index(Place... places) {
+        PlaceTextIndex index = new PlaceTextIndex();
+        index.sync(Arrays.asList(places));
+        return index;
+    }
+
+    private static Place place(String id, String name, String notes) {
+        return new Place(id, name, 0d, 0d, null, notes, 0L, null);
+    }
+}